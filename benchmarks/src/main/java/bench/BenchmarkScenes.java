@@ -0,0 +1,90 @@
+package bench;
+
+import app.BroadPhase;
+import app.DynamicTreeBroadPhase;
+import app.SweepAndPruneBroadPhase;
+import app.UniformGridBroadPhase;
+import constants.Constants;
+import shapes.Circle;
+import shapes.GameRectangle;
+import shapes.Shape;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded scene generator shared by the benchmarks.
+ * Body sizes are derived from the body count and the share of the simulation area the bodies should
+ * cover, so 100 and 100 000 bodies can be compared at the same density.
+ */
+public final class BenchmarkScenes {
+
+    public enum Distribution {
+        UNIFORM,    // Spread evenly over the whole area
+        CLUSTERED   // Gathered in a few dense clumps
+    }
+
+    private static final int CLUSTERS = 8;
+    private static final double CLUSTER_SPREAD = 40.0;
+
+    private BenchmarkScenes() {
+    }
+
+    // Average body size for a given count and coverage.
+    public static double bodySize(int count, double coverage) {
+        double area = (double) Constants.SIMULATION_WIDTH * Constants.SIMULATION_HEIGHT;
+        return Math.sqrt(coverage * area / count);
+    }
+
+    public static List<Shape> create(int count, Distribution distribution, double coverage, long seed) {
+        Random random = new Random(seed);
+        double averageSize = bodySize(count, coverage);
+        double[] clusterX = new double[CLUSTERS];
+        double[] clusterY = new double[CLUSTERS];
+        for (int c = 0; c < CLUSTERS; c++) {
+            clusterX[c] = random.nextDouble() * Constants.SIMULATION_WIDTH;
+            clusterY[c] = random.nextDouble() * Constants.SIMULATION_HEIGHT;
+        }
+
+        List<Shape> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Sizes vary from half to one and a half times the average
+            double size = averageSize * (0.5 + random.nextDouble());
+            double x;
+            double y;
+            if (distribution == Distribution.UNIFORM) {
+                x = random.nextDouble() * (Constants.SIMULATION_WIDTH - size);
+                y = random.nextDouble() * (Constants.SIMULATION_HEIGHT - size);
+            } else {
+                int c = random.nextInt(CLUSTERS);
+                x = clamp(clusterX[c] + random.nextGaussian() * CLUSTER_SPREAD, Constants.SIMULATION_WIDTH - size);
+                y = clamp(clusterY[c] + random.nextGaussian() * CLUSTER_SPREAD, Constants.SIMULATION_HEIGHT - size);
+            }
+            double mass = Constants.MIN_MASS + random.nextDouble() * (Constants.MAX_MASS - Constants.MIN_MASS);
+            Color color = new Color(random.nextInt(0x1000000));
+
+            Shape shape = random.nextBoolean()
+                    ? new Circle(x + size / 2, y + size / 2, size / 2, mass, color)
+                    : new GameRectangle(x, y, size, size, mass, color);
+            shape.setVelocity(Constants.MIN_VELOCITY + random.nextDouble() * (Constants.MAX_VELOCITY - Constants.MIN_VELOCITY),
+                    Constants.MIN_VELOCITY + random.nextDouble() * (Constants.MAX_VELOCITY - Constants.MIN_VELOCITY));
+            shapes.add(shape);
+        }
+        return shapes;
+    }
+
+    // Creates a broad phase by name, sizing the grid cells to the bodies of the scene.
+    public static BroadPhase createBroadPhase(String name, double averageSize) {
+        switch (name) {
+            case "tree": return new DynamicTreeBroadPhase();
+            case "sap": return new SweepAndPruneBroadPhase();
+            case "grid": return new UniformGridBroadPhase(averageSize * 2);
+            default: throw new IllegalArgumentException("Unknown broad phase " + name);
+        }
+    }
+
+    private static double clamp(double value, double max) {
+        return Math.max(0, Math.min(max, value));
+    }
+}
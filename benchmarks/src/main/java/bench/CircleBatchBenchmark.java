@@ -0,0 +1,123 @@
+package bench;
+
+import app.BroadPhase;
+import app.SweepAndPruneBroadPhase;
+import shapes.CircleBatchKernel;
+import shapes.CollisionAlgorithm;
+import shapes.CollisionRegistry;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Narrow phase over all the circle-circle candidate pairs a broad phase finds in one scene: one pair
+ * at a time through the collision registry, against CircleBatchKernel's plain loop and its Vector API
+ * kernel. The vector kernel needs the JVM started with --add-modules jdk.incubator.vector on JDK 17+;
+ * without it that case fails in setup and the others still run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircleBatchBenchmark {
+
+    public enum Kernel {
+        REGISTRY,  // CollisionRegistry lookup and collided() per pair, as CollisionDetector does
+        SCALAR,
+        VECTOR
+    }
+
+    @Param({"1000", "100000"})
+    public int bodies;
+
+    // Share of the simulation area covered by bodies
+    @Param({"0.3"})
+    public double coverage;
+
+    @Param({"REGISTRY", "SCALAR", "VECTOR"})
+    public Kernel kernel;
+
+    private PhysicsWorld world;
+    private CircleBatchKernel batchKernel;
+    private Shape[] firstShape = new Shape[64];
+    private Shape[] secondShape = new Shape[64];
+    private int[] first = new int[64];
+    private int[] second = new int[64];
+    private boolean[] touching;
+    private int pairs;
+
+    @Setup
+    public void setUp() {
+        List<Shape> shapes = BenchmarkScenes.create(bodies, BenchmarkScenes.Distribution.UNIFORM, coverage, 42);
+        world = new PhysicsWorld(bodies);
+        for (Shape shape : shapes) {
+            world.add((PhysicsBody) shape);
+        }
+        BroadPhase broadPhase = new SweepAndPruneBroadPhase();
+        broadPhase.findCandidatePairs(shapes, (i, j) -> {
+            Shape shape1 = shapes.get(i);
+            Shape shape2 = shapes.get(j);
+            if (shape1.getTypeId() == PhysicsWorld.TYPE_CIRCLE && shape2.getTypeId() == PhysicsWorld.TYPE_CIRCLE) {
+                addPair(shape1, shape2);
+            }
+        });
+        touching = new boolean[pairs];
+
+        switch (kernel) {
+            case SCALAR: batchKernel = CircleBatchKernel.scalar(); break;
+            case VECTOR:
+                batchKernel = CircleBatchKernel.vector();
+                if (batchKernel == null) {
+                    throw new IllegalStateException("No Vector API kernel; run on JDK 17+ with --add-modules jdk.incubator.vector");
+                }
+                break;
+            default: batchKernel = null;
+        }
+    }
+
+    private void addPair(Shape shape1, Shape shape2) {
+        if (pairs == first.length) {
+            firstShape = Arrays.copyOf(firstShape, pairs * 2);
+            secondShape = Arrays.copyOf(secondShape, pairs * 2);
+            first = Arrays.copyOf(first, pairs * 2);
+            second = Arrays.copyOf(second, pairs * 2);
+        }
+        firstShape[pairs] = shape1;
+        secondShape[pairs] = shape2;
+        first[pairs] = ((PhysicsBody) shape1).getIndex();
+        second[pairs] = ((PhysicsBody) shape2).getIndex();
+        pairs++;
+    }
+
+    // Tests every pair once.
+    @Benchmark
+    public boolean[] testPairs() {
+        if (batchKernel != null) {
+            batchKernel.test(world, first, second, 0, pairs, touching);
+            return touching;
+        }
+        for (int k = 0; k < pairs; k++) {
+            Shape shape1 = firstShape[k];
+            Shape shape2 = secondShape[k];
+            CollisionAlgorithm algorithm = CollisionRegistry.lookup(shape1.getTypeId(), shape2.getTypeId());
+            touching[k] = algorithm.collided(shape1, shape2);
+        }
+        return touching;
+    }
+}
@@ -0,0 +1,116 @@
+package bench;
+
+import shapes.Circle;
+import shapes.GameRectangle;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exact pair tests and collision responses for each combination of shape types.
+ * Cycles through a fixed set of random pairs so branch prediction does not see a single case.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NarrowPhaseBenchmark {
+
+    public enum Combination {
+        CIRCLE_CIRCLE,
+        CIRCLE_RECTANGLE,
+        RECTANGLE_CIRCLE,
+        RECTANGLE_RECTANGLE
+    }
+
+    private static final int PAIRS = 1024; // Power of two so the index wraps with a mask
+    private static final double SIZE = 30.0;
+
+    @Param({"CIRCLE_CIRCLE", "CIRCLE_RECTANGLE", "RECTANGLE_CIRCLE", "RECTANGLE_RECTANGLE"})
+    public Combination combination;
+
+    private final PhysicsBody[] first = new PhysicsBody[PAIRS];
+    private final PhysicsBody[] second = new PhysicsBody[PAIRS];
+    // Start state of every pair, restored before each collision response
+    private final double[] state = new double[PAIRS * 8];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        PhysicsWorld world = new PhysicsWorld(PAIRS * 2);
+        for (int k = 0; k < PAIRS; k++) {
+            boolean firstIsCircle = combination == Combination.CIRCLE_CIRCLE || combination == Combination.CIRCLE_RECTANGLE;
+            boolean secondIsCircle = combination == Combination.CIRCLE_CIRCLE || combination == Combination.RECTANGLE_CIRCLE;
+            first[k] = create(firstIsCircle, 1 + random.nextDouble() * 9);
+            second[k] = create(secondIsCircle, 1 + random.nextDouble() * 9);
+            world.add(first[k]);
+            world.add(second[k]);
+
+            // Place the second shape so about half the pairs overlap, approaching each other
+            double offset = SIZE * (0.5 + random.nextDouble());
+            double angle = random.nextDouble() * 2 * Math.PI;
+            int s = k * 8;
+            state[s] = 100;
+            state[s + 1] = 100;
+            state[s + 2] = 100 + Math.cos(angle) * offset;
+            state[s + 3] = 100 + Math.sin(angle) * offset;
+            state[s + 4] = Math.cos(angle) * 100;
+            state[s + 5] = Math.sin(angle) * 100;
+            state[s + 6] = -state[s + 4];
+            state[s + 7] = -state[s + 5];
+            reset(k);
+        }
+    }
+
+    @Benchmark
+    public boolean collidedWith() {
+        int k = next++ & (PAIRS - 1);
+        return first[k].collidedWith(second[k]);
+    }
+
+    @Benchmark
+    public double handleCollision() {
+        int k = next++ & (PAIRS - 1);
+        reset(k);
+        first[k].handleCollision(second[k]);
+        return first[k].getVelocityX() + second[k].getVelocityX();
+    }
+
+    // Only restores the start state, to subtract from handleCollision.
+    @Benchmark
+    public double resetOnly() {
+        int k = next++ & (PAIRS - 1);
+        reset(k);
+        return first[k].getVelocityX() + second[k].getVelocityX();
+    }
+
+    private void reset(int k) {
+        int s = k * 8;
+        first[k].setPosition(state[s], state[s + 1]);
+        second[k].setPosition(state[s + 2], state[s + 3]);
+        first[k].setVelocity(state[s + 4], state[s + 5]);
+        second[k].setVelocity(state[s + 6], state[s + 7]);
+    }
+
+    private static PhysicsBody create(boolean circle, double mass) {
+        return circle
+                ? new Circle(0, 0, SIZE / 2, mass, Color.RED)
+                : new GameRectangle(0, 0, SIZE, SIZE, mass, Color.BLUE);
+    }
+}
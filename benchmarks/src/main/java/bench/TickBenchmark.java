@@ -0,0 +1,60 @@
+package bench;
+
+import constants.Constants;
+import control.GameEngine;
+import shapes.Shape;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full GameEngine ticks (integrate, collide, walls) for different scene sizes, densities and broad phases.
+ * Select a subset with e.g. -p bodies=10000 -p broadPhase=sap.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int bodies;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public BenchmarkScenes.Distribution distribution;
+
+    // Share of the simulation area covered by bodies
+    @Param({"0.05", "0.3"})
+    public double coverage;
+
+    @Param({"tree", "sap", "grid"})
+    public String broadPhase;
+
+    private GameEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = new GameEngine();
+        engine.getCollisionDetector().setBroadPhase(
+                BenchmarkScenes.createBroadPhase(broadPhase, BenchmarkScenes.bodySize(bodies, coverage)));
+        for (Shape shape : BenchmarkScenes.create(bodies, distribution, coverage, 42)) {
+            engine.addShape(shape);
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+        engine.step(Constants.FIXED_TIMESTEP);
+    }
+}
@@ -0,0 +1,43 @@
+package shapes;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * CircleBatchKernel on the incubating Vector API: every lane tests one pair, with the centres and
+ * diameters gathered from the world arrays by index. The lane arithmetic is the same as in the plain
+ * loop, with no fused multiply-add, so both give the same answers.
+ * Needs JDK 17+ with --add-modules jdk.incubator.vector; CircleBatchKernel only loads it by name.
+ */
+final class VectorCircleKernel extends CircleBatchKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void test(PhysicsWorld world, int[] first, int[] second, int from, int to, boolean[] touching) {
+        double[] x = world.x;
+        double[] y = world.y;
+        double[] diameter = world.extentX;
+        int lanes = SPECIES.length();
+        int k = from;
+        for (int end = from + SPECIES.loopBound(to - from); k < end; k += lanes) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, 0, first, k)
+                    .sub(DoubleVector.fromArray(SPECIES, x, 0, second, k));
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, 0, first, k)
+                    .sub(DoubleVector.fromArray(SPECIES, y, 0, second, k));
+            DoubleVector radii = DoubleVector.fromArray(SPECIES, diameter, 0, first, k)
+                    .add(DoubleVector.fromArray(SPECIES, diameter, 0, second, k))
+                    .mul(0.5);
+            dx.mul(dx).add(dy.mul(dy))
+                    .compare(VectorOperators.LT, radii.mul(radii))
+                    .intoArray(touching, k);
+        }
+        testScalar(world, first, second, k, to, touching);
+    }
+
+    @Override
+    public String getName() {
+        return "vector" + SPECIES.vectorBitSize();
+    }
+}
@@ -0,0 +1,28 @@
+package app;
+
+import shapes.Shape;
+import java.util.List;
+
+/**
+ * A broad-phase strategy finds the pairs of shapes that might be touching,
+ * so the exact (and more expensive) collision tests only run on those pairs.
+ */
+public interface BroadPhase {
+
+    /**
+     * Receives candidate pairs as indices into the shape list, always with first < second.
+     */
+    interface PairHandler {
+        void onPair(int first, int second);
+    }
+
+    /**
+     * Reports every pair of shapes that may be colliding to the handler.
+     * Pairs are reported in the same order as the brute-force nested loop would visit them,
+     * so every strategy resolves collisions in the same order. Pairs of two sleeping shapes may be
+     * left out, since they cannot start touching.
+     * @param shapes List of shapes to check
+     * @param handler Callback that receives each candidate pair
+     */
+    void findCandidatePairs(List<Shape> shapes, PairHandler handler);
+}
@@ -0,0 +1,44 @@
+package app;
+
+import shapes.Shape;
+import java.util.List;
+
+/**
+ * Reports every pair of shapes. O(n^2), but kept as the reference strategy
+ * to compare the faster broad phases against. Pairs of two sleeping shapes are left out,
+ * as they cannot start touching.
+ */
+public class BruteForceBroadPhase implements BroadPhase {
+
+    // Indices of the awake shapes, in increasing order, reused between ticks
+    private int[] awake = new int[0];
+
+    @Override
+    public void findCandidatePairs(List<Shape> shapes, PairHandler handler) {
+        int count = shapes.size();
+        if (awake.length < count) {
+            awake = new int[Math.max(count, awake.length * 2)];
+        }
+        int awakeCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!shapes.get(i).isAsleep()) {
+                awake[awakeCount++] = i;
+            }
+        }
+
+        int nextAwake = 0; // First entry of awake that is greater than i
+        for (int i = 0; i < count; i++) {
+            if (nextAwake < awakeCount && awake[nextAwake] == i) {
+                nextAwake++;
+                for (int j = i + 1; j < count; j++) {
+                    handler.onPair(i, j);
+                }
+            } else {
+                // A sleeping shape only pairs with the awake shapes after it
+                for (int k = nextAwake; k < awakeCount; k++) {
+                    handler.onPair(i, awake[k]);
+                }
+            }
+        }
+    }
+}
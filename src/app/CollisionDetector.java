@@ -1,28 +1,200 @@
 package app;
 
+import control.SimulationStats;
+import shapes.PhysicsWorld;
+import shapes.CollisionAlgorithm;
+import shapes.CollisionRegistry;
 import shapes.Shape;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Handles collision detection and response between shapes.
  * Uses momentum conservation for realistic physics simulation.
+ * A pluggable broad phase picks the candidate pairs before the exact shape tests run.
  */
 public class CollisionDetector {
+
+    private BroadPhase broadPhase;
+    private List<Shape> currentShapes;
+    private boolean[] asleep = new boolean[0]; // Which shapes were asleep when the current pass started
+    private long pairTestCount;
+    private ParallelCollisionPipeline parallelPipeline; // Null when running on the calling thread
+    private final BroadPhase.PairHandler narrowPhase = this::resolvePair;
+    private final TimeOfImpactSweep impactSweep = new TimeOfImpactSweep();
+    
+    // Statistics, only used when SimulationStats.ENABLED
+    private final SimulationStats stats = new SimulationStats();
+    private final BroadPhase.PairHandler pairCollector = this::collectPair;
+    private int[] collectedPairs = new int[64]; // First and second index of each candidate, in broad-phase order
+    private int collectedCount;
+    private long contactCount;
+    private long impulseCount;
+    private long resolveNanos;
+
+    public CollisionDetector() {
+        this(new UniformGridBroadPhase());
+    }
+
+    public CollisionDetector(BroadPhase broadPhase) {
+        setBroadPhase(broadPhase);
+    }
+
+    /**
+     * Selects the strategy used to find candidate pairs, e.g. BruteForceBroadPhase to compare results.
+     * @param broadPhase The broad phase to use from the next tick on
+     */
+    public void setBroadPhase(BroadPhase broadPhase) {
+        if (broadPhase == null) {
+            throw new IllegalArgumentException("Broad phase cannot be null");
+        }
+        this.broadPhase = broadPhase;
+    }
+
+    public BroadPhase getBroadPhase() {
+        return broadPhase;
+    }
+
+    /**
+     * Sets how many threads detect and resolve collisions. With more than one thread the parallel
+     * pipeline, which has its own parallel broad phase, is used instead of the selected broad phase.
+     * @param threads Number of worker threads, or 1 to run on the calling thread
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+        if (parallelPipeline != null) {
+            parallelPipeline.shutdown();
+            parallelPipeline = null;
+        }
+        if (threads > 1) {
+            parallelPipeline = new ParallelCollisionPipeline(threads);
+        }
+    }
+
+    public int getParallelism() {
+        return parallelPipeline == null ? 1 : parallelPipeline.getParallelism();
+    }
+
+    // Number of exact pair tests run so far, for throughput statistics.
+    public long getPairTestCount() {
+        return pairTestCount;
+    }
+    
+    // Phase timings and counters, recorded only when SimulationStats.ENABLED.
+    public SimulationStats getStats() {
+        return stats;
+    }
     
     /**
      * Checks and resolves collisions between all shapes.
      * @param shapes List of shapes to check for collisions
      */
     public void detectAndResolveCollisions(List<Shape> shapes) {
-        for (int i = 0; i < shapes.size(); i++) {
-            for (int j = i + 1; j < shapes.size(); j++) {
-                Shape shape1 = shapes.get(i);
-                Shape shape2 = shapes.get(j);
-                
-                if (shape1.collidedWith(shape2)) {
-                    shape1.handleCollision(shape2);
+        if (parallelPipeline != null) {
+            pairTestCount += parallelPipeline.detectAndResolveCollisions(shapes, stats);
+            return;
+        }
+        currentShapes = shapes;
+        recordSleep(shapes);
+        try {
+            if (SimulationStats.ENABLED) {
+                detectTimed();
+            } else {
+                broadPhase.findCandidatePairs(shapes, narrowPhase);
+            }
+        } finally {
+            currentShapes = null;
+        }
+    }
+    
+    /**
+     * Same as the broad phase calling resolvePair directly, but the candidates are collected first so
+     * the broad phase can be timed on its own. They are tested in the order they were found, so the
+     * results do not change. Only the contacts are timed individually, to keep the clock reads few.
+     */
+    private void detectTimed() {
+        long start = System.nanoTime();
+        collectedCount = 0;
+        broadPhase.findCandidatePairs(currentShapes, pairCollector);
+        long broadPhaseEnd = System.nanoTime();
+        
+        long testsBefore = pairTestCount;
+        contactCount = 0;
+        impulseCount = 0;
+        resolveNanos = 0;
+        for (int k = 0; k < collectedCount; k += 2) {
+            resolvePair(collectedPairs[k], collectedPairs[k + 1]);
+        }
+        long end = System.nanoTime();
+        
+        stats.record(SimulationStats.Phase.BROAD_PHASE, broadPhaseEnd - start);
+        stats.record(SimulationStats.Phase.NARROW_PHASE, end - broadPhaseEnd - resolveNanos);
+        stats.record(SimulationStats.Phase.RESOLVE, resolveNanos);
+        stats.addPairsTested(pairTestCount - testsBefore);
+        stats.addContactsFound(contactCount);
+        stats.addImpulsesApplied(impulseCount);
+    }
+    
+    private void collectPair(int first, int second) {
+        if (collectedCount + 2 > collectedPairs.length) {
+            collectedPairs = Arrays.copyOf(collectedPairs, collectedPairs.length * 2);
+        }
+        collectedPairs[collectedCount++] = first;
+        collectedPairs[collectedCount++] = second;
+    }
+
+    /**
+     * Finds when the first two shapes that are apart now will touch, if they all keep their velocities.
+     * Used for continuous collision detection, to split a tick at the first impact.
+     * @param shapes List of shapes to check
+     * @param horizon How far ahead to look, in seconds
+     * @return Seconds until the first impact, or Double.POSITIVE_INFINITY if there is none within the horizon
+     */
+    public double findTimeOfImpact(List<Shape> shapes, double horizon) {
+        return impactSweep.findEarliestImpact(shapes, horizon);
+    }
+
+    /**
+     * Sleeping bodies do not move, so a pair of them cannot start touching. Pairs are skipped by the
+     * sleep state at the start of the pass, which is what the grid and brute-force broad phases
+     * leave out, so a body woken part way through the pass only resolves against other sleepers
+     * from the next tick on, whichever broad phase is used.
+     */
+    private void recordSleep(List<Shape> shapes) {
+        int count = shapes.size();
+        if (asleep.length < count) {
+            asleep = new boolean[Math.max(count, asleep.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            asleep[i] = shapes.get(i).isAsleep();
+        }
+    }
+
+    // Runs the exact collision test on a candidate pair and resolves it if the shapes touch.
+    private void resolvePair(int first, int second) {
+        if (asleep[first] && asleep[second]) {
+            return;
+        }
+        Shape shape1 = currentShapes.get(first);
+        Shape shape2 = currentShapes.get(second);
+        pairTestCount++;
+
+        // One table lookup serves both the test and the response
+        CollisionAlgorithm algorithm = CollisionRegistry.lookup(shape1.getTypeId(), shape2.getTypeId());
+        if (algorithm.collided(shape1, shape2)) {
+            if (SimulationStats.ENABLED) {
+                long start = System.nanoTime();
+                if (algorithm.resolve(shape1, shape2)) {
+                    impulseCount++;
                 }
+                resolveNanos += System.nanoTime() - start;
+                contactCount++;
+            } else {
+                algorithm.resolve(shape1, shape2);
             }
+            shape1.onContact(shape2);
         }
     }
     
@@ -33,8 +205,26 @@ public class CollisionDetector {
      * @param height Height of the container
      */
     public void checkWallCollisions(List<Shape> shapes, int width, int height) {
-        for (Shape shape : shapes) {
-            shape.handleWallCollision(width, height);
+        // Indexed loop so no iterator is created every tick
+        for (int i = 0; i < shapes.size(); i++) {
+            shapes.get(i).handleWallCollision(width, height);
         }
     }
+
+    /**
+     * Checks and resolves wall collisions for every body of a world in one pass over its arrays.
+     * @param world World holding the bodies
+     * @param width Width of the container
+     * @param height Height of the container
+     */
+    public void checkWallCollisions(PhysicsWorld world, int width, int height) {
+        world.resolveWallCollisions(width, height);
+    }
+
+    /**
+     * Same for the bodies of a world from index 'from' up to 'to', so the walls can be split across threads.
+     */
+    public void checkWallCollisions(PhysicsWorld world, int width, int height, int from, int to) {
+        world.resolveWallCollisions(width, height, from, to);
+    }
 }
\ No newline at end of file
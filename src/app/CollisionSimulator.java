@@ -1,11 +1,23 @@
 package app;
 
+import control.LatencyHistogram;
+import control.ReplayPlayer;
+import control.SimulationStats;
 import control.UserControlPanel;
 import shapes.Shape;
+import shapes.SnapshotRenderer;
+import shapes.Viewport;
+import shapes.WorldSnapshot;
 import control.GameEngine;
 import constants.Constants;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
 
 /**
  * Main application class for the Collision Simulator.
@@ -17,10 +29,24 @@ public class CollisionSimulator extends JFrame {
     private SimulationPanel simulationPanel;
     private UserControlPanel controlPanel;
     
+    // Replay of recorded runs
+    private static final int REPLAY_SLIDER_STEPS = 10000;
+    private final ReplayPlayer replayPlayer = new ReplayPlayer();
+    private Timer replayTimer;
+    private long lastReplayFrame;
+    private JToggleButton playButton;
+    private JSlider replaySlider;
+    private boolean updatingReplaySlider;
+    
+    private boolean statsOverlayVisible;
+    
     public CollisionSimulator() {
         super("Collision Simulator");
         
         gameEngine = new GameEngine();
+        if (SimulationStats.ENABLED) {
+            gameEngine.getStats().registerMBeans("main");
+        }
         initializeUI();
         
         // Set up the callback for UI updates
@@ -30,7 +56,6 @@ public class CollisionSimulator extends JFrame {
     private void initializeUI() {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(Constants.WINDOW_WIDTH, Constants.WINDOW_HEIGHT);
-        setResizable(false);
         
         // Create main panel with BorderLayout
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -57,19 +82,64 @@ public class CollisionSimulator extends JFrame {
         JPanel mainButtonPanel = new JPanel(new BorderLayout());
         JPanel controlPanel = new JPanel();
         JPanel speedPanel = new JPanel();
+        JPanel replayPanel = new JPanel();
         
         // Control buttons
         JButton startButton = new JButton("Start");
         JButton stopButton = new JButton("Stop");
         JButton resetButton = new JButton("Reset");
+        JButton saveButton = new JButton("Save");
+        JButton loadButton = new JButton("Load");
         
-        startButton.addActionListener(e -> gameEngine.start());
+        startButton.addActionListener(e -> {
+            closeRecording(); // Back to the live simulation
+            gameEngine.start();
+        });
         stopButton.addActionListener(e -> gameEngine.stop());
         resetButton.addActionListener(e -> gameEngine.reset());
+        saveButton.addActionListener(e -> saveSnapshot());
+        loadButton.addActionListener(e -> loadSnapshot());
         
         controlPanel.add(startButton);
         controlPanel.add(stopButton);
         controlPanel.add(resetButton);
+        controlPanel.add(saveButton);
+        controlPanel.add(loadButton);
+        
+        // Replay controls
+        JButton openRecordingButton = new JButton("Open Recording");
+        JButton closeRecordingButton = new JButton("Close Recording");
+        playButton = new JToggleButton("Play");
+        replaySlider = new JSlider(0, REPLAY_SLIDER_STEPS, 0);
+        playButton.setEnabled(false);
+        replaySlider.setEnabled(false);
+        replayTimer = new Timer(Constants.FRAME_DELAY, e -> advanceReplay());
+        
+        openRecordingButton.addActionListener(e -> openRecording());
+        closeRecordingButton.addActionListener(e -> closeRecording());
+        playButton.addActionListener(e -> {
+            if (playButton.isSelected()) {
+                replayPlayer.play();
+                lastReplayFrame = System.nanoTime();
+                replayTimer.start();
+            } else {
+                replayPlayer.pause();
+                replayTimer.stop();
+            }
+        });
+        replaySlider.addChangeListener(e -> {
+            if (!updatingReplaySlider && replayPlayer.isOpen()) {
+                long first = replayPlayer.getFirstTick();
+                long span = replayPlayer.getLastTick() - first;
+                seekReplay(first + Math.round(span * (double) replaySlider.getValue() / REPLAY_SLIDER_STEPS));
+            }
+        });
+        
+        controlPanel.add(openRecordingButton);
+        controlPanel.add(playButton);
+        controlPanel.add(closeRecordingButton);
+        replayPanel.add(new JLabel("Replay: "));
+        replayPanel.add(replaySlider);
         
         // Speed control buttons
         speedPanel.add(new JLabel("Speed: "));
@@ -93,65 +163,386 @@ public class CollisionSimulator extends JFrame {
         speedPanel.add(speed2x);
         speedPanel.add(speed3x);
         
+        // Timing overlay; there is only something to show when statistics are recorded
+        JToggleButton statsButton = new JToggleButton("Stats");
+        statsButton.setEnabled(SimulationStats.ENABLED);
+        if (!SimulationStats.ENABLED) {
+            statsButton.setToolTipText("Start with -Dsimulator.stats=true to record timings");
+        }
+        statsButton.addActionListener(e -> {
+            statsOverlayVisible = statsButton.isSelected();
+            simulationPanel.repaint();
+        });
+        speedPanel.add(statsButton);
+        
         mainButtonPanel.add(controlPanel, BorderLayout.NORTH);
+        mainButtonPanel.add(replayPanel, BorderLayout.CENTER);
         mainButtonPanel.add(speedPanel, BorderLayout.SOUTH);
         
         return mainButtonPanel;
     }
     
+    private void saveSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            gameEngine.saveSnapshot(chooser.getSelectedFile().toPath());
+        } catch (IOException | IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, 
+                "Error saving snapshot: " + ex.getMessage(), 
+                "Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void loadSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            gameEngine.loadSnapshot(chooser.getSelectedFile().toPath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, 
+                "Error loading snapshot: " + ex.getMessage(), 
+                "Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void openRecording() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        gameEngine.stop();
+        try {
+            replayPlayer.open(chooser.getSelectedFile().toPath());
+        } catch (IOException ex) {
+            showReplayError("Error opening recording: " + ex.getMessage());
+            return;
+        }
+        playButton.setEnabled(true);
+        replaySlider.setEnabled(true);
+        updateReplayControls();
+        simulationPanel.repaint();
+    }
+    
+    private void closeRecording() {
+        replayTimer.stop();
+        try {
+            replayPlayer.close();
+        } catch (IOException ex) {
+            showReplayError("Error closing recording: " + ex.getMessage());
+        }
+        playButton.setEnabled(false);
+        replaySlider.setEnabled(false);
+        updateReplayControls();
+        simulationPanel.repaint();
+    }
+    
+    // Replay timer: plays the real time since the last frame, scaled by the speed buttons.
+    private void advanceReplay() {
+        long now = System.nanoTime();
+        double seconds = (now - lastReplayFrame) / 1e9 * gameEngine.getSpeedMultiplier();
+        lastReplayFrame = now;
+        try {
+            replayPlayer.advance(seconds);
+        } catch (IOException ex) {
+            showReplayError("Error reading recording: " + ex.getMessage());
+            closeRecording();
+            return;
+        }
+        if (!replayPlayer.isPlaying()) {
+            replayTimer.stop();
+        }
+        updateReplayControls();
+        simulationPanel.repaint();
+    }
+    
+    private void seekReplay(long tick) {
+        try {
+            replayPlayer.seek(tick);
+        } catch (IOException ex) {
+            showReplayError("Error reading recording: " + ex.getMessage());
+            closeRecording();
+            return;
+        }
+        simulationPanel.repaint();
+    }
+    
+    // Brings the play button and slider in line with the player without triggering a seek.
+    private void updateReplayControls() {
+        playButton.setSelected(replayPlayer.isPlaying());
+        updatingReplaySlider = true;
+        long first = replayPlayer.getFirstTick();
+        long span = replayPlayer.getLastTick() - first;
+        replaySlider.setValue(span <= 0 ? 0 : (int) ((replayPlayer.getTick() - first) * REPLAY_SLIDER_STEPS / span));
+        updatingReplaySlider = false;
+    }
+    
+    private void showReplayError(String message) {
+        JOptionPane.showMessageDialog(this, 
+            message, 
+            "Error", 
+            JOptionPane.ERROR_MESSAGE);
+    }
+    
     /**
      * Inner class for the simulation display panel.
+     * Shows the world through a camera: drag to pan, use the mouse wheel to zoom, double-click to fit
+     * the whole world again. Only the bodies in view are captured and drawn.
      */
     private class SimulationPanel extends JPanel {
         
+        private static final double ZOOM_STEP = 1.15; // Zoom factor per notch of the mouse wheel
+        
+        private Viewport view;       // Null until the panel has a size
+        private Point dragPoint;
+        
+        // Drawing resources are created once, so repainting does not allocate
+        private final Color boundaryColor = new Color(200, 200, 200);
+        private final BasicStroke boundaryStroke = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        private final Color infoBackground = new Color(255, 255, 255, 200);
+        private final Font infoFont = new Font("Arial", Font.BOLD, 14);
+        
+        // Info text is only rebuilt when the value it shows changes
+        private int shownShapeCount = -1;
+        private String shapeCountText;
+        private double shownSpeed = -1;
+        private String speedText;
+        
+        private final SnapshotRenderer renderer = new SnapshotRenderer();
+        
+        // Timing overlay, rebuilt a few times per second so the numbers stay readable
+        private static final long STATS_REFRESH_NANOS = 500_000_000L;
+        private final Font statsFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        private final String[] statsLines = new String[SimulationStats.Phase.values().length + 3];
+        private long statsRefreshTime;
+        private long shownTicks;
+        private long shownPairs;
+        private long shownContacts;
+        private long shownImpulses;
+        
         public SimulationPanel() {
             setBackground(Color.WHITE);
             // Remove the black border from the panel itself
+            
+            // Show the properties of the shape under the mouse pointer
+            ToolTipManager.sharedInstance().registerComponent(this);
+            
+            MouseAdapter camera = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    dragPoint = e.getPoint();
+                }
+                
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (dragPoint != null) {
+                        setView(getView().pan(e.getX() - dragPoint.x, e.getY() - dragPoint.y));
+                        dragPoint = e.getPoint();
+                    }
+                }
+                
+                @Override
+                public void mouseReleased(MouseEvent e) {
+                    dragPoint = null;
+                }
+                
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        setView(fitWorld());
+                    }
+                }
+                
+                @Override
+                public void mouseWheelMoved(MouseWheelEvent e) {
+                    double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+                    setView(getView().zoom(e.getX(), e.getY(), factor));
+                }
+            };
+            addMouseListener(camera);
+            addMouseMotionListener(camera);
+            addMouseWheelListener(camera);
+            
+            // A larger window shows more of the world at the same zoom
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    setView(view == null ? fitWorld() : view.resize(getWidth(), getHeight()));
+                }
+            });
+        }
+        
+        private Viewport getView() {
+            if (view == null) {
+                setView(fitWorld());
+            }
+            return view;
+        }
+        
+        private void setView(Viewport newView) {
+            view = newView;
+            gameEngine.setViewport(newView);
+            repaint();
+        }
+        
+        private Viewport fitWorld() {
+            return Viewport.fit(gameEngine.getWorldWidth(), gameEngine.getWorldHeight(), getWidth(), getHeight());
+        }
+        
+        @Override
+        public String getToolTipText(MouseEvent event) {
+            if (replayPlayer.isOpen()) {
+                return null; // A recording only has positions
+            }
+            Viewport current = getView();
+            Shape shape = gameEngine.findShapeAt(current.toWorldX(event.getX()), current.toWorldY(event.getY()));
+            if (shape == null) {
+                return null;
+            }
+            return String.format("Mass: %.1f, Velocity: (%.0f, %.0f)",
+                shape.getMass(), shape.getVelocityX(), shape.getVelocityY());
         }
         
         @Override
         protected void paintComponent(Graphics g) {
+            long start = SimulationStats.ENABLED ? System.nanoTime() : 0;
             super.paintComponent(g);
             Graphics2D g2d = (Graphics2D) g;
             
-            // Enable anti-aliasing for smoother shapes
+            // The scene is drawn into the renderer's back buffer and copied to the screen in one go
+            Viewport current = getView();
+            Graphics2D buffer = renderer.beginFrame(getWidth(), getHeight(), getBackground());
+            drawBoundary(buffer, current);
+            
+            // Draw the shapes in view from the latest published state, so painting never waits for the physics
+            WorldSnapshot snapshot = replayPlayer.isOpen() ? replayPlayer.getSnapshot() : gameEngine.getSnapshot();
+            renderer.drawBodies(snapshot, current);
+            g2d.drawImage(renderer.getImage(), 0, 0, null);
+            
+            // Enable anti-aliasing for smoother text
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            
+            // Draw info text with background for better readability
+            g2d.setColor(infoBackground);
+            g2d.fillRect(5, 5, 180, 65);
+            
+            g2d.setColor(Color.BLACK);
+            g2d.setFont(infoFont);
+            g2d.drawString(getShapeCountText(snapshot.getBodyCount()), 10, 20);
+            g2d.drawString(getStatusText(), 10, 40);
+            g2d.drawString(getSpeedText(gameEngine.getSpeedMultiplier()), 10, 60);
+            
+            if (SimulationStats.ENABLED) {
+                if (statsOverlayVisible) {
+                    drawStats(g2d);
+                }
+                gameEngine.getStats().record(SimulationStats.Phase.RENDER, System.nanoTime() - start);
+            }
+        }
+        
+        private void drawBoundary(Graphics2D g2d, Viewport current) {
+            // Enable anti-aliasing for smoother lines
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             
+            // Corners of the world on screen, from the current config; the walls may be far outside the
+            // panel when zoomed in
+            int left = (int) Math.round(current.toScreenX(0));
+            int top = (int) Math.round(current.toScreenY(0));
+            int right = (int) Math.round(current.toScreenX(gameEngine.getWorldWidth()));
+            int bottom = (int) Math.round(current.toScreenY(gameEngine.getWorldHeight()));
+            
             // Draw the simulation boundary with a more visible style
-            g2d.setColor(new Color(200, 200, 200));
-            g2d.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            g2d.drawRect(1, 1, Constants.SIMULATION_WIDTH - 3, Constants.SIMULATION_HEIGHT - 3);
+            g2d.setColor(boundaryColor);
+            g2d.setStroke(boundaryStroke);
+            g2d.drawRect(left + 1, top + 1, right - left - 3, bottom - top - 3);
             
             // Add corner markers for better visibility
             g2d.setColor(Color.GRAY);
             int markerSize = 10;
             // Top-left
-            g2d.fillRect(0, 0, markerSize, 3);
-            g2d.fillRect(0, 0, 3, markerSize);
+            g2d.fillRect(left, top, markerSize, 3);
+            g2d.fillRect(left, top, 3, markerSize);
             // Top-right
-            g2d.fillRect(Constants.SIMULATION_WIDTH - markerSize, 0, markerSize, 3);
-            g2d.fillRect(Constants.SIMULATION_WIDTH - 3, 0, 3, markerSize);
+            g2d.fillRect(right - markerSize, top, markerSize, 3);
+            g2d.fillRect(right - 3, top, 3, markerSize);
             // Bottom-left
-            g2d.fillRect(0, Constants.SIMULATION_HEIGHT - 3, markerSize, 3);
-            g2d.fillRect(0, Constants.SIMULATION_HEIGHT - markerSize, 3, markerSize);
+            g2d.fillRect(left, bottom - 3, markerSize, 3);
+            g2d.fillRect(left, bottom - markerSize, 3, markerSize);
             // Bottom-right
-            g2d.fillRect(Constants.SIMULATION_WIDTH - markerSize, Constants.SIMULATION_HEIGHT - 3, markerSize, 3);
-            g2d.fillRect(Constants.SIMULATION_WIDTH - 3, Constants.SIMULATION_HEIGHT - markerSize, 3, markerSize);
-            
-            // Draw all shapes
-            for (Shape shape : gameEngine.getShapes()) {
-                shape.draw(g2d);
+            g2d.fillRect(right - markerSize, bottom - 3, markerSize, 3);
+            g2d.fillRect(right - 3, bottom - markerSize, 3, markerSize);
+        }
+        
+        // Percentiles of each phase since start-up, and counters per tick since the last refresh.
+        private void drawStats(Graphics2D g2d) {
+            long now = System.nanoTime();
+            if (statsLines[0] == null || now - statsRefreshTime >= STATS_REFRESH_NANOS) {
+                refreshStats();
+                statsRefreshTime = now;
             }
-            
-            // Draw info text with background for better readability
-            g2d.setColor(new Color(255, 255, 255, 200));
-            g2d.fillRect(5, 5, 150, 65);
-            
+            g2d.setFont(statsFont);
+            FontMetrics metrics = g2d.getFontMetrics();
+            int lineHeight = metrics.getHeight();
+            int boxWidth = metrics.stringWidth(statsLines[0]) + 10;
+            int x = getWidth() - boxWidth - 5;
+            g2d.setColor(infoBackground);
+            g2d.fillRect(x, 5, boxWidth, statsLines.length * lineHeight + 8);
             g2d.setColor(Color.BLACK);
-            g2d.setFont(new Font("Arial", Font.BOLD, 14));
-            g2d.drawString("Shapes: " + gameEngine.getShapes().size(), 10, 20);
-            g2d.drawString("Status: " + (gameEngine.isRunning() ? "Running" : "Stopped"), 10, 40);
-            g2d.drawString("Speed: " + gameEngine.getSpeedMultiplier() + "x", 10, 60);
+            for (int line = 0; line < statsLines.length; line++) {
+                g2d.drawString(statsLines[line], x + 5, 5 + (line + 1) * lineHeight);
+            }
+        }
+        
+        private void refreshStats() {
+            SimulationStats stats = gameEngine.getStats();
+            statsLines[0] = String.format("%-13s%9s%9s%9s", "Phase (us)", "p50", "p99", "max");
+            for (SimulationStats.Phase phase : SimulationStats.Phase.values()) {
+                LatencyHistogram histogram = stats.getHistogram(phase);
+                statsLines[phase.ordinal() + 1] = String.format("%-13s%9.1f%9.1f%9.1f", phase.getLabel(),
+                        histogram.getP50() / 1e3, histogram.getP99() / 1e3, histogram.getMax() / 1e3);
+            }
+            long ticks = stats.getTicks();
+            long pairs = stats.getPairsTested();
+            long contacts = stats.getContactsFound();
+            long impulses = stats.getImpulsesApplied();
+            double elapsedTicks = Math.max(1, ticks - shownTicks);
+            int line = SimulationStats.Phase.values().length + 1;
+            statsLines[line] = String.format("%-13s%9.1f", "Pairs/tick", (pairs - shownPairs) / elapsedTicks);
+            statsLines[line + 1] = String.format("%-13s%9.1f", "Contacts/tick", (contacts - shownContacts) / elapsedTicks);
+            statsLines[line + 2] = String.format("%-13s%9.1f", "Impulses/tick", (impulses - shownImpulses) / elapsedTicks);
+            shownTicks = ticks;
+            shownPairs = pairs;
+            shownContacts = contacts;
+            shownImpulses = impulses;
+        }
+        
+        private String getStatusText() {
+            if (replayPlayer.isOpen()) {
+                return replayPlayer.isPlaying() ? "Status: Replaying" : "Status: Replay paused";
+            }
+            return gameEngine.isRunning() ? "Status: Running" : "Status: Stopped";
+        }
+        
+        private String getShapeCountText(int count) {
+            if (count != shownShapeCount) {
+                shownShapeCount = count;
+                shapeCountText = "Shapes: " + count;
+            }
+            return shapeCountText;
+        }
+        
+        private String getSpeedText(double speed) {
+            if (speed != shownSpeed) {
+                shownSpeed = speed;
+                speedText = "Speed: " + speed + "x";
+            }
+            return speedText;
         }
     }
     
@@ -0,0 +1,345 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * Dynamic bounding-volume hierarchy of axis-aligned boxes.
+ * Each leaf stores a "fat" box, which is the real box grown by a margin, so a body that moves
+ * only a little stays inside its leaf and the tree does not have to change. A leaf is only
+ * removed and reinserted once its body leaves the fat box. The tree is kept balanced with
+ * rotations, so queries stay O(log n) whatever the mix of body sizes.
+ * Nodes live in parallel arrays and are addressed by index to avoid per-node objects.
+ */
+public class DynamicAabbTree {
+
+    /**
+     * Receives the user data of every leaf a query hits. Return false to stop the query early.
+     */
+    public interface QueryHandler {
+        boolean onHit(int userData);
+    }
+
+    private static final int NULL_NODE = -1;
+
+    private final double margin;
+
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private int[] parent = new int[0];    // Doubles as the next link while a node is on the free list
+    private int[] child1 = new int[0];
+    private int[] child2 = new int[0];
+    private int[] height = new int[0];    // 0 for leaves, -1 for free nodes
+    private int[] userData = new int[0];
+
+    private int root = NULL_NODE;
+    private int freeList = NULL_NODE;
+    private int[] stack = new int[64];
+
+    public DynamicAabbTree(double margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("Margin cannot be negative: " + margin);
+        }
+        this.margin = margin;
+    }
+
+    /**
+     * Adds a leaf for the given box.
+     * @return The proxy id used to move or destroy the leaf later
+     */
+    public int createProxy(double x0, double y0, double x1, double y1, int data) {
+        int proxy = allocateNode();
+        setFatBox(proxy, x0, y0, x1, y1);
+        userData[proxy] = data;
+        height[proxy] = 0;
+        insertLeaf(proxy);
+        return proxy;
+    }
+
+    public void destroyProxy(int proxy) {
+        removeLeaf(proxy);
+        freeNode(proxy);
+    }
+
+    /**
+     * Updates a leaf after its body moved. The tree only changes if the box left the fat box.
+     * @return true if the leaf was reinserted
+     */
+    public boolean moveProxy(int proxy, double x0, double y0, double x1, double y1) {
+        if (minX[proxy] <= x0 && minY[proxy] <= y0 && maxX[proxy] >= x1 && maxY[proxy] >= y1) {
+            return false;
+        }
+        removeLeaf(proxy);
+        setFatBox(proxy, x0, y0, x1, y1);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    public int getUserData(int proxy) {
+        return userData[proxy];
+    }
+
+    // Removes every leaf but keeps the node storage for reuse.
+    public void clear() {
+        root = NULL_NODE;
+        freeList = NULL_NODE;
+        for (int node = parent.length - 1; node >= 0; node--) {
+            freeNode(node);
+        }
+    }
+
+    public int getHeight() {
+        return root == NULL_NODE ? 0 : height[root];
+    }
+
+    /**
+     * Reports every leaf whose fat box overlaps the rectangle. Touching boxes count as overlapping.
+     */
+    public void query(double x0, double y0, double x1, double y1, QueryHandler handler) {
+        if (root == NULL_NODE) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (maxX[node] < x0 || minX[node] > x1 || maxY[node] < y0 || minY[node] > y1) {
+                continue;
+            }
+            if (height[node] == 0) {
+                if (!handler.onHit(userData[node])) {
+                    return;
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    // Reports every leaf whose fat box contains the point.
+    public void queryPoint(double x, double y, QueryHandler handler) {
+        query(x, y, x, y, handler);
+    }
+
+    private void setFatBox(int node, double x0, double y0, double x1, double y1) {
+        minX[node] = x0 - margin;
+        minY[node] = y0 - margin;
+        maxX[node] = x1 + margin;
+        maxY[node] = y1 + margin;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[leaf] = NULL_NODE;
+            return;
+        }
+
+        // Walk down to the sibling that makes the tree's total perimeter grow the least
+        int index = root;
+        while (height[index] > 0) {
+            double area = perimeter(index);
+            double combinedArea = combinedPerimeter(index, leaf);
+            // Cost of pairing the leaf with this node, and the cost pushed down to any child
+            double cost = 2 * combinedArea;
+            double inheritanceCost = 2 * (combinedArea - area);
+
+            double cost1 = descendCost(child1[index], leaf) + inheritanceCost;
+            double cost2 = descendCost(child2[index], leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1[index] : child2[index];
+        }
+        int sibling = index;
+
+        // Give the sibling and the leaf a new shared parent
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        userData[newParent] = -1;
+        height[newParent] = height[sibling] + 1;
+        setUnion(newParent, sibling, leaf);
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        if (oldParent == NULL_NODE) {
+            root = newParent;
+        } else if (child1[oldParent] == sibling) {
+            child1[oldParent] = newParent;
+        } else {
+            child2[oldParent] = newParent;
+        }
+
+        refitAncestors(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+        int leafParent = parent[leaf];
+        int grandParent = parent[leafParent];
+        int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+
+        // The sibling takes the place of the removed parent
+        if (grandParent == NULL_NODE) {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(leafParent);
+            return;
+        }
+        if (child1[grandParent] == leafParent) {
+            child1[grandParent] = sibling;
+        } else {
+            child2[grandParent] = sibling;
+        }
+        parent[sibling] = grandParent;
+        freeNode(leafParent);
+        refitAncestors(grandParent);
+    }
+
+    // Rebalances and refits the boxes and heights from the given node up to the root.
+    private void refitAncestors(int node) {
+        while (node != NULL_NODE) {
+            node = balance(node);
+            height[node] = 1 + Math.max(height[child1[node]], height[child2[node]]);
+            setUnion(node, child1[node], child2[node]);
+            node = parent[node];
+        }
+    }
+
+    // Rotates a grandchild up if one side of the node is more than one level taller than the other.
+    private int balance(int a) {
+        if (height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+
+        if (balance > 1) {
+            // Rotate C up
+            int f = child1[c];
+            int g = child2[c];
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+            }
+            refitNode(a);
+            refitNode(c);
+            return c;
+        }
+        if (balance < -1) {
+            // Rotate B up
+            int d = child1[b];
+            int e = child2[b];
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+            }
+            refitNode(a);
+            refitNode(b);
+            return b;
+        }
+        return a;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL_NODE) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    private void refitNode(int node) {
+        height[node] = 1 + Math.max(height[child1[node]], height[child2[node]]);
+        setUnion(node, child1[node], child2[node]);
+    }
+
+    private double descendCost(int child, int leaf) {
+        double combined = combinedPerimeter(child, leaf);
+        return height[child] == 0 ? combined : combined - perimeter(child);
+    }
+
+    private double perimeter(int node) {
+        return 2 * ((maxX[node] - minX[node]) + (maxY[node] - minY[node]));
+    }
+
+    private double combinedPerimeter(int a, int b) {
+        double spanX = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        double spanY = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        return 2 * (spanX + spanY);
+    }
+
+    private void setUnion(int target, int a, int b) {
+        minX[target] = Math.min(minX[a], minX[b]);
+        minY[target] = Math.min(minY[a], minY[b]);
+        maxX[target] = Math.max(maxX[a], maxX[b]);
+        maxY[target] = Math.max(maxY[a], maxY[b]);
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            grow();
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+    }
+
+    private void grow() {
+        int oldCapacity = parent.length;
+        int capacity = Math.max(16, oldCapacity * 2);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        height = Arrays.copyOf(height, capacity);
+        userData = Arrays.copyOf(userData, capacity);
+        for (int node = capacity - 1; node >= oldCapacity; node--) {
+            freeNode(node);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package app;
+
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Broad phase backed by a dynamic AABB tree. Handles very uneven shape sizes better than a grid,
+ * and also answers point and rectangle queries in O(log n) for hit-testing and spawn checks.
+ */
+public class DynamicTreeBroadPhase implements SpatialIndex {
+
+    // How far a shape can drift before its leaf has to be reinserted
+    public static final double DEFAULT_MARGIN = 8.0;
+
+    private final DynamicAabbTree tree;
+    private final PairList pairs = new PairList();
+
+    private int[] proxies = new int[0];
+    private int syncedCount;
+
+    // Tight bounds of every shape, reused between ticks
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+
+    // State of the pair search for the shape currently being queried
+    private int queryShape;
+    private final DynamicAabbTree.QueryHandler pairCollector = this::collectPair;
+
+    public DynamicTreeBroadPhase() {
+        this(DEFAULT_MARGIN);
+    }
+
+    public DynamicTreeBroadPhase(double margin) {
+        this.tree = new DynamicAabbTree(margin);
+    }
+
+    @Override
+    public void findCandidatePairs(List<Shape> shapes, PairHandler handler) {
+        int count = shapes.size();
+        sync(shapes, 0);
+
+        pairs.clear();
+        for (int i = 0; i < count; i++) {
+            queryShape = i;
+            tree.query(minX[i], minY[i], maxX[i], maxY[i], pairCollector);
+        }
+
+        pairs.sort(count);
+        pairs.forEach(handler);
+    }
+
+    /**
+     * Reports the index of every shape whose bounds may contain the point.
+     * Shapes appended to the list since the last tick are picked up first. The others keep the bounds
+     * they had in the last findCandidatePairs, so only query the list that call was given.
+     */
+    public void queryPoint(List<Shape> shapes, double x, double y, DynamicAabbTree.QueryHandler handler) {
+        sync(shapes, syncedCount);
+        tree.queryPoint(x, y, handler);
+    }
+
+    /**
+     * Reports the index of every shape whose bounds may overlap the rectangle.
+     */
+    @Override
+    public void queryRectangle(List<Shape> shapes, double minX, double minY, double maxX, double maxY,
+                               DynamicAabbTree.QueryHandler handler) {
+        sync(shapes, syncedCount);
+        tree.query(minX, minY, maxX, maxY, handler);
+    }
+
+    // Brings the tree in line with the list, refreshing the bounds of shapes from index 'from' on.
+    private void sync(List<Shape> shapes, int from) {
+        int count = shapes.size();
+        if (count < syncedCount) {
+            // Shapes were removed, so the proxies no longer line up with the list
+            tree.clear();
+            syncedCount = 0;
+            from = 0;
+        }
+        ensureCapacity(count);
+
+        for (int i = from; i < count; i++) {
+            Shape shape = shapes.get(i);
+            minX[i] = shape.getMinX();
+            minY[i] = shape.getMinY();
+            maxX[i] = shape.getMaxX();
+            maxY[i] = shape.getMaxY();
+            if (i < syncedCount) {
+                tree.moveProxy(proxies[i], minX[i], minY[i], maxX[i], maxY[i]);
+            } else {
+                proxies[i] = tree.createProxy(minX[i], minY[i], maxX[i], maxY[i], i);
+            }
+        }
+        syncedCount = count;
+    }
+
+    // Keeps hits with a higher index whose tight bounds really overlap, so each pair is found once.
+    private boolean collectPair(int other) {
+        int i = queryShape;
+        if (other > i && maxX[i] >= minX[other] && maxX[other] >= minX[i]
+                && maxY[i] >= minY[other] && maxY[other] >= minY[i]) {
+            pairs.add(i, other);
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int count) {
+        if (minX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, minX.length * 2);
+        proxies = Arrays.copyOf(proxies, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+    }
+}
@@ -0,0 +1,374 @@
+package app;
+
+import control.BatchRunner;
+import control.BatchSummary;
+import control.GameEngine;
+import control.LatencyHistogram;
+import control.SceneFile;
+import control.SimulationStats;
+import control.SpawnSpec;
+import control.TrajectoryRecorder;
+import control.WorldConfig;
+import constants.Constants;
+import shapes.Circle;
+import shapes.CircleBatchKernel;
+import shapes.GameRectangle;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Command-line entry point that runs a scene without any window, e.g. on a server for parameter sweeps.
+ * Steps the engine a fixed number of ticks as fast as possible, then writes the final state and
+ * prints throughput statistics. Only uses the AWT value classes (Color), never the display.
+ *
+ * Usage: java -Djava.awt.headless=true -cp classes app.HeadlessSimulation [options]
+ *   --scene FILE        Scene to load (see SceneFile), instead of a random one
+ *   --snapshot FILE     Binary snapshot to load (see SnapshotFile), instead of a random scene
+ *   --random N          Number of random shapes to generate (default 1000)
+ *   --spawn N           Spawn N random shapes with the bulk generator instead, sized to fit the area
+ *   --overlap on|off    Whether spawned shapes may overlap (default off)
+ *   --mass MIN:MAX      Mass range of spawned shapes (default Constants.MIN_MASS:MAX_MASS)
+ *   --velocity MIN:MAX  Range of each velocity component of spawned shapes (default Constants.MIN/MAX_VELOCITY)
+ *   --worlds N          Run N independent spawned worlds in parallel instead, one per thread at a time,
+ *                       with seeds derived from --seed; prints a line per world as it finishes
+ *   --seed S            Seed for the random scene (default 0)
+ *   --ticks N           Number of ticks to simulate (default 1000)
+ *   --dt SECONDS        Length of one tick (default Constants.FIXED_TIMESTEP)
+ *   --bounds WxH        Size of the world, e.g. 100000x400 (default Constants.SIMULATION_WIDTH x HEIGHT)
+ *   --restitution E     Restitution of collisions between bodies, 0 to 1 (default Constants.RESTITUTION)
+ *   --broad-phase NAME  tree, grid, sap or brute (default tree)
+ *   --threads N         Threads for collision handling; above 1 uses the parallel pipeline (default 1).
+ *                       With --worlds, the number of worlds stepped at once instead
+ *   --partitions N      Split the area into N strips stepped by separate threads (default 1, off)
+ *   --engine NAME       fixed (ticked) or event (event-driven) (default fixed)
+ *   --ccd on|off        Continuous collision detection (default off)
+ *   --sleep on|off      Whether bodies at rest are put to sleep, dropping their leftover velocity (default off)
+ *   --output FILE       Where to write the final state (default: not written)
+ *   --save-snapshot FILE Where to write the final state as a binary snapshot (default: not written)
+ *   --record FILE       Where to record the trajectories (default: not recorded)
+ *   --record-every N    Record every N ticks (default 1)
+ *   --record-policy P   drop or block, when the recorder falls behind (default block)
+ * With -Dsimulator.stats=true the per-phase timings are printed at the end and published over JMX.
+ */
+public class HeadlessSimulation {
+
+    public static void main(String[] args) {
+        // Must be set before any AWT class looks at it
+        System.setProperty("java.awt.headless", "true");
+
+        Path scenePath = null;
+        Path outputPath = null;
+        Path snapshotPath = null;
+        Path saveSnapshotPath = null;
+        Path recordPath = null;
+        int recordEvery = 1;
+        TrajectoryRecorder.OverflowPolicy recordPolicy = TrajectoryRecorder.OverflowPolicy.BLOCK;
+        int randomCount = 1000;
+        int spawnCount = -1;
+        boolean overlap = false;
+        double[] massRange = {Constants.MIN_MASS, Constants.MAX_MASS};
+        double[] velocityRange = {Constants.MIN_VELOCITY, Constants.MAX_VELOCITY};
+        int worlds = 0;
+        long seed = 0;
+        long ticks = 1000;
+        WorldConfig config = new WorldConfig();
+        String broadPhaseName = "tree";
+        int threads = 1;
+        int partitions = 1;
+        boolean sleeping = false;
+        boolean continuous = false;
+        String engineName = "fixed";
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--scene": scenePath = Paths.get(value); break;
+                    case "--snapshot": snapshotPath = Paths.get(value); break;
+                    case "--save-snapshot": saveSnapshotPath = Paths.get(value); break;
+                    case "--record": recordPath = Paths.get(value); break;
+                    case "--record-every": recordEvery = Integer.parseInt(value); break;
+                    case "--record-policy": recordPolicy = parsePolicy(value); break;
+                    case "--random": randomCount = Integer.parseInt(value); break;
+                    case "--spawn": spawnCount = Integer.parseInt(value); break;
+                    case "--overlap": overlap = parseSwitch(option, value); break;
+                    case "--mass": massRange = parseRange(option, value); break;
+                    case "--velocity": velocityRange = parseRange(option, value); break;
+                    case "--worlds": worlds = Integer.parseInt(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--ticks": ticks = Long.parseLong(value); break;
+                    case "--dt": config.setTimestep(Double.parseDouble(value)); break;
+                    case "--bounds": parseBounds(config, option, value); break;
+                    case "--restitution": config.setRestitution(Double.parseDouble(value)); break;
+                    case "--broad-phase": broadPhaseName = value; break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--partitions": partitions = Integer.parseInt(value); break;
+                    case "--engine": engineName = value; break;
+                    case "--ccd": continuous = parseSwitch(option, value); break;
+                    case "--sleep": sleeping = parseSwitch(option, value); break;
+                    case "--output": outputPath = Paths.get(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+
+            if (worlds > 0) {
+                int count = spawnCount >= 0 ? spawnCount : randomCount;
+                runWorlds(worlds, threads, count, !overlap, massRange, velocityRange, seed, ticks, config,
+                        broadPhaseName, sleeping, continuous, isEventDriven(engineName));
+                return;
+            }
+
+            GameEngine engine = new GameEngine();
+            if (SimulationStats.ENABLED) {
+                engine.getStats().registerMBeans("headless");
+            }
+            engine.setWorldConfig(config);
+            engine.getCollisionDetector().setBroadPhase(createBroadPhase(broadPhaseName));
+            engine.getCollisionDetector().setParallelism(threads);
+            engine.setPartitionCount(partitions);
+            engine.setSleepingEnabled(sleeping);
+            engine.setContinuousCollisionEnabled(continuous);
+            engine.setEventDriven(isEventDriven(engineName));
+            if (snapshotPath != null) {
+                engine.loadSnapshot(snapshotPath);
+            } else if (spawnCount >= 0) {
+                SpawnSpec spec = spawnSpec(spawnCount, !overlap, massRange, velocityRange, seed, config);
+                long spawnStart = System.nanoTime();
+                int spawned = engine.spawnShapes(spec);
+                System.out.printf("Spawned %d of %d shapes in %.3f s%n", spawned, spawnCount,
+                        (System.nanoTime() - spawnStart) / 1e9);
+            } else {
+                engine.addShapes(scenePath != null ? SceneFile.read(scenePath) : randomScene(randomCount, seed, config));
+            }
+            int shapeCount = engine.getShapes().size();
+
+            TrajectoryRecorder recorder = null;
+            if (recordPath != null) {
+                recorder = new TrajectoryRecorder(recordPath, config.getTimestep(), recordEvery,
+                        TrajectoryRecorder.DEFAULT_KEYFRAME_INTERVAL, TrajectoryRecorder.DEFAULT_BUFFER_FRAMES,
+                        recordPolicy);
+                engine.setRecorder(recorder);
+            }
+
+            long startPairTests = engine.getPairTestCount();
+            double deltaTime = config.getTimestep();
+            long startTime = System.nanoTime();
+            for (long tick = 0; tick < ticks; tick++) {
+                engine.step(deltaTime);
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            long pairTests = engine.getPairTestCount() - startPairTests;
+            if (recorder != null) {
+                engine.setRecorder(null);
+                recorder.close();
+            }
+
+            System.out.printf("Simulated %d ticks of %d shapes in %.3f s%n", ticks, shapeCount, seconds);
+            System.out.printf("Ticks/s: %.1f%n", ticks / seconds);
+            System.out.printf("Pair tests/s: %.0f (%d in total)%n", pairTests / seconds, pairTests);
+            if (threads > 1 && partitions == 1) {
+                System.out.println("Circle pairs tested by the " + CircleBatchKernel.best().getName() + " kernel");
+            }
+            if (engine.isEventDriven()) {
+                System.out.printf("Events/s: %.0f (%d in total)%n", engine.getEventCount() / seconds, engine.getEventCount());
+            }
+            if (sleeping) {
+                PhysicsWorld world = engine.getWorld();
+                int asleep = 0;
+                for (int i = 0; i < world.size(); i++) {
+                    if (world.isAsleep(i)) {
+                        asleep++;
+                    }
+                }
+                System.out.printf("Asleep at the end: %d of %d bodies%n", asleep, world.size());
+            }
+
+            if (recorder != null) {
+                System.out.printf("Recorded %d frames (%d dropped, %.1f ms stalled), %d bytes to %s%n",
+                        recorder.getFramesWritten(), recorder.getFramesDropped(), recorder.getStallNanos() / 1e6,
+                        recorder.getBytesWritten(), recordPath);
+            }
+
+            if (SimulationStats.ENABLED) {
+                printStats(engine.getStats());
+            }
+
+            if (outputPath != null) {
+                SceneFile.write(outputPath, engine.getShapes());
+                System.out.println("Final state written to " + outputPath);
+            }
+            if (saveSnapshotPath != null) {
+                engine.saveSnapshot(saveSnapshotPath);
+                System.out.println("Final snapshot written to " + saveSnapshotPath);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e);
+            System.exit(1);
+        }
+    }
+
+    // Runs a Monte-Carlo batch: the same kind of scene in many worlds, each with a seed of its own.
+    private static void runWorlds(int worlds, int threads, int shapeCount, boolean nonOverlapping,
+                                  double[] massRange, double[] velocityRange, long seed, long ticks,
+                                  WorldConfig config, String broadPhaseName, boolean sleeping,
+                                  boolean continuous, boolean eventDriven) throws InterruptedException {
+        createBroadPhase(broadPhaseName); // Fail on a bad name before any world starts
+        List<SpawnSpec> scenes = new ArrayList<>(worlds);
+        for (int w = 0; w < worlds; w++) {
+            scenes.add(spawnSpec(shapeCount, nonOverlapping, massRange, velocityRange, BatchRunner.worldSeed(seed, w),
+                    config));
+        }
+
+        BatchRunner runner = new BatchRunner(threads);
+        runner.setTicks(ticks);
+        runner.setWorldConfig(config);
+        runner.setEngineSetup(engine -> {
+            engine.getCollisionDetector().setBroadPhase(createBroadPhase(broadPhaseName));
+            engine.setSleepingEnabled(sleeping);
+            engine.setContinuousCollisionEnabled(continuous);
+            engine.setEventDriven(eventDriven);
+        });
+        long startTime = System.nanoTime();
+        BatchSummary summary;
+        try {
+            summary = runner.run(scenes, System.out::println);
+        } finally {
+            runner.shutdown();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.printf("Simulated %d worlds of %d shapes, %d ticks each, in %.3f s on %d threads%n",
+                summary.getWorlds(), shapeCount, ticks, seconds, threads);
+        System.out.printf("Worlds/s: %.1f, ticks/s: %.1f, pair tests/s: %.0f%n", summary.getWorlds() / seconds,
+                summary.getTicks() / seconds, summary.getPairTests() / seconds);
+        System.out.printf("Energy ratio (final/initial): mean %.4f, std dev %.4f, min %.4f, max %.4f%n",
+                summary.getMeanEnergyRatio(), summary.getEnergyRatioStdDev(), summary.getMinEnergyRatio(),
+                summary.getMaxEnergyRatio());
+        if (summary.getSlowest() != null) {
+            System.out.printf("Slowest: world %d, %.3f s%n", summary.getSlowest().getWorld(),
+                    summary.getSlowest().getSeconds());
+        }
+    }
+
+    // A spawn spec over the whole world, sized so that the shapes can cover about 30% of it without overlapping.
+    private static SpawnSpec spawnSpec(int count, boolean nonOverlapping, double[] massRange,
+                                       double[] velocityRange, long seed, WorldConfig config) {
+        SpawnSpec spec = new SpawnSpec(count);
+        spec.setArea(0, 0, config.getWidth(), config.getHeight());
+        double maxSize = Math.min(Constants.MAX_SIZE, SpawnSpec.fittingSize(count,
+                config.getWidth(), config.getHeight(), 0.3));
+        spec.setSizeRange(Math.min(Constants.MIN_SIZE, maxSize / 2), maxSize);
+        spec.setMassRange(massRange[0], massRange[1]);
+        spec.setVelocityRange(velocityRange[0], velocityRange[1]);
+        spec.setNonOverlapping(nonOverlapping);
+        spec.setSeed(seed);
+        return spec;
+    }
+
+    private static void printStats(SimulationStats stats) {
+        System.out.printf("%-13s%10s%10s%10s%10s%10s  (microseconds)%n", "Phase", "mean", "p50", "p99", "p99.9", "max");
+        for (SimulationStats.Phase phase : SimulationStats.Phase.values()) {
+            LatencyHistogram histogram = stats.getHistogram(phase);
+            if (histogram.getCount() == 0) {
+                continue; // e.g. render, which never runs here
+            }
+            System.out.printf("%-13s%10.1f%10.1f%10.1f%10.1f%10.1f%n", phase.getLabel(), histogram.getMean() / 1e3,
+                    histogram.getP50() / 1e3, histogram.getP99() / 1e3, histogram.getP999() / 1e3,
+                    histogram.getMax() / 1e3);
+        }
+        long ticks = Math.max(1, stats.getTicks());
+        System.out.printf("Per tick: %.1f pairs tested, %.1f contacts, %.1f impulses%n",
+                (double) stats.getPairsTested() / ticks, (double) stats.getContactsFound() / ticks,
+                (double) stats.getImpulsesApplied() / ticks);
+    }
+
+    private static TrajectoryRecorder.OverflowPolicy parsePolicy(String name) {
+        switch (name) {
+            case "drop": return TrajectoryRecorder.OverflowPolicy.DROP;
+            case "block": return TrajectoryRecorder.OverflowPolicy.BLOCK;
+            default: throw new IllegalArgumentException("Unknown record policy " + name);
+        }
+    }
+
+    private static boolean isEventDriven(String name) {
+        switch (name) {
+            case "fixed": return false;
+            case "event": return true;
+            default: throw new IllegalArgumentException("Unknown engine " + name);
+        }
+    }
+
+    private static void parseBounds(WorldConfig config, String option, String value) {
+        String[] parts = value.split("x");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException(option + " must be WIDTHxHEIGHT: " + value);
+        }
+        config.setBounds(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private static double[] parseRange(String option, String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException(option + " must be MIN:MAX: " + value);
+        }
+        return new double[] {Double.parseDouble(parts[0]), Double.parseDouble(parts[1])};
+    }
+
+    private static boolean parseSwitch(String option, String value) {
+        switch (value) {
+            case "on": return true;
+            case "off": return false;
+            default: throw new IllegalArgumentException(option + " must be on or off: " + value);
+        }
+    }
+
+    static BroadPhase createBroadPhase(String name) {
+        switch (name) {
+            case "tree": return new DynamicTreeBroadPhase();
+            case "grid": return new UniformGridBroadPhase();
+            case "sap": return new SweepAndPruneBroadPhase();
+            case "brute": return new BruteForceBroadPhase();
+            default: throw new IllegalArgumentException("Unknown broad phase " + name);
+        }
+    }
+
+    // Generates shapes the same way the "Add Random Shape" button does, keeping away from the walls.
+    static List<Shape> randomScene(int count, long seed, WorldConfig config) {
+        Random random = new Random(seed);
+        List<Shape> shapes = new ArrayList<>(count);
+        double spawnWidth = Math.max(config.getWidth() - 2 * Constants.SPAWN_PADDING, 0);
+        double spawnHeight = Math.max(config.getHeight() - 2 * Constants.SPAWN_PADDING, 0);
+        for (int i = 0; i < count; i++) {
+            double mass = Constants.MIN_MASS + random.nextDouble() * (Constants.MAX_MASS - Constants.MIN_MASS);
+            double velocityX = Constants.MIN_VELOCITY + random.nextDouble() * (Constants.MAX_VELOCITY - Constants.MIN_VELOCITY);
+            double velocityY = Constants.MIN_VELOCITY + random.nextDouble() * (Constants.MAX_VELOCITY - Constants.MIN_VELOCITY);
+            double size = Constants.MIN_SIZE + random.nextDouble() * (Constants.MAX_SIZE - Constants.MIN_SIZE);
+            double x = random.nextDouble() * spawnWidth + Constants.SPAWN_PADDING;
+            double y = random.nextDouble() * spawnHeight + Constants.SPAWN_PADDING;
+            Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+
+            Shape shape = random.nextBoolean()
+                    ? new Circle(x, y, size / 2, mass, color)
+                    : new GameRectangle(x, y, size, size, mass, color);
+            shape.setVelocity(velocityX, velocityY);
+            shapes.add(shape);
+        }
+        return shapes;
+    }
+}
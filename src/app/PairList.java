@@ -0,0 +1,96 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of index pairs packed into longs, reused between ticks so the
+ * broad phase does not allocate once it has reached its working size.
+ */
+public class PairList {
+
+    private long[] pairs = new long[64];
+    private int size;
+
+    // Scratch space for the counting sort
+    private long[] sorted = new long[0];
+    private int[] counts = new int[0];
+
+    public void add(int first, int second) {
+        if (size == pairs.length) {
+            pairs = Arrays.copyOf(pairs, size * 2);
+        }
+        // Pack with the smaller index in the high bits so sorting gives nested-loop order
+        pairs[size++] = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+    }
+
+    // Appends every pair of another list.
+    public void addAll(PairList other) {
+        if (size + other.size > pairs.length) {
+            pairs = Arrays.copyOf(pairs, Math.max(size + other.size, pairs.length * 2));
+        }
+        System.arraycopy(other.pairs, 0, pairs, size, other.size);
+        size += other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFirst(int index) {
+        return (int) (pairs[index] >>> 32);
+    }
+
+    public int getSecond(int index) {
+        return (int) pairs[index];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the pairs into the order the brute-force nested loop would visit them.
+     * Uses two stable counting-sort passes, so it runs in O(pairs + indexBound) and does not allocate
+     * once the scratch arrays have grown to size.
+     * @param indexBound One more than the largest index in any pair, i.e. the number of shapes
+     */
+    public void sort(int indexBound) {
+        if (sorted.length < pairs.length) {
+            sorted = new long[pairs.length];
+        }
+        if (counts.length < indexBound + 1) {
+            counts = new int[indexBound + 1];
+        }
+        // Least significant key first: by second index, then stably by first index
+        countingSort(pairs, sorted, 0, indexBound);
+        countingSort(sorted, pairs, 32, indexBound);
+    }
+
+    /**
+     * Same order as sort(indexBound), by a comparison sort. Cheaper when there are far fewer pairs
+     * than shapes, e.g. for the pairs of one part of a large scene.
+     */
+    public void sortByIndex() {
+        Arrays.sort(pairs, 0, size);
+    }
+
+    private void countingSort(long[] from, long[] to, int shift, int indexBound) {
+        Arrays.fill(counts, 0, indexBound + 1, 0);
+        for (int k = 0; k < size; k++) {
+            counts[(int) (from[k] >>> shift) + 1]++;
+        }
+        for (int b = 0; b < indexBound; b++) {
+            counts[b + 1] += counts[b];
+        }
+        for (int k = 0; k < size; k++) {
+            to[counts[(int) (from[k] >>> shift)]++] = from[k];
+        }
+    }
+
+    // Sends every pair to the handler in list order.
+    public void forEach(BroadPhase.PairHandler handler) {
+        for (int k = 0; k < size; k++) {
+            handler.onPair(getFirst(k), getSecond(k));
+        }
+    }
+}
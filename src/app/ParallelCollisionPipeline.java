@@ -0,0 +1,363 @@
+package app;
+
+import control.SimulationStats;
+import shapes.CircleBatchKernel;
+import shapes.CollisionAlgorithm;
+import shapes.CollisionRegistry;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-threaded collision detection and resolution.
+ * The broad phase (a sweep along x) and the exact pair tests run across a ForkJoinPool.
+ * Resolving a contact changes both shapes, so the contacts are split into batches with a greedy
+ * graph colouring: no two contacts in a batch share a shape, and each batch is resolved in parallel
+ * with no locking. Batches, colours and pair order only depend on the scene, so the results are the
+ * same for every thread count and every run.
+ */
+public class ParallelCollisionPipeline {
+
+    // Contacts of shapes that already touch this many batches are resolved one by one at the end
+    private static final int MAX_COLORS = 64;
+    // Work items per chunk below which a loop is not worth splitting
+    private static final int MIN_CHUNK = 256;
+
+    private interface ChunkBody {
+        void run(int chunk, int start, int end);
+    }
+
+    private final ForkJoinPool pool;
+    private final int chunkCount;
+    private final PairList[] chunkPairs;
+    private final PairList candidates = new PairList();
+    private final PairList contacts = new PairList();
+    private final CircleBatchKernel circleKernel = CircleBatchKernel.best();
+
+    // Per-shape state, reused between ticks
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private float[] sortMinX = new float[0];  // minX rounded down to a float, used as the sort key
+    private long[] sortedShapes = new long[0];
+    private long[] usedColors = new long[0];
+
+    // Per-pair state
+    private boolean[] touching = new boolean[0];
+    private int[] circleFirst = new int[0];    // World indices of the circle pairs handed to the circle kernel
+    private int[] circleSecond = new int[0];
+    private int[] circlePair = new int[0];     // Candidate each circle pair came from
+    private boolean[] circleTouching = new boolean[0];
+    private boolean[] impulseApplied = new boolean[0]; // Per contact, only filled in for statistics
+    private int[] contactColor = new int[0];
+    private int[] batchOrder = new int[0];
+    private final int[] batchStart = new int[MAX_COLORS + 2];
+    private final int[] batchCursor = new int[MAX_COLORS + 2];
+
+    private List<Shape> shapes;
+
+    public ParallelCollisionPipeline(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.chunkCount = threads * 4;
+        this.chunkPairs = new PairList[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            chunkPairs[c] = new PairList();
+        }
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    // Stops the worker threads. The pipeline cannot be used afterwards.
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Detects and resolves all collisions between the shapes.
+     * @return The number of exact pair tests run
+     */
+    public int detectAndResolveCollisions(List<Shape> shapes) {
+        return detectAndResolveCollisions(shapes, null);
+    }
+
+    /**
+     * Same as detectAndResolveCollisions(shapes), also recording phase timings and counters
+     * when SimulationStats.ENABLED. The colouring is counted as part of the resolve phase.
+     * @param stats Where to record, or null
+     */
+    public int detectAndResolveCollisions(List<Shape> shapes, SimulationStats stats) {
+        this.shapes = shapes;
+        try {
+            int count = shapes.size();
+            ensureShapeCapacity(count);
+            if (SimulationStats.ENABLED && stats != null) {
+                long start = System.nanoTime();
+                findCandidates(count);
+                long broadPhaseEnd = System.nanoTime();
+                testCandidates(count);
+                long narrowPhaseEnd = System.nanoTime();
+                colorContacts(count);
+                resolveBatches();
+                long end = System.nanoTime();
+                stats.record(SimulationStats.Phase.BROAD_PHASE, broadPhaseEnd - start);
+                stats.record(SimulationStats.Phase.NARROW_PHASE, narrowPhaseEnd - broadPhaseEnd);
+                stats.record(SimulationStats.Phase.RESOLVE, end - narrowPhaseEnd);
+                stats.addPairsTested(candidates.size());
+                stats.addContactsFound(contacts.size());
+                stats.addImpulsesApplied(countImpulses());
+            } else {
+                findCandidates(count);
+                testCandidates(count);
+                colorContacts(count);
+                resolveBatches();
+            }
+            return candidates.size();
+        } finally {
+            this.shapes = null;
+        }
+    }
+
+    // Broad phase: sort the shapes by left edge, then sweep every shape against the ones after it.
+    private void findCandidates(int count) {
+        parallelChunks(count, (chunk, start, end) -> {
+            for (int i = start; i < end; i++) {
+                Shape shape = shapes.get(i);
+                minX[i] = shape.getMinX();
+                minY[i] = shape.getMinY();
+                maxX[i] = shape.getMaxX();
+                maxY[i] = shape.getMaxY();
+                // Round down so a float key never sorts a shape after a shape further right
+                float key = (float) minX[i];
+                if (key > minX[i]) {
+                    key = Math.nextDown(key);
+                }
+                sortMinX[i] = key;
+                int bits = Float.floatToIntBits(key);
+                bits ^= (bits >> 31) & 0x7FFFFFFF; // Makes the bits of negative floats sort as signed ints
+                sortedShapes[i] = ((long) bits << 32) | i;
+            }
+        });
+        Arrays.parallelSort(sortedShapes, 0, count);
+
+        parallelChunks(count, (chunk, start, end) -> {
+            PairList pairs = chunkPairs[chunk];
+            pairs.clear();
+            for (int p = start; p < end; p++) {
+                int i = (int) sortedShapes[p];
+                for (int q = p + 1; q < count; q++) {
+                    int j = (int) sortedShapes[q];
+                    // Keys only grow from here, and each key is at most the real left edge
+                    if (sortMinX[j] > maxX[i]) {
+                        break;
+                    }
+                    if (minX[j] <= maxX[i] && maxX[j] >= minX[i] && maxY[i] >= minY[j] && maxY[j] >= minY[i]) {
+                        pairs.add(i, j);
+                    }
+                }
+            }
+        });
+
+        candidates.clear();
+        for (int c = 0; c < chunkCount; c++) {
+            candidates.addAll(chunkPairs[c]);
+        }
+        candidates.sort(count);
+    }
+
+    /**
+     * Narrow phase: the exact tests only read the shapes, so they can all run at once.
+     * Pairs of circles of the world of the first shape are gathered per chunk and tested together by
+     * the circle kernel; every other pair is tested through the collision registry.
+     */
+    private void testCandidates(int count) {
+        int candidateCount = candidates.size();
+        if (touching.length < candidateCount) {
+            int capacity = Math.max(candidateCount, touching.length * 2);
+            touching = new boolean[capacity];
+            circleFirst = new int[capacity];
+            circleSecond = new int[capacity];
+            circlePair = new int[capacity];
+            circleTouching = new boolean[capacity];
+        }
+        PhysicsWorld world = count > 0 && shapes.get(0) instanceof PhysicsBody
+                ? ((PhysicsBody) shapes.get(0)).getWorld() : null;
+        parallelChunks(candidateCount, (chunk, start, end) -> {
+            // A chunk gathers its circle pairs into its own range [start, end) of the circle arrays
+            int circles = start;
+            for (int k = start; k < end; k++) {
+                Shape shape1 = shapes.get(candidates.getFirst(k));
+                Shape shape2 = shapes.get(candidates.getSecond(k));
+                // Two sleeping shapes cannot start touching
+                if (shape1.isAsleep() && shape2.isAsleep()) {
+                    touching[k] = false;
+                } else if (isCircleOf(shape1, world) && isCircleOf(shape2, world)) {
+                    circleFirst[circles] = ((PhysicsBody) shape1).getIndex();
+                    circleSecond[circles] = ((PhysicsBody) shape2).getIndex();
+                    circlePair[circles++] = k;
+                } else {
+                    touching[k] = CollisionRegistry.lookup(shape1.getTypeId(), shape2.getTypeId()).collided(shape1, shape2);
+                }
+            }
+            if (circles > start) {
+                circleKernel.test(world, circleFirst, circleSecond, start, circles, circleTouching);
+                for (int c = start; c < circles; c++) {
+                    touching[circlePair[c]] = circleTouching[c];
+                }
+            }
+        });
+
+        contacts.clear();
+        for (int k = 0; k < candidateCount; k++) {
+            if (touching[k]) {
+                contacts.add(candidates.getFirst(k), candidates.getSecond(k));
+            }
+        }
+    }
+
+    private static boolean isCircleOf(Shape shape, PhysicsWorld world) {
+        return shape.getTypeId() == PhysicsWorld.TYPE_CIRCLE && shape instanceof PhysicsBody
+                && ((PhysicsBody) shape).getWorld() == world;
+    }
+
+    // Gives every contact the lowest batch number not yet used by either of its shapes.
+    private void colorContacts(int count) {
+        int contactCount = contacts.size();
+        if (contactColor.length < contactCount) {
+            contactColor = new int[Math.max(contactCount, contactColor.length * 2)];
+            batchOrder = new int[contactColor.length];
+            impulseApplied = new boolean[contactColor.length];
+        }
+        Arrays.fill(usedColors, 0, count, 0L);
+        Arrays.fill(batchStart, 0);
+
+        for (int k = 0; k < contactCount; k++) {
+            int first = contacts.getFirst(k);
+            int second = contacts.getSecond(k);
+            int color = Long.numberOfTrailingZeros(~(usedColors[first] | usedColors[second]));
+            if (color < MAX_COLORS) {
+                usedColors[first] |= 1L << color;
+                usedColors[second] |= 1L << color;
+            }
+            contactColor[k] = color;
+            batchStart[color + 1]++;
+        }
+
+        // Counting sort of the contacts by batch, keeping pair order within each batch
+        for (int color = 0; color <= MAX_COLORS; color++) {
+            batchStart[color + 1] += batchStart[color];
+        }
+        System.arraycopy(batchStart, 0, batchCursor, 0, batchStart.length);
+        for (int k = 0; k < contactCount; k++) {
+            batchOrder[batchCursor[contactColor[k]]++] = k;
+        }
+    }
+
+    private void resolveBatches() {
+        for (int color = 0; color < MAX_COLORS; color++) {
+            int start = batchStart[color];
+            int size = batchStart[color + 1] - start;
+            if (size == 0) {
+                break; // Colours are handed out lowest first, so every later batch is empty too
+            }
+            parallelChunks(size, (chunk, from, to) -> {
+                for (int b = from; b < to; b++) {
+                    resolveContact(batchOrder[start + b]);
+                }
+            });
+        }
+        // Contacts that did not fit into any batch are resolved one at a time
+        for (int b = batchStart[MAX_COLORS]; b < batchStart[MAX_COLORS + 1]; b++) {
+            resolveContact(batchOrder[b]);
+        }
+        // Sleep bookkeeping changes shared state, so the contacts are reported on this thread
+        for (int k = 0; k < contacts.size(); k++) {
+            shapes.get(contacts.getFirst(k)).onContact(shapes.get(contacts.getSecond(k)));
+        }
+    }
+
+    private void resolveContact(int contact) {
+        Shape shape1 = shapes.get(contacts.getFirst(contact));
+        Shape shape2 = shapes.get(contacts.getSecond(contact));
+        CollisionAlgorithm algorithm = CollisionRegistry.lookup(shape1.getTypeId(), shape2.getTypeId());
+        // An earlier batch may already have pushed the shapes apart
+        boolean applied = algorithm.collided(shape1, shape2) && algorithm.resolve(shape1, shape2);
+        if (SimulationStats.ENABLED) {
+            impulseApplied[contact] = applied;
+        }
+    }
+
+    private int countImpulses() {
+        int impulses = 0;
+        for (int k = 0; k < contacts.size(); k++) {
+            if (impulseApplied[k]) {
+                impulses++;
+            }
+        }
+        return impulses;
+    }
+
+    // Splits [0, count) into fixed chunks and runs them on the pool. Small loops run on the calling thread.
+    private void parallelChunks(int count, ChunkBody body) {
+        int chunks = Math.min(chunkCount, Math.max(1, count / MIN_CHUNK));
+        if (chunks == 1) {
+            body.run(0, 0, count);
+            return;
+        }
+        pool.invoke(new ChunkTask(body, count, chunks, 0, chunks));
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkBody body;
+        private final int count;
+        private final int chunks;
+        private final int firstChunk;
+        private final int endChunk;
+
+        ChunkTask(ChunkBody body, int count, int chunks, int firstChunk, int endChunk) {
+            this.body = body;
+            this.count = count;
+            this.chunks = chunks;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk == 1) {
+                int start = (int) ((long) firstChunk * count / chunks);
+                int end = (int) ((long) endChunk * count / chunks);
+                body.run(firstChunk, start, end);
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ChunkTask(body, count, chunks, firstChunk, middle),
+                      new ChunkTask(body, count, chunks, middle, endChunk));
+        }
+    }
+
+    private void ensureShapeCapacity(int count) {
+        if (minX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, minX.length * 2);
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        sortMinX = new float[capacity];
+        sortedShapes = new long[capacity];
+        usedColors = new long[capacity];
+    }
+}
@@ -0,0 +1,452 @@
+package app;
+
+import control.SimulationStats;
+import shapes.CollisionAlgorithm;
+import shapes.CollisionRegistry;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Steps one large world on several threads by cutting the simulation area into vertical strips.
+ * Every tick the bodies are dealt out again by position, so they migrate between strips as they move.
+ * An awake body whose box lies inside one strip belongs to that strip alone; a body whose box crosses
+ * a border is mirrored as a ghost into every strip it reaches. Each strip finds the overlapping pairs
+ * among its bodies and ghosts, and resolves the groups of pairs that involve no ghost, all strips
+ * at once. The groups that reach a ghost are resolved on the calling thread afterwards, together
+ * with those that reach a sleeping body, since waking one wakes its whole island wherever it is.
+ * Moving the bodies and bouncing them off the walls are split across the threads as well.
+ *
+ * Resolving a pair only changes its two bodies, and every body sees its pairs in the same order as
+ * in the single-threaded engine, so the results are bit for bit those of CollisionDetector with
+ * the tree, grid or sweep-and-prune broad phase; the tolerance is zero. Only the brute-force broad
+ * phase, which also tests pairs whose boxes came to overlap earlier in the same tick, can differ.
+ * Dense clusters that reach across a border are resolved on one thread, so strips should be much
+ * wider than the bodies.
+ */
+public class PartitionedSimulation {
+
+    // Bodies per chunk below which moving them is not worth splitting
+    private static final int MIN_CHUNK = 4096;
+
+    private interface ChunkBody {
+        void run(int chunk, int start, int end);
+    }
+
+    // The bodies and pairs of one strip, reused between ticks
+    private static final class Strip {
+        int[] members = new int[16];   // Bodies whose boxes reach into the strip
+        int memberCount;
+        long[] sorted = new long[16];  // Members by left edge, packed as in ParallelCollisionPipeline
+        final PairList pairs = new PairList();       // Overlapping pairs this strip is responsible for
+        final PairList localPairs = new PairList();  // Those that only involve bodies owned by the strip
+        final PairList ghostPairs = new PairList();  // Those whose group reaches a ghost or a sleeping body
+        final PairList contacts = new PairList();
+        long pairTests;
+        long impulses;
+
+        void add(int body) {
+            if (memberCount == members.length) {
+                members = Arrays.copyOf(members, memberCount * 2);
+                sorted = new long[members.length];
+            }
+            members[memberCount++] = body;
+        }
+    }
+
+    private final CollisionDetector detector;
+    private final ForkJoinPool pool;
+    private final Strip[] strips;
+    private final Strip border = new Strip(); // Pairs and counters of the part resolved on the calling thread
+    private final PairList contacts = new PairList();
+    private long pairTestCount;
+
+    // Per-shape state
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private float[] sortMinX = new float[0];
+    private int[] firstStrip = new int[0];
+    private int[] lastStrip = new int[0];
+    private boolean[] owned = new boolean[0];        // Awake, with a box inside a single strip
+    private boolean[] asleep = new boolean[0];       // Asleep at the start of the tick
+    private int[] groupParent = new int[0];          // Union-find over the pairs inside one strip
+    private boolean[] groupReachesGhost = new boolean[0]; // Kept at the root of each group
+
+    // The tick being stepped, read by the chunk bodies below
+    private List<Shape> shapes;
+    private PhysicsWorld world;
+    private double stepTime;
+    private int areaWidth;
+    private int areaHeight;
+    private double stripScale; // Strips per unit of x
+
+    private final ChunkBody integrateChunk = (chunk, start, end) -> world.integrate(stepTime, start, end);
+    private final ChunkBody boundsChunk = (chunk, start, end) -> computeBounds(start, end);
+    private final ChunkBody findPairsChunk = (chunk, start, end) -> findPairs(chunk);
+    private final ChunkBody resolveChunk;
+    private final ChunkBody wallChunk;
+
+    /**
+     * @param detector Handles the walls, as in the single-threaded engine
+     * @param stripCount Number of strips; more strips than threads evens out crowded areas
+     * @param threads Number of worker threads
+     */
+    public PartitionedSimulation(CollisionDetector detector, int stripCount, int threads) {
+        if (stripCount < 1 || threads < 1) {
+            throw new IllegalArgumentException("Strip and thread counts must be at least 1: " + stripCount + ", " + threads);
+        }
+        this.detector = detector;
+        this.pool = new ForkJoinPool(threads);
+        this.strips = new Strip[stripCount];
+        for (int s = 0; s < stripCount; s++) {
+            strips[s] = new Strip();
+        }
+        this.resolveChunk = (chunk, start, end) -> resolveLocalPairs(strips[chunk]);
+        this.wallChunk = (chunk, start, end) -> detector.checkWallCollisions(world, areaWidth, areaHeight, start, end);
+    }
+
+    public int getStripCount() {
+        return strips.length;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    // Number of exact pair tests run so far, for throughput statistics.
+    public long getPairTestCount() {
+        return pairTestCount;
+    }
+
+    // Stops the worker threads. The simulation cannot be used afterwards.
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Moves every shape, resolves the collisions at the new positions and bounces the shapes off the
+     * walls of a width x height area, like one plain tick of GameEngine.
+     * @param shapes Every shape, with the bodies of the world in the same order as in the world
+     * @param otherShapes The shapes that are not in the world
+     * @param stats Where to record phase timings when SimulationStats.ENABLED, or null
+     */
+    public void advance(List<Shape> shapes, PhysicsWorld world, List<Shape> otherShapes, double deltaTime,
+                        int width, int height, SimulationStats stats) {
+        this.shapes = shapes;
+        this.world = world;
+        this.stepTime = deltaTime;
+        this.areaWidth = width;
+        this.areaHeight = height;
+        try {
+            boolean timed = SimulationStats.ENABLED && stats != null;
+            long start = timed ? System.nanoTime() : 0;
+            parallelChunks(world.size(), integrateChunk);
+            for (int i = 0; i < otherShapes.size(); i++) {
+                otherShapes.get(i).move(deltaTime);
+            }
+            long integrateEnd = timed ? System.nanoTime() : 0;
+
+            int count = shapes.size();
+            ensureShapeCapacity(count);
+            stripScale = strips.length / (double) width;
+            parallelChunks(count, boundsChunk);
+            dealOut(count);
+            forEachStrip(findPairsChunk);
+            long broadPhaseEnd = timed ? System.nanoTime() : 0;
+
+            long testsBefore = pairTestCount;
+            forEachStrip(resolveChunk);
+            resolveGhostPairs();
+            reportLocalContacts();
+            long narrowPhaseEnd = timed ? System.nanoTime() : 0;
+
+            parallelChunks(world.size(), wallChunk);
+            detector.checkWallCollisions(otherShapes, width, height);
+
+            if (timed) {
+                long end = System.nanoTime();
+                stats.record(SimulationStats.Phase.INTEGRATE, integrateEnd - start);
+                stats.record(SimulationStats.Phase.BROAD_PHASE, broadPhaseEnd - integrateEnd);
+                // Tests and impulses are interleaved per pair, so resolving counts as narrow phase here
+                stats.record(SimulationStats.Phase.NARROW_PHASE, narrowPhaseEnd - broadPhaseEnd);
+                stats.record(SimulationStats.Phase.WALLS, end - narrowPhaseEnd);
+                stats.addPairsTested(pairTestCount - testsBefore);
+                stats.addContactsFound(contacts.size());
+                stats.addImpulsesApplied(countImpulses());
+            }
+        } finally {
+            this.shapes = null;
+            this.world = null;
+        }
+    }
+
+    private void computeBounds(int start, int end) {
+        for (int i = start; i < end; i++) {
+            Shape shape = shapes.get(i);
+            minX[i] = shape.getMinX();
+            minY[i] = shape.getMinY();
+            maxX[i] = shape.getMaxX();
+            maxY[i] = shape.getMaxY();
+            // Round down so a float key never sorts a shape after a shape further right
+            float key = (float) minX[i];
+            if (key > minX[i]) {
+                key = Math.nextDown(key);
+            }
+            sortMinX[i] = key;
+            firstStrip[i] = stripOf(minX[i]);
+            lastStrip[i] = stripOf(maxX[i]);
+            asleep[i] = shape.isAsleep();
+            owned[i] = firstStrip[i] == lastStrip[i] && !asleep[i];
+        }
+    }
+
+    // Shapes outside the area count as being in the strips at its edges.
+    private int stripOf(double x) {
+        return Math.max(0, Math.min(strips.length - 1, (int) Math.floor(x * stripScale)));
+    }
+
+    // Migration: every body goes to each strip its box reaches.
+    private void dealOut(int count) {
+        for (Strip strip : strips) {
+            strip.memberCount = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            for (int s = firstStrip[i]; s <= lastStrip[i]; s++) {
+                strips[s].add(i);
+            }
+        }
+    }
+
+    /**
+     * Broad phase of one strip: a sweep along x over its members. A pair is kept by the strip that
+     * holds the left edge of the overlap of the two boxes, which lies in both, so every pair is
+     * found exactly once. The pairs are then split into those whose whole group is owned by the
+     * strip and those whose group reaches a ghost or a sleeping body.
+     */
+    private void findPairs(int stripIndex) {
+        Strip strip = strips[stripIndex];
+        int count = strip.memberCount;
+        for (int k = 0; k < count; k++) {
+            int i = strip.members[k];
+            int bits = Float.floatToIntBits(sortMinX[i]);
+            bits ^= (bits >> 31) & 0x7FFFFFFF; // Makes the bits of negative floats sort as signed ints
+            strip.sorted[k] = ((long) bits << 32) | i;
+        }
+        Arrays.sort(strip.sorted, 0, count);
+
+        PairList pairs = strip.pairs;
+        pairs.clear();
+        for (int p = 0; p < count; p++) {
+            int i = (int) strip.sorted[p];
+            for (int q = p + 1; q < count; q++) {
+                int j = (int) strip.sorted[q];
+                // Keys only grow from here, and each key is at most the real left edge
+                if (sortMinX[j] > maxX[i]) {
+                    break;
+                }
+                if (minX[j] <= maxX[i] && maxX[j] >= minX[i] && maxY[i] >= minY[j] && maxY[j] >= minY[i]
+                        && stripOf(Math.max(minX[i], minX[j])) == stripIndex) {
+                    pairs.add(i, j);
+                }
+            }
+        }
+        pairs.sortByIndex();
+
+        // Group the owned bodies by the pairs between them. No other strip touches them.
+        for (int k = 0; k < count; k++) {
+            int i = strip.members[k];
+            if (owned[i]) {
+                groupParent[i] = i;
+                groupReachesGhost[i] = false;
+            }
+        }
+        for (int k = 0; k < pairs.size(); k++) {
+            int i = pairs.getFirst(k);
+            int j = pairs.getSecond(k);
+            if (owned[i] && owned[j]) {
+                int rootI = findGroup(i);
+                int rootJ = findGroup(j);
+                if (rootI != rootJ) {
+                    groupParent[rootI] = rootJ;
+                }
+            }
+        }
+        for (int k = 0; k < pairs.size(); k++) {
+            int i = pairs.getFirst(k);
+            int j = pairs.getSecond(k);
+            if (owned[i] != owned[j]) {
+                groupReachesGhost[findGroup(owned[i] ? i : j)] = true;
+            }
+        }
+
+        strip.localPairs.clear();
+        strip.ghostPairs.clear();
+        for (int k = 0; k < pairs.size(); k++) {
+            int i = pairs.getFirst(k);
+            int j = pairs.getSecond(k);
+            if (owned[i] && owned[j] && !groupReachesGhost[findGroup(i)]) {
+                strip.localPairs.add(i, j);
+            } else {
+                strip.ghostPairs.add(i, j);
+            }
+        }
+    }
+
+    private int findGroup(int i) {
+        while (groupParent[i] != i) {
+            groupParent[i] = groupParent[groupParent[i]]; // Path halving
+            i = groupParent[i];
+        }
+        return i;
+    }
+
+    // Owned bodies are awake, so none of these pairs is skipped or wakes anything.
+    private void resolveLocalPairs(Strip strip) {
+        strip.contacts.clear();
+        strip.impulses = 0;
+        for (int k = 0; k < strip.localPairs.size(); k++) {
+            resolvePair(strip.localPairs.getFirst(k), strip.localPairs.getSecond(k), strip);
+        }
+    }
+
+    /**
+     * The groups that reach a ghost or a sleeping body may span strips, so they are resolved here
+     * in index order, exactly as in CollisionDetector: a pair of bodies that were asleep at the start
+     * of the tick is skipped, and a contact is reported at once, in the order the islands are joined.
+     */
+    private void resolveGhostPairs() {
+        border.contacts.clear();
+        border.impulses = 0;
+        border.ghostPairs.clear();
+        for (Strip strip : strips) {
+            border.ghostPairs.addAll(strip.ghostPairs);
+        }
+        border.ghostPairs.sortByIndex();
+        for (int k = 0; k < border.ghostPairs.size(); k++) {
+            int first = border.ghostPairs.getFirst(k);
+            int second = border.ghostPairs.getSecond(k);
+            if (asleep[first] && asleep[second]) {
+                continue;
+            }
+            if (resolvePair(first, second, border)) {
+                shapes.get(first).onContact(shapes.get(second));
+            }
+        }
+    }
+
+    /**
+     * Reports the contacts of the strips. Between awake bodies this only joins islands, which
+     * comes out the same in any order, but it writes shared state, so it is done on this thread.
+     */
+    private void reportLocalContacts() {
+        contacts.clear();
+        for (Strip strip : strips) {
+            contacts.addAll(strip.contacts);
+            pairTestCount += strip.pairTests;
+            strip.pairTests = 0;
+        }
+        for (int k = 0; k < contacts.size(); k++) {
+            shapes.get(contacts.getFirst(k)).onContact(shapes.get(contacts.getSecond(k)));
+        }
+        contacts.addAll(border.contacts);
+        pairTestCount += border.pairTests;
+        border.pairTests = 0;
+    }
+
+    // Runs the exact test and resolves the pair if the shapes touch. Returns whether they did.
+    private boolean resolvePair(int first, int second, Strip counters) {
+        Shape shape1 = shapes.get(first);
+        Shape shape2 = shapes.get(second);
+        counters.pairTests++;
+        CollisionAlgorithm algorithm = CollisionRegistry.lookup(shape1.getTypeId(), shape2.getTypeId());
+        if (!algorithm.collided(shape1, shape2)) {
+            return false;
+        }
+        if (algorithm.resolve(shape1, shape2)) {
+            counters.impulses++;
+        }
+        counters.contacts.add(first, second);
+        return true;
+    }
+
+    private long countImpulses() {
+        long impulses = border.impulses;
+        for (Strip strip : strips) {
+            impulses += strip.impulses;
+        }
+        return impulses;
+    }
+
+    // Runs one task per strip on the pool.
+    private void forEachStrip(ChunkBody body) {
+        if (strips.length == 1) {
+            body.run(0, 0, 1);
+            return;
+        }
+        pool.invoke(new ChunkTask(body, strips.length, strips.length, 0, strips.length));
+    }
+
+    // Splits [0, count) into one chunk per thread. Small loops run on the calling thread.
+    private void parallelChunks(int count, ChunkBody body) {
+        int chunks = Math.min(pool.getParallelism(), Math.max(1, count / MIN_CHUNK));
+        if (chunks == 1) {
+            body.run(0, 0, count);
+            return;
+        }
+        pool.invoke(new ChunkTask(body, count, chunks, 0, chunks));
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkBody body;
+        private final int count;
+        private final int chunks;
+        private final int firstChunk;
+        private final int endChunk;
+
+        ChunkTask(ChunkBody body, int count, int chunks, int firstChunk, int endChunk) {
+            this.body = body;
+            this.count = count;
+            this.chunks = chunks;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk == 1) {
+                int start = (int) ((long) firstChunk * count / chunks);
+                int end = (int) ((long) endChunk * count / chunks);
+                body.run(firstChunk, start, end);
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ChunkTask(body, count, chunks, firstChunk, middle),
+                      new ChunkTask(body, count, chunks, middle, endChunk));
+        }
+    }
+
+    private void ensureShapeCapacity(int count) {
+        if (minX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, minX.length * 2);
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        sortMinX = new float[capacity];
+        firstStrip = new int[capacity];
+        lastStrip = new int[capacity];
+        groupParent = new int[capacity];
+        groupReachesGhost = new boolean[capacity];
+        owned = new boolean[capacity];
+        asleep = new boolean[capacity];
+    }
+}
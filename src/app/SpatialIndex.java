@@ -0,0 +1,19 @@
+package app;
+
+import shapes.Shape;
+import java.util.List;
+
+/**
+ * A broad phase that can also report the shapes in an area, from the bounds it saw in its last
+ * findCandidatePairs call. Lets the engine cull the bodies out of view without checking every one.
+ */
+public interface SpatialIndex extends BroadPhase {
+
+    /**
+     * Reports the index of every shape whose bounds may overlap the rectangle, each once, in no
+     * particular order. Touching bounds count as overlapping.
+     * @param shapes The list the last findCandidatePairs call was given
+     */
+    void queryRectangle(List<Shape> shapes, double minX, double minY, double maxX, double maxY,
+                        DynamicAabbTree.QueryHandler handler);
+}
@@ -0,0 +1,176 @@
+package app;
+
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental sweep-and-prune broad phase along the x axis.
+ * The sorted list of interval endpoints is kept between ticks and re-sorted with an
+ * insertion sort. Shapes only move a little each frame, so the list is nearly sorted and the
+ * sort runs in close to linear time. Unlike the grid, it does not depend on a cell size,
+ * so it copes well with a mix of small and large shapes.
+ */
+public class SweepAndPruneBroadPhase implements BroadPhase {
+
+    private final PairList pairs = new PairList();
+
+    // Endpoints sorted by value. Each owner entry is (shape index << 1) | 1 for a max endpoint, 0 for a min.
+    private double[] endpointValue = new double[0];
+    private int[] endpointOwner = new int[0];
+    private int shapeCount;
+    private double[] scratchValue = new double[0];
+    private int[] scratchOwner = new int[0];
+
+    // Current bounds of every shape
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+
+    // Shapes whose x interval is open during the sweep, with each shape's slot for O(1) removal
+    private int[] active = new int[0];
+    private int[] activeSlot = new int[0];
+
+    @Override
+    public void findCandidatePairs(List<Shape> shapes, PairHandler handler) {
+        int count = shapes.size();
+        if (count < shapeCount) {
+            // Shapes were removed, so the old endpoints no longer line up with the list
+            shapeCount = 0;
+        }
+        ensureCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+            Shape shape = shapes.get(i);
+            minX[i] = shape.getMinX();
+            minY[i] = shape.getMinY();
+            maxX[i] = shape.getMaxX();
+            maxY[i] = shape.getMaxY();
+        }
+
+        // Refresh the values of the existing endpoints, then append endpoints for new shapes
+        int endpointCount = shapeCount * 2;
+        for (int e = 0; e < endpointCount; e++) {
+            int owner = endpointOwner[e];
+            endpointValue[e] = (owner & 1) == 0 ? minX[owner >> 1] : maxX[owner >> 1];
+        }
+        for (int i = shapeCount; i < count; i++) {
+            endpointOwner[endpointCount] = i << 1;
+            endpointValue[endpointCount++] = minX[i];
+            endpointOwner[endpointCount] = (i << 1) | 1;
+            endpointValue[endpointCount++] = maxX[i];
+        }
+        // Insertion sort is only cheap on a nearly sorted list, so a mostly new list gets a full sort
+        if (count - shapeCount > shapeCount) {
+            mergeSort(endpointCount);
+        } else {
+            insertionSort(endpointCount);
+        }
+        shapeCount = count;
+
+        // Sweep: every shape whose interval is still open overlaps the new one on x
+        pairs.clear();
+        int activeCount = 0;
+        for (int e = 0; e < endpointCount; e++) {
+            int owner = endpointOwner[e];
+            int shape = owner >> 1;
+            if ((owner & 1) == 0) {
+                for (int a = 0; a < activeCount; a++) {
+                    int other = active[a];
+                    if (maxY[shape] >= minY[other] && maxY[other] >= minY[shape]) {
+                        pairs.add(shape, other);
+                    }
+                }
+                activeSlot[shape] = activeCount;
+                active[activeCount++] = shape;
+            } else {
+                int slot = activeSlot[shape];
+                int last = active[--activeCount];
+                active[slot] = last;
+                activeSlot[last] = slot;
+            }
+        }
+
+        pairs.sort(count);
+        pairs.forEach(handler);
+    }
+
+    // Min endpoints sort before max endpoints of the same value, so touching intervals still overlap.
+    private void insertionSort(int endpointCount) {
+        for (int e = 1; e < endpointCount; e++) {
+            double value = endpointValue[e];
+            int owner = endpointOwner[e];
+            int f = e - 1;
+            while (f >= 0 && (endpointValue[f] > value
+                    || (endpointValue[f] == value && (endpointOwner[f] & 1) > (owner & 1)))) {
+                endpointValue[f + 1] = endpointValue[f];
+                endpointOwner[f + 1] = endpointOwner[f];
+                f--;
+            }
+            endpointValue[f + 1] = value;
+            endpointOwner[f + 1] = owner;
+        }
+    }
+
+    // Bottom-up merge sort for a mostly new list, using scratch arrays that are kept between ticks.
+    private void mergeSort(int endpointCount) {
+        if (scratchValue.length < endpointCount) {
+            scratchValue = new double[endpointValue.length];
+            scratchOwner = new int[endpointValue.length];
+        }
+        double[] fromValue = endpointValue;
+        int[] fromOwner = endpointOwner;
+        double[] toValue = scratchValue;
+        int[] toOwner = scratchOwner;
+        for (int width = 1; width < endpointCount; width *= 2) {
+            for (int start = 0; start < endpointCount; start += 2 * width) {
+                int middle = Math.min(start + width, endpointCount);
+                int end = Math.min(start + 2 * width, endpointCount);
+                int left = start;
+                int right = middle;
+                for (int out = start; out < end; out++) {
+                    if (left < middle && (right >= end || !comesBefore(fromValue[right], fromOwner[right],
+                            fromValue[left], fromOwner[left]))) {
+                        toValue[out] = fromValue[left];
+                        toOwner[out] = fromOwner[left++];
+                    } else {
+                        toValue[out] = fromValue[right];
+                        toOwner[out] = fromOwner[right++];
+                    }
+                }
+            }
+            double[] swapValue = fromValue;
+            fromValue = toValue;
+            toValue = swapValue;
+            int[] swapOwner = fromOwner;
+            fromOwner = toOwner;
+            toOwner = swapOwner;
+        }
+        // Keep whichever pair of arrays ended up holding the sorted result
+        scratchValue = toValue;
+        scratchOwner = toOwner;
+        endpointValue = fromValue;
+        endpointOwner = fromOwner;
+    }
+
+    private static boolean comesBefore(double value, int owner, double otherValue, int otherOwner) {
+        return value < otherValue || (value == otherValue && (owner & 1) < (otherOwner & 1));
+    }
+
+    private void ensureCapacity(int count) {
+        if (minX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, minX.length * 2);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        active = new int[capacity];
+        activeSlot = new int[capacity];
+        // Existing endpoints keep their order, so the next sort stays cheap
+        endpointValue = Arrays.copyOf(endpointValue, capacity * 2);
+        endpointOwner = Arrays.copyOf(endpointOwner, capacity * 2);
+    }
+}
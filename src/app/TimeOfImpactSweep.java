@@ -0,0 +1,119 @@
+package app;
+
+import shapes.CollisionRegistry;
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the earliest time of impact between any two shapes within a time horizon.
+ * Each shape's bounding box is stretched along its velocity over the horizon, and the stretched
+ * boxes are swept along x the same way as in SweepAndPruneBroadPhase. Only pairs whose swept
+ * boxes overlap are handed to the swept test of their collision kernel.
+ */
+class TimeOfImpactSweep {
+
+    // Shapes in order of swept left edge, kept between calls so re-sorting is nearly linear
+    private int[] order = new int[0];
+    private long[] sortKeys = new long[0];
+    private int shapeCount;
+
+    // Swept bounds of every shape
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+
+    /**
+     * @param horizon How far ahead to look, in seconds
+     * @return Seconds until the first pair that is apart now starts touching, or
+     *         Double.POSITIVE_INFINITY if none does within the horizon
+     */
+    double findEarliestImpact(List<Shape> shapes, double horizon) {
+        int count = shapes.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            Shape shape = shapes.get(i);
+            double dx = shape.getVelocityX() * horizon;
+            double dy = shape.getVelocityY() * horizon;
+            minX[i] = shape.getMinX() + Math.min(dx, 0);
+            minY[i] = shape.getMinY() + Math.min(dy, 0);
+            maxX[i] = shape.getMaxX() + Math.max(dx, 0);
+            maxY[i] = shape.getMaxY() + Math.max(dy, 0);
+        }
+        if (count != shapeCount) {
+            sortFromScratch(count);
+        }
+        insertionSort(count);
+
+        double earliest = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < count; p++) {
+            int i = order[p];
+            for (int q = p + 1; q < count; q++) {
+                int j = order[q];
+                if (minX[j] > maxX[i]) {
+                    break;
+                }
+                if (maxY[i] < minY[j] || maxY[j] < minY[i]) {
+                    continue;
+                }
+                Shape first = shapes.get(i);
+                Shape second = shapes.get(j);
+                if (first.isAsleep() && second.isAsleep()) {
+                    continue;
+                }
+                double impact = CollisionRegistry.lookup(first.getTypeId(), second.getTypeId())
+                        .timeOfImpact(first, second, horizon);
+                // Pairs already touching (impact 0) are left to the discrete test
+                if (impact > 0 && impact < earliest) {
+                    earliest = impact;
+                }
+            }
+        }
+        return earliest;
+    }
+
+    // Full sort after shapes were added or removed. Keys are the left edges rounded down to floats.
+    private void sortFromScratch(int count) {
+        for (int i = 0; i < count; i++) {
+            float key = (float) minX[i];
+            if (key > minX[i]) {
+                key = Math.nextDown(key);
+            }
+            int bits = Float.floatToIntBits(key);
+            bits ^= (bits >> 31) & 0x7FFFFFFF; // Makes the bits of negative floats sort as signed ints
+            sortKeys[i] = ((long) bits << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+        for (int p = 0; p < count; p++) {
+            order[p] = (int) sortKeys[p];
+        }
+        shapeCount = count;
+    }
+
+    private void insertionSort(int count) {
+        for (int p = 1; p < count; p++) {
+            int shape = order[p];
+            double value = minX[shape];
+            int q = p - 1;
+            while (q >= 0 && minX[order[q]] > value) {
+                order[q + 1] = order[q];
+                q--;
+            }
+            order[q + 1] = shape;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (minX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, minX.length * 2);
+        order = Arrays.copyOf(order, capacity);
+        sortKeys = new long[capacity];
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+    }
+}
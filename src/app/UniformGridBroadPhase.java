@@ -0,0 +1,290 @@
+package app;
+
+import constants.Constants;
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spatial-hash broad phase. Every shape is binned into the uniform grid cells its bounds cover,
+ * and only shapes that share a cell are reported as candidate pairs.
+ * Works best when the cell size is close to the size of the larger shapes.
+ * Only awake shapes are binned. Sleeping shapes cannot touch each other, so each one just looks up
+ * the awake shapes in the cells it covers, and piles of sleeping bodies cost no pair enumeration.
+ * The cells also answer rectangle queries; the sleeping shapes are only binned for those, on the
+ * first query after each tick.
+ */
+public class UniformGridBroadPhase implements SpatialIndex {
+
+    private final double cellSize;
+    private final PairList pairs = new PairList();
+
+    // Per-shape bounds and the range of cells they cover, reused between ticks
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private int[] cellMinX = new int[0];
+    private int[] cellMinY = new int[0];
+    private int[] cellMaxX = new int[0];
+    private int[] cellMaxY = new int[0];
+    private boolean[] asleep = new boolean[0];
+    private int shapeCount;
+    private int sleepingCount;
+
+    private final CellTable awakeTable = new CellTable();
+    private final CellTable sleepingTable = new CellTable();
+    private boolean sleepingTableBuilt;
+
+    public UniformGridBroadPhase() {
+        this(Constants.MAX_SIZE);
+    }
+
+    public UniformGridBroadPhase(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public void findCandidatePairs(List<Shape> shapes, PairHandler handler) {
+        int count = shapes.size();
+        ensureShapeCapacity(count);
+
+        // Work out which cells every shape covers
+        int sleeping = 0;
+        for (int i = 0; i < count; i++) {
+            Shape shape = shapes.get(i);
+            minX[i] = shape.getMinX();
+            minY[i] = shape.getMinY();
+            maxX[i] = shape.getMaxX();
+            maxY[i] = shape.getMaxY();
+            cellMinX[i] = toCell(minX[i]);
+            cellMinY[i] = toCell(minY[i]);
+            cellMaxX[i] = toCell(maxX[i]);
+            cellMaxY[i] = toCell(maxY[i]);
+            asleep[i] = shape.isAsleep();
+            if (asleep[i]) {
+                sleeping++;
+            }
+        }
+        shapeCount = count;
+        sleepingCount = sleeping;
+        sleepingTableBuilt = false;
+        awakeTable.build(count, false);
+
+        pairs.clear();
+        int[] bucketStart = awakeTable.bucketStart;
+        int[] entryShape = awakeTable.entryShape;
+        long[] entryCell = awakeTable.entryCell;
+        for (int b = 0; b <= awakeTable.mask; b++) {
+            int end = bucketStart[b + 1];
+            for (int p = bucketStart[b]; p < end; p++) {
+                for (int q = p + 1; q < end; q++) {
+                    if (entryCell[p] == entryCell[q]) {
+                        addIfOwned(entryShape[p], entryShape[q], entryCell[p]);
+                    }
+                }
+            }
+        }
+        if (sleeping > 0 && awakeTable.entryCount > 0) {
+            addSleepingPairs(count);
+        }
+
+        pairs.sort(count);
+        pairs.forEach(handler);
+    }
+
+    // Pairs every sleeping shape with the awake shapes binned in the cells it covers.
+    private void addSleepingPairs(int count) {
+        CellTable table = awakeTable;
+        for (int i = 0; i < count; i++) {
+            if (!asleep[i]) {
+                continue;
+            }
+            for (int cx = cellMinX[i]; cx <= cellMaxX[i]; cx++) {
+                for (int cy = cellMinY[i]; cy <= cellMaxY[i]; cy++) {
+                    long cell = cellKey(cx, cy);
+                    int b = hash(cx, cy) & table.mask;
+                    int end = table.bucketStart[b + 1];
+                    for (int p = table.bucketStart[b]; p < end; p++) {
+                        if (table.entryCell[p] == cell) {
+                            addIfOwned(i, table.entryShape[p], cell);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Two shapes can share several cells. The pair is only reported from the cell holding the
+    // top-left corner of their overlap, so each pair is found exactly once.
+    private void addIfOwned(int i, int j, long cell) {
+        int cx = (int) (cell >> 32);
+        int cy = (int) cell;
+        if (cx != Math.max(cellMinX[i], cellMinX[j]) || cy != Math.max(cellMinY[i], cellMinY[j])) {
+            return;
+        }
+        if (maxX[i] < minX[j] || maxX[j] < minX[i] || maxY[i] < minY[j] || maxY[j] < minY[i]) {
+            return;
+        }
+        pairs.add(i, j);
+    }
+
+    /**
+     * Reports every shape whose bounds, as of the last findCandidatePairs call, overlap the
+     * rectangle. Looks in the cells the rectangle covers, or checks every shape when those cells
+     * outnumber the shapes.
+     */
+    @Override
+    public void queryRectangle(List<Shape> shapes, double x0, double y0, double x1, double y1,
+                               DynamicAabbTree.QueryHandler handler) {
+        int count = Math.min(shapes.size(), shapeCount);
+        int cx0 = toCell(x0);
+        int cy0 = toCell(y0);
+        int cx1 = toCell(x1);
+        int cy1 = toCell(y1);
+        if (((long) cx1 - cx0 + 1) * ((long) cy1 - cy0 + 1) > count) {
+            for (int i = 0; i < count; i++) {
+                if (maxX[i] >= x0 && minX[i] <= x1 && maxY[i] >= y0 && minY[i] <= y1 && !handler.onHit(i)) {
+                    return;
+                }
+            }
+            return;
+        }
+        if (sleepingCount > 0 && !sleepingTableBuilt) {
+            sleepingTable.build(shapeCount, true);
+            sleepingTableBuilt = true;
+        }
+        if (awakeTable.query(count, x0, y0, x1, y1, cx0, cy0, cx1, cy1, handler) && sleepingCount > 0) {
+            sleepingTable.query(count, x0, y0, x1, y1, cx0, cy0, cx1, cy1, handler);
+        }
+    }
+
+    private int toCell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static int hash(int cx, int cy) {
+        return (cx * 73856093) ^ (cy * 19349663);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private void ensureShapeCapacity(int count) {
+        if (minX.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, minX.length * 2);
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        cellMinX = new int[capacity];
+        cellMinY = new int[capacity];
+        cellMaxX = new int[capacity];
+        cellMaxY = new int[capacity];
+        asleep = new boolean[capacity];
+    }
+
+    /**
+     * Hash buckets of the cells covered by either the awake or the sleeping shapes, built with a
+     * counting sort. Bucket b holds entries bucketStart[b] to bucketStart[b + 1] - 1.
+     */
+    private final class CellTable {
+        int[] bucketStart = new int[1];
+        int[] entryShape = new int[0];
+        long[] entryCell = new long[0];
+        int mask;
+        int entryCount;
+
+        void build(int count, boolean sleeping) {
+            entryCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (asleep[i] == sleeping) {
+                    entryCount += (cellMaxX[i] - cellMinX[i] + 1) * (cellMaxY[i] - cellMinY[i] + 1);
+                }
+            }
+
+            // Size the table at roughly twice the entry count to keep bucket collisions rare
+            int bucketCount = Integer.highestOneBit(Math.max(16, entryCount * 2 - 1)) << 1;
+            mask = bucketCount - 1;
+            ensureTableCapacity(bucketCount, entryCount);
+            Arrays.fill(bucketStart, 0, bucketCount + 1, 0);
+
+            // Counting sort pass 1: count the entries landing in each bucket
+            for (int i = 0; i < count; i++) {
+                if (asleep[i] != sleeping) {
+                    continue;
+                }
+                for (int cx = cellMinX[i]; cx <= cellMaxX[i]; cx++) {
+                    for (int cy = cellMinY[i]; cy <= cellMaxY[i]; cy++) {
+                        bucketStart[(hash(cx, cy) & mask) + 1]++;
+                    }
+                }
+            }
+            for (int b = 0; b < bucketCount; b++) {
+                bucketStart[b + 1] += bucketStart[b];
+            }
+
+            // Counting sort pass 2: place the entries, using bucketStart[b] as the insertion cursor
+            for (int i = 0; i < count; i++) {
+                if (asleep[i] != sleeping) {
+                    continue;
+                }
+                for (int cx = cellMinX[i]; cx <= cellMaxX[i]; cx++) {
+                    for (int cy = cellMinY[i]; cy <= cellMaxY[i]; cy++) {
+                        int slot = bucketStart[hash(cx, cy) & mask]++;
+                        entryShape[slot] = i;
+                        entryCell[slot] = cellKey(cx, cy);
+                    }
+                }
+            }
+            // The cursors now sit at the end of each bucket, so shift them back to the starts
+            System.arraycopy(bucketStart, 0, bucketStart, 1, bucketCount);
+            bucketStart[0] = 0;
+        }
+
+        // Reports the shapes binned in the cells cx0..cx1, cy0..cy1 that overlap the rectangle.
+        // A shape covering several of the cells is only reported from the first. Returns false if stopped early.
+        boolean query(int count, double x0, double y0, double x1, double y1,
+                      int cx0, int cy0, int cx1, int cy1, DynamicAabbTree.QueryHandler handler) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                for (int cy = cy0; cy <= cy1; cy++) {
+                    long cell = cellKey(cx, cy);
+                    int b = hash(cx, cy) & mask;
+                    int end = bucketStart[b + 1];
+                    for (int p = bucketStart[b]; p < end; p++) {
+                        int i = entryShape[p];
+                        if (entryCell[p] != cell || i >= count
+                                || cx != Math.max(cellMinX[i], cx0) || cy != Math.max(cellMinY[i], cy0)) {
+                            continue;
+                        }
+                        if (maxX[i] >= x0 && minX[i] <= x1 && maxY[i] >= y0 && minY[i] <= y1 && !handler.onHit(i)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void ensureTableCapacity(int bucketCount, int entryCount) {
+            if (bucketStart.length < bucketCount + 1) {
+                bucketStart = new int[bucketCount + 1];
+            }
+            if (entryShape.length < entryCount) {
+                int capacity = Math.max(entryCount, entryShape.length * 2);
+                entryShape = new int[capacity];
+                entryCell = new long[capacity];
+            }
+        }
+    }
+}
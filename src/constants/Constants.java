@@ -6,7 +6,7 @@ public class Constants {
     public static final int WINDOW_WIDTH = 1000;
     public static final int WINDOW_HEIGHT = 600;
     
-    // Simulation area dimensions
+    // Default simulation area dimensions; WorldConfig changes them at run time
     public static final int SIMULATION_WIDTH = 600;
     public static final int SIMULATION_HEIGHT = 400;
     
@@ -14,9 +14,16 @@ public class Constants {
     public static final int CONTROL_PANEL_WIDTH = 300;
 
     // Physics constants
-    public static final double RESTITUTION = 1.0; // Elastic collision
+    public static final double RESTITUTION = 1.0; // Elastic collision, the WorldConfig default
     public static final int TARGET_FPS = 60;
     public static final int FRAME_DELAY = 1000 / TARGET_FPS;
+    public static final int PHYSICS_HZ = 240; // Physics steps per simulated second
+    public static final double FIXED_TIMESTEP = 1.0 / PHYSICS_HZ; // The WorldConfig default
+    public static final double MAX_FRAME_TIME = 0.25; // Longest stall (in seconds) the simulation tries to catch up on
+    public static final int MAX_SUBSTEPS = 8; // Most pieces continuous collision splits one tick into
+    public static final double CONTACT_SLOP = 0.01; // Overlap (in pixels) a swept test stops at, so the discrete test sees the contact
+    public static final double SLEEP_ENERGY_THRESHOLD = 0.5; // Kinetic energy below which a body counts as still
+    public static final int SLEEP_TICKS = PHYSICS_HZ / 2; // A still island falls asleep after this many ticks
 
     // Shape property limits
     public static final double MIN_MASS = 0.1;
@@ -38,6 +45,8 @@ public class Constants {
     
     // UI constants
     public static final int UI_PADDING = 5;
+    public static final int HEATMAP_BODY_THRESHOLD = 50000; // Above this many bodies, automatic rendering draws a heatmap
+    public static final int HEATMAP_TILE_SIZE = 2; // Pixels per side of a heatmap tile
     
     // Shape types. To be updated if any new shapes are updated that implement the Shapes inferace.
     public static final String[] SHAPE_TYPES = {"Circle", "Rectangle"};
@@ -0,0 +1,153 @@
+package control;
+
+import shapes.PhysicsWorld;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs many independent worlds side by side, e.g. the thousands of small scenes of a Monte-Carlo sweep.
+ * Each world is a GameEngine of its own, with its own CollisionDetector and the seeded generator of
+ * its SpawnSpec, stepped start to finish by one thread of a work-stealing ForkJoinPool. Only as many
+ * worlds as there are threads exist at any time. Results reach the caller as the worlds finish.
+ */
+public class BatchRunner {
+
+    private final ForkJoinPool pool;
+    private Consumer<GameEngine> engineSetup = engine -> { };
+    private long ticks = 1000;
+    private WorldConfig worldConfig = new WorldConfig();
+
+    /**
+     * @param threads Number of worlds stepped at once, normally the number of cores
+     */
+    public BatchRunner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * A seed for one world of a sweep. Neighbouring worlds get unrelated seeds, unlike base + world,
+     * which gives java.util.Random streams that start out alike.
+     */
+    public static long worldSeed(long baseSeed, int world) {
+        return new SplittableRandom(baseSeed + world * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    /**
+     * Configures every engine before its shapes are spawned, e.g. to pick the broad phase. Runs on the
+     * pool thread of that world. Collisions are handled on that thread too; setting a parallelism above
+     * 1 here would only make the worlds compete for the same cores.
+     */
+    public void setEngineSetup(Consumer<GameEngine> setup) {
+        if (setup == null) {
+            throw new IllegalArgumentException("Engine setup cannot be null");
+        }
+        this.engineSetup = setup;
+    }
+
+    public void setTicks(long ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Tick count cannot be negative: " + ticks);
+        }
+        this.ticks = ticks;
+    }
+
+    // Bounds, timestep and restitution of every world; the settings are copied. Applied before the engine setup.
+    public void setWorldConfig(WorldConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("World config cannot be null");
+        }
+        this.worldConfig = new WorldConfig(config);
+    }
+
+    /**
+     * Runs one world per spec and waits until all are done.
+     * @param listener Gets each result on the calling thread as soon as its world is done, in the
+     *                 order they finish; may be null
+     * @return Totals over all worlds
+     * @throws IllegalStateException If a world failed; worlds that have not started yet are cancelled
+     */
+    public BatchSummary run(List<SpawnSpec> scenes, Consumer<WorldResult> listener) throws InterruptedException {
+        CompletionService<WorldResult> completion = new ExecutorCompletionService<>(pool);
+        List<Future<WorldResult>> futures = new ArrayList<>(scenes.size());
+        for (int i = 0; i < scenes.size(); i++) {
+            int world = i;
+            SpawnSpec spec = scenes.get(i);
+            futures.add(completion.submit(() -> runWorld(world, spec)));
+        }
+
+        BatchSummary summary = new BatchSummary();
+        try {
+            for (int i = 0; i < scenes.size(); i++) {
+                WorldResult result = completion.take().get();
+                summary.add(result);
+                if (listener != null) {
+                    listener.accept(result);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<WorldResult> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return summary;
+    }
+
+    // Stops the worker threads. The runner cannot be used afterwards.
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private WorldResult runWorld(int world, SpawnSpec spec) {
+        try {
+            GameEngine engine = new GameEngine();
+            engine.setWorldConfig(worldConfig);
+            engineSetup.accept(engine);
+            engine.spawnShapes(spec);
+            int shapeCount = engine.getShapes().size(); // Also brings the spawned shapes in
+            PhysicsWorld physics = engine.getWorld();
+            double initialEnergy = kineticEnergy(physics);
+
+            long startPairTests = engine.getPairTestCount();
+            double deltaTime = worldConfig.getTimestep();
+            long start = System.nanoTime();
+            for (long tick = 0; tick < ticks; tick++) {
+                engine.step(deltaTime);
+            }
+            long nanos = System.nanoTime() - start;
+
+            int asleep = 0;
+            for (int i = 0; i < physics.size(); i++) {
+                if (physics.isAsleep(i)) {
+                    asleep++;
+                }
+            }
+            return new WorldResult(world, spec.getSeed(), shapeCount, ticks, nanos,
+                    engine.getPairTestCount() - startPairTests,
+                    initialEnergy, kineticEnergy(physics), asleep);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("World " + world + " (seed " + spec.getSeed() + ") failed: " + e, e);
+        }
+    }
+
+    private static double kineticEnergy(PhysicsWorld world) {
+        double energy = 0;
+        for (int i = 0; i < world.size(); i++) {
+            double vx = world.getVelocityX(i);
+            double vy = world.getVelocityY(i);
+            energy += 0.5 * world.getMass(i) * (vx * vx + vy * vy);
+        }
+        return energy;
+    }
+}
@@ -0,0 +1,75 @@
+package control;
+
+/**
+ * Running totals over the worlds of a batch, updated as each result comes in, so a long sweep can
+ * be watched while it runs. Means and spreads use Welford's method, which stays accurate over
+ * thousands of worlds without keeping the results.
+ */
+public class BatchSummary {
+
+    private int worlds;
+    private long ticks;
+    private long pairTests;
+    private long nanos;
+    private double energyRatioMean;
+    private double energyRatioSquares; // Sum of squared differences from the mean
+    private double minEnergyRatio = Double.POSITIVE_INFINITY;
+    private double maxEnergyRatio = Double.NEGATIVE_INFINITY;
+    private WorldResult slowest;
+
+    public void add(WorldResult result) {
+        worlds++;
+        ticks += result.getTicks();
+        pairTests += result.getPairTests();
+        nanos += (long) (result.getSeconds() * 1e9);
+
+        double ratio = result.getEnergyRatio();
+        double delta = ratio - energyRatioMean;
+        energyRatioMean += delta / worlds;
+        energyRatioSquares += delta * (ratio - energyRatioMean);
+        minEnergyRatio = Math.min(minEnergyRatio, ratio);
+        maxEnergyRatio = Math.max(maxEnergyRatio, ratio);
+
+        if (slowest == null || result.getSeconds() > slowest.getSeconds()) {
+            slowest = result;
+        }
+    }
+
+    public int getWorlds() {
+        return worlds;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getPairTests() {
+        return pairTests;
+    }
+
+    // Stepping time summed over all worlds; more than the elapsed time when worlds ran in parallel.
+    public double getSeconds() {
+        return nanos / 1e9;
+    }
+
+    public double getMeanEnergyRatio() {
+        return energyRatioMean;
+    }
+
+    public double getEnergyRatioStdDev() {
+        return worlds > 1 ? Math.sqrt(energyRatioSquares / (worlds - 1)) : 0;
+    }
+
+    public double getMinEnergyRatio() {
+        return worlds > 0 ? minEnergyRatio : 0;
+    }
+
+    public double getMaxEnergyRatio() {
+        return worlds > 0 ? maxEnergyRatio : 0;
+    }
+
+    // The world that took longest to step, or null before the first result.
+    public WorldResult getSlowest() {
+        return slowest;
+    }
+}
@@ -0,0 +1,66 @@
+package control;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free hand-over of commands from any number of threads to one consumer thread.
+ * Producers push onto a linked stack with a compare-and-set and never block; the consumer takes the
+ * whole stack in one swap and runs it oldest first. Draining an empty queue is a single read.
+ */
+public class CommandQueue<T> {
+
+    private static final class Node<T> {
+        final T value;
+        Node<T> next;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+
+    private final AtomicReference<Node<T>> head = new AtomicReference<>();
+
+    // Producer side: can be called from any thread.
+    public void push(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Command cannot be null");
+        }
+        Node<T> node = new Node<>(value);
+        Node<T> current;
+        do {
+            current = head.get();
+            node.next = current;
+        } while (!head.compareAndSet(current, node));
+    }
+
+    public boolean isEmpty() {
+        return head.get() == null;
+    }
+
+    /**
+     * Consumer side: hands everything pushed so far to the consumer, in the order it was pushed.
+     * Must not be called by two threads at once.
+     * @return The number of commands handed over
+     */
+    public int drain(Consumer<? super T> consumer) {
+        if (head.get() == null) {
+            return 0;
+        }
+        // The stack holds the newest first, so turn it around
+        Node<T> node = head.getAndSet(null);
+        Node<T> oldest = null;
+        while (node != null) {
+            Node<T> next = node.next;
+            node.next = oldest;
+            oldest = node;
+            node = next;
+        }
+        int count = 0;
+        for (Node<T> n = oldest; n != null; n = n.next) {
+            consumer.accept(n.value);
+            count++;
+        }
+        return count;
+    }
+}
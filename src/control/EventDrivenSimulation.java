@@ -0,0 +1,263 @@
+package control;
+
+import app.DynamicAabbTree;
+import shapes.CollisionAlgorithm;
+import shapes.CollisionRegistry;
+import shapes.Shape;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Event-driven alternative to moving every shape in fixed steps. For each shape it predicts when it
+ * will next hit another shape or a wall, keeps the predictions in a priority queue, and jumps from
+ * event to event, moving only the shapes involved. The times come from the swept tests of the
+ * collision kernels and the responses from their resolve methods, so the physics is the same as in
+ * the ticked engine. Predictions made stale by an earlier event are not searched for and removed:
+ * each event remembers the collision counts of its shapes and is skipped if either has changed.
+ */
+class EventDrivenSimulation {
+
+    // Second shape of a wall event
+    private static final int WALL_X = -1;
+    private static final int WALL_Y = -2;
+    // Cap on events per shape in one call, so a shape trapped between two others cannot stall a tick
+    private static final int MAX_EVENTS_PER_SHAPE = 16;
+    // Leaves some slack around each swept box so the tree does not reinsert on every call
+    private static final double TREE_MARGIN = 4.0;
+
+    private final DynamicAabbTree tree = new DynamicAabbTree(TREE_MARGIN);
+    private int[] proxies = new int[0];
+    private int proxyCount;
+
+    // Per-shape state: the time each shape has been moved to, and how many events it took part in
+    private double[] shapeTime = new double[0];
+    private int[] collisionCount = new int[0];
+
+    // Event queue, a binary min-heap on time stored in parallel arrays
+    private double[] eventTime = new double[0];
+    private int[] eventFirst = new int[0];
+    private int[] eventSecond = new int[0];
+    private int[] eventFirstCount = new int[0];
+    private int[] eventSecondCount = new int[0];
+    private int eventCount;
+
+    // State of the current call
+    private List<Shape> shapes;
+    private double now;
+    private double end;
+    private int predictedShape;
+    private boolean laterShapesOnly; // During the first round each pair only needs predicting once
+    private final DynamicAabbTree.QueryHandler pairPredictor = this::predictPair;
+
+    /**
+     * Moves the shapes forward by deltaTime, resolving every collision at the moment it happens.
+     * @param shapes Shapes to simulate
+     * @param deltaTime Time to advance, in seconds
+     * @param width Width of the container
+     * @param height Height of the container
+     * @return Number of events processed
+     */
+    int advance(List<Shape> shapes, double deltaTime, int width, int height) {
+        this.shapes = shapes;
+        try {
+            int count = shapes.size();
+            ensureCapacity(count);
+            now = 0;
+            end = deltaTime;
+            eventCount = 0;
+            Arrays.fill(shapeTime, 0, count, 0);
+            Arrays.fill(collisionCount, 0, count, 0);
+
+            if (count != proxyCount) {
+                tree.clear();
+                for (int i = 0; i < count; i++) {
+                    proxies[i] = tree.createProxy(0, 0, 0, 0, i);
+                }
+                proxyCount = count;
+            }
+            laterShapesOnly = true;
+            for (int i = 0; i < count; i++) {
+                updateProxy(i);
+            }
+            for (int i = 0; i < count; i++) {
+                predict(i, width, height);
+            }
+            laterShapesOnly = false;
+
+            int processed = 0;
+            int maxEvents = MAX_EVENTS_PER_SHAPE * count + 64;
+            while (eventCount > 0 && processed < maxEvents) {
+                int first = eventFirst[0];
+                int second = eventSecond[0];
+                double time = eventTime[0];
+                boolean valid = collisionCount[first] == eventFirstCount[0]
+                        && (second < 0 || collisionCount[second] == eventSecondCount[0]);
+                pop();
+                if (!valid) {
+                    continue;
+                }
+                now = time;
+                processed++;
+                moveToNow(first);
+                Shape shape = shapes.get(first);
+                if (second == WALL_X) {
+                    shape.setVelocity(-shape.getVelocityX(), shape.getVelocityY());
+                } else if (second == WALL_Y) {
+                    shape.setVelocity(shape.getVelocityX(), -shape.getVelocityY());
+                } else {
+                    moveToNow(second);
+                    Shape other = shapes.get(second);
+                    CollisionAlgorithm algorithm = CollisionRegistry.lookup(shape.getTypeId(), other.getTypeId());
+                    if (algorithm.collided(shape, other)) {
+                        algorithm.resolve(shape, other);
+                        shape.onContact(other);
+                    }
+                    collisionCount[second]++;
+                    updateProxy(second);
+                }
+                collisionCount[first]++;
+                updateProxy(first);
+                predict(first, width, height);
+                if (second >= 0) {
+                    predict(second, width, height);
+                }
+            }
+
+            now = end;
+            for (int i = 0; i < count; i++) {
+                moveToNow(i);
+            }
+            return processed;
+        } finally {
+            this.shapes = null;
+        }
+    }
+
+    // Queues the next wall and shape events of one shape that fall before the end of the call.
+    private void predict(int i, int width, int height) {
+        Shape shape = shapes.get(i);
+        double vx = shape.getVelocityX();
+        double vy = shape.getVelocityY();
+        double wallX = vx < 0 ? shape.getMinX() / -vx : vx > 0 ? (width - shape.getMaxX()) / vx : Double.POSITIVE_INFINITY;
+        double wallY = vy < 0 ? shape.getMinY() / -vy : vy > 0 ? (height - shape.getMaxY()) / vy : Double.POSITIVE_INFINITY;
+        schedule(wallX, i, WALL_X);
+        schedule(wallY, i, WALL_Y);
+
+        predictedShape = i;
+        double remaining = end - now;
+        double dx = vx * remaining;
+        double dy = vy * remaining;
+        tree.query(shape.getMinX() + Math.min(dx, 0), shape.getMinY() + Math.min(dy, 0),
+                shape.getMaxX() + Math.max(dx, 0), shape.getMaxY() + Math.max(dy, 0), pairPredictor);
+    }
+
+    private boolean predictPair(int other) {
+        int i = predictedShape;
+        if (other == i || (laterShapesOnly && other < i)) {
+            return true;
+        }
+        moveToNow(other);
+        Shape shape = shapes.get(i);
+        Shape otherShape = shapes.get(other);
+        if (shape.isAsleep() && otherShape.isAsleep()) {
+            return true;
+        }
+        double impact = CollisionRegistry.lookup(shape.getTypeId(), otherShape.getTypeId())
+                .timeOfImpact(shape, otherShape, end - now);
+        // Shapes already touching are left to the discrete pass, as resolving them again would loop
+        if (impact > 0) {
+            schedule(impact, i, other);
+        }
+        return true;
+    }
+
+    // Fits a shape's leaf to the box it sweeps from now until the end of the call.
+    private void updateProxy(int i) {
+        Shape shape = shapes.get(i);
+        double remaining = end - now;
+        double dx = shape.getVelocityX() * remaining;
+        double dy = shape.getVelocityY() * remaining;
+        tree.moveProxy(proxies[i], shape.getMinX() + Math.min(dx, 0), shape.getMinY() + Math.min(dy, 0),
+                shape.getMaxX() + Math.max(dx, 0), shape.getMaxY() + Math.max(dy, 0));
+    }
+
+    private void moveToNow(int i) {
+        if (shapeTime[i] < now) {
+            shapes.get(i).move(now - shapeTime[i]);
+            shapeTime[i] = now;
+        }
+    }
+
+    private void schedule(double delay, int first, int second) {
+        if (!(delay > 0) || now + delay > end) {
+            return;
+        }
+        if (eventCount == eventTime.length) {
+            int capacity = Math.max(64, eventCount * 2);
+            eventTime = Arrays.copyOf(eventTime, capacity);
+            eventFirst = Arrays.copyOf(eventFirst, capacity);
+            eventSecond = Arrays.copyOf(eventSecond, capacity);
+            eventFirstCount = Arrays.copyOf(eventFirstCount, capacity);
+            eventSecondCount = Arrays.copyOf(eventSecondCount, capacity);
+        }
+        // Sift up from the new slot
+        double time = now + delay;
+        int slot = eventCount++;
+        while (slot > 0) {
+            int parent = (slot - 1) >> 1;
+            if (eventTime[parent] <= time) {
+                break;
+            }
+            copyEvent(parent, slot);
+            slot = parent;
+        }
+        eventTime[slot] = time;
+        eventFirst[slot] = first;
+        eventSecond[slot] = second;
+        eventFirstCount[slot] = collisionCount[first];
+        eventSecondCount[slot] = second < 0 ? 0 : collisionCount[second];
+    }
+
+    // Removes the earliest event.
+    private void pop() {
+        int last = --eventCount;
+        if (last == 0) {
+            return;
+        }
+        double time = eventTime[last];
+        int slot = 0;
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && eventTime[child + 1] < eventTime[child]) {
+                child++;
+            }
+            if (eventTime[child] >= time) {
+                break;
+            }
+            copyEvent(child, slot);
+            slot = child;
+        }
+        copyEvent(last, slot);
+    }
+
+    private void copyEvent(int from, int to) {
+        eventTime[to] = eventTime[from];
+        eventFirst[to] = eventFirst[from];
+        eventSecond[to] = eventSecond[from];
+        eventFirstCount[to] = eventFirstCount[from];
+        eventSecondCount[to] = eventSecondCount[from];
+    }
+
+    private void ensureCapacity(int count) {
+        if (shapeTime.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, shapeTime.length * 2);
+        proxies = Arrays.copyOf(proxies, capacity);
+        shapeTime = new double[capacity];
+        collisionCount = new int[capacity];
+    }
+}
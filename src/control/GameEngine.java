@@ -1,39 +1,77 @@
 package control;
 
+import shapes.PhysicsWorld;
+import shapes.RenderMode;
 import shapes.Shape;
+import shapes.Viewport;
+import shapes.WorldSnapshot;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import javax.swing.Timer;
+import java.util.concurrent.locks.LockSupport;
 import app.CollisionDetector;
+import app.DynamicAabbTree;
+import app.DynamicTreeBroadPhase;
+import app.PartitionedSimulation;
+import app.SpatialIndex;
+import app.BroadPhase;
 import constants.Constants;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 
+// Runs the simulation on its own thread with a fixed timestep, and publishes snapshots for the UI to draw.
 public class GameEngine {
 
-    private final List<Shape> shapes;
+    private final PhysicsWorld world;       // Array storage for every PhysicsBody in shapes
+    private final ShapeRegistry registry;   // Takes shape changes from any thread, applied at tick boundaries
+    private final List<Shape> otherShapes;  // Shapes that keep their own state
+    private ShapeRegistry.View shapes;      // The shapes this tick, refreshed when changes are applied
     private final CollisionDetector collisionDetector;
-    private final Timer gameTimer;
-    private boolean isRunning;
-    private long lastUpdateTime;
-    private Runnable updateCallback;
-    private double speedMultiplier;
+    private final TripleBuffer<WorldSnapshot> snapshots;
+    // Held by the simulation thread while it steps, and by others that need a consistent world while running
+    private final Object stateLock = new Object();
+    private Thread simulationThread;
+    private volatile boolean isRunning;
+    private volatile Runnable updateCallback;
+    private volatile double speedMultiplier;
+    private long tickCount;
+    private boolean snapshotStale; // Shapes changed since the last published snapshot
+    private volatile boolean continuousCollision;
+    private volatile boolean eventDriven;
+    private final EventDrivenSimulation eventSimulation = new EventDrivenSimulation();
+    private long eventCount;
+    private TrajectoryRecorder recorder;
+    private final SimulationStats stats;
+    private volatile RenderMode renderMode = RenderMode.AUTO;
+    private volatile PartitionedSimulation partitions; // Null unless the area is split into strips
+    private long retiredPairTests; // Pair tests of partitioned simulations that were replaced
+    private volatile WorldConfig config = new WorldConfig(); // Own copy, replaced but never changed
+    
+    // Viewport culling. Snapshots only hold the bodies in view, found through the broad-phase tree when
+    // it was brought up to date this tick
+    private volatile Viewport viewport;     // Null to capture the whole world
+    private Viewport wholeWorld = new Viewport(0, 0, 1, Constants.SIMULATION_WIDTH, Constants.SIMULATION_HEIGHT);
+    private Viewport capturedViewport;      // The view the last published snapshot was captured for
+    private BroadPhase indexedBroadPhase;   // Broad phase holding this tick's bounds, or null
+    private int[] visibleBodies = new int[0];
+    private int visibleCount;
+    private final DynamicAabbTree.QueryHandler visibleCollector = index -> {
+        visibleBodies[visibleCount++] = index;
+        return true;
+    };
 
      public GameEngine() {
-        this.shapes = new ArrayList<>();
-        this.collisionDetector = new CollisionDetector();
+        this.world = new PhysicsWorld();
+        this.registry = new ShapeRegistry(world);
+        this.otherShapes = registry.getOtherShapes();
+        this.shapes = registry.getView();
+        // The tree broad phase also serves point queries for hit-testing
+        this.collisionDetector = new CollisionDetector(new DynamicTreeBroadPhase());
+        this.stats = collisionDetector.getStats();
+        this.snapshots = new TripleBuffer<>(WorldSnapshot::new);
         this.isRunning = false;
-        this.lastUpdateTime = System.currentTimeMillis();
-        
-        // Initialise the game timer
-        this.gameTimer = new Timer(Constants.FRAME_DELAY, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (isRunning) {
-                    update();
-                }
-            }
-        });
+        this.speedMultiplier = 1.0;
     }
 
     public void setSpeedMultiplier(double multiplier) {
@@ -44,52 +82,341 @@ public class GameEngine {
         return speedMultiplier;
     }
     
+    // The callback may be run from the simulation thread, so it should only schedule UI work (e.g. repaint()).
     public void setUpdateCallback(Runnable callback) {
         this.updateCallback = callback;
     }
     
 
-    public void start() {
+    public synchronized void start() {
         if (!isRunning) {
             isRunning = true;
-            lastUpdateTime = System.currentTimeMillis();
-            gameTimer.start();
+            simulationThread = new Thread(this::runSimulation, "Simulation");
+            simulationThread.setDaemon(true);
+            simulationThread.start();
         }
     }
     
-    public void stop() {
+    public synchronized void stop() {
         isRunning = false;
-        gameTimer.stop();
+        if (simulationThread != null) {
+            LockSupport.unpark(simulationThread);
+            try {
+                simulationThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            simulationThread = null;
+        }
     }
     
 
     // Stops the program and clears all the shapes on the display.
     public void reset() {
         stop();
-        shapes.clear();
-        if (updateCallback != null) {
-            updateCallback.run();
-        }
+        clearShapes();
     }
     
-    // Adds a shape to simulator.
+    /**
+     * Adds a shape to simulator. Like every change to the shapes, it is queued without locking and
+     * applied at the next tick boundary, or straight away by readers while the engine is stopped.
+     */
     public void addShape(Shape shape) {
-        shapes.add(shape);
-        if (updateCallback != null) {
-            updateCallback.run();
+        registry.add(shape);
+        notifyUpdate();
+    }
+    
+    /**
+     * Adds many shapes at once. They are applied as one change, room is made for all of them up
+     * front, and the update callback only runs once, so a large scene does not trigger a repaint per shape.
+     */
+    public void addShapes(Collection<? extends Shape> newShapes) {
+        registry.addAll(newShapes);
+        notifyUpdate();
+    }
+    
+    // Removes a shape. Removals in the same tick are done together in one pass.
+    public void removeShape(Shape shape) {
+        registry.remove(shape);
+        notifyUpdate();
+    }
+    
+    /**
+     * Generates and adds the random shapes a spec describes. They are built on the calling thread
+     * and handed over as one change, so a running simulation only waits for the final check. With
+     * non-overlapping placement they avoid the shapes present when this is called, and are checked
+     * again against the shapes present when the change is applied; any that something moved onto
+     * or was added over in the meantime are left out then.
+     * @return The number of shapes added, which can be less than requested with non-overlapping placement
+     */
+    public int spawnShapes(SpawnSpec spec) {
+        ShapeSpawner spawner = new ShapeSpawner(spec);
+        // Read without the lock while running, so the bounds may be out of date; the check on insertion catches that
+        spawner.avoid(getShapes());
+        PhysicsWorld spawned = new PhysicsWorld(spec.getCount());
+        int created = spawner.spawn(spawned);
+        List<Shape> bodies = new ArrayList<>(created);
+        for (int i = 0; i < created; i++) {
+            bodies.add(spawned.getBody(i));
+        }
+        int[] added = new int[1];
+        registry.submit(r -> {
+            List<Shape> clear = spec.isNonOverlapping()
+                    ? ShapeSpawner.keepClear(spec, r.getCurrentShapes(), bodies) : bodies;
+            r.insertAll(clear);
+            added[0] = clear.size();
+        });
+        // Apply it between two ticks rather than wait for the next one, so the count is known
+        synchronized (stateLock) {
+            applyShapeChanges();
         }
+        notifyUpdate();
+        return added[0];
     }
     
     // Clears shapes on the display.
     public void clearShapes() {
-        shapes.clear();
-        if (updateCallback != null) {
-            updateCallback.run();
+        registry.clear();
+        notifyUpdate();
+    }
+    
+    /**
+     * Saves the state of every shape, see SnapshotFile. Can be called while running.
+     * @throws IllegalArgumentException If there are shapes the snapshot format cannot store
+     */
+    public void saveSnapshot(Path path) throws IOException {
+        synchronized (stateLock) {
+            applyShapeChanges();
+            if (!otherShapes.isEmpty()) {
+                throw new IllegalArgumentException("Cannot save shape type: " + otherShapes.get(0).getClass().getName());
+            }
+            SnapshotFile.write(path, world, tickCount);
+        }
+    }
+    
+    // Replaces all shapes with the ones in a snapshot and continues from its tick count.
+    public void loadSnapshot(Path path) throws IOException {
+        // Read on the calling thread; the simulation only swaps the shapes in
+        PhysicsWorld loaded = new PhysicsWorld();
+        long tick = SnapshotFile.read(path, loaded);
+        List<Shape> bodies = new ArrayList<>(loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            bodies.add(loaded.getBody(i));
+        }
+        registry.submit(r -> {
+            r.deleteAll();
+            r.insertAll(bodies);
+            tickCount = tick;
+        });
+        notifyUpdate();
+    }
+    
+    /**
+     * The shapes as of the last tick boundary. The list itself never changes and is not a copy;
+     * later changes publish a new one with a higher epoch. The shapes in it are live, so use
+     * getSnapshot() for drawing. While stopped, queued changes are applied first.
+     */
+    public ShapeRegistry.View getShapes() {
+        if (!isRunning) {
+            synchronized (stateLock) {
+                applyShapeChanges();
+            }
+        }
+        return registry.getView();
+    }
+    
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+    
+    // Sleeping skips the narrow phase for bodies at rest, at the cost of their leftover velocity. Off by default.
+    public void setSleepingEnabled(boolean enabled) {
+        synchronized (stateLock) {
+            world.setSleepingEnabled(enabled);
+        }
+    }
+    
+    public boolean isSleepingEnabled() {
+        return world.isSleepingEnabled();
+    }
+    
+    /**
+     * Turns continuous collision detection on or off. When on, a tick is split at the moments
+     * shapes hit each other, so fast or small shapes cannot pass through each other even with
+     * a large timestep. Off by default, as the fixed timestep is small enough for normal speeds.
+     */
+    public void setContinuousCollisionEnabled(boolean enabled) {
+        this.continuousCollision = enabled;
+    }
+    
+    public boolean isContinuousCollisionEnabled() {
+        return continuousCollision;
+    }
+    
+    /**
+     * Switches between fixed ticking and the event-driven engine. The event-driven engine jumps from
+     * collision to collision within each step, so shapes never pass through each other and sparse
+     * scenes need far fewer pair tests. Off by default.
+     */
+    public void setEventDriven(boolean enabled) {
+        this.eventDriven = enabled;
+    }
+    
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+    
+    // Number of collision and wall events the event-driven engine has processed so far.
+    public long getEventCount() {
+        return eventCount;
+    }
+    
+    /**
+     * Starts recording every step to the given recorder, or stops recording if it is null.
+     * The recorder is not closed here; close it after detaching it.
+     */
+    public void setRecorder(TrajectoryRecorder recorder) {
+        synchronized (stateLock) {
+            this.recorder = recorder;
+        }
+    }
+    
+    /**
+     * Phase timings and collision counters. Only recorded when the JVM runs with
+     * -Dsimulator.stats=true (see SimulationStats); otherwise everything stays at zero.
+     */
+    public SimulationStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Chooses how snapshots are meant to be drawn. For a heatmap the density grid is built while the
+     * snapshot is captured on the simulation thread, so drawing only costs as much as the pixels.
+     */
+    public void setRenderMode(RenderMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Render mode cannot be null");
+        }
+        synchronized (stateLock) {
+            this.renderMode = mode;
+            snapshotStale = true;
+        }
+        notifyUpdate();
+    }
+    
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+    
+    /**
+     * Changes the bounds, timestep and restitution of the world. The settings are copied, and take
+     * effect from the next tick; bodies now outside the bounds are pushed back in by the walls.
+     */
+    public void setWorldConfig(WorldConfig newConfig) {
+        WorldConfig copy = new WorldConfig(newConfig);
+        synchronized (stateLock) {
+            config = copy;
+            world.setRestitution(copy.getRestitution());
+            wholeWorld = new Viewport(0, 0, 1, copy.getWidth(), copy.getHeight());
+            snapshotStale = true;
+        }
+        notifyUpdate();
+    }
+    
+    // A copy of the current settings, which can be changed and passed back to setWorldConfig.
+    public WorldConfig getWorldConfig() {
+        return new WorldConfig(config);
+    }
+    
+    // Size of the world, without copying the config, e.g. for drawing the walls on every repaint.
+    public int getWorldWidth() {
+        return config.getWidth();
+    }
+    
+    public int getWorldHeight() {
+        return config.getHeight();
+    }
+    
+    /**
+     * Sets the part of the world the UI shows. Snapshots then only hold the bodies in view, so drawing
+     * costs as much as what is visible; with the tree broad phase finding them costs about as much too.
+     * Takes effect with the next snapshot, without waiting for the simulation.
+     * @param view The view, or null to capture the whole world
+     */
+    public void setViewport(Viewport view) {
+        this.viewport = view;
+    }
+    
+    public Viewport getViewport() {
+        return viewport;
+    }
+    
+    /**
+     * Splits the simulation area into vertical strips that are stepped by separate threads, so one
+     * large world can use every core. The results stay the same; see PartitionedSimulation.
+     * Takes over from the detector's own parallelism while on.
+     * @param strips Number of strips, or 1 to step on the simulation thread alone
+     */
+    public void setPartitionCount(int strips) {
+        if (strips < 1) {
+            throw new IllegalArgumentException("Strip count must be at least 1: " + strips);
+        }
+        synchronized (stateLock) {
+            if (partitions != null) {
+                retiredPairTests += partitions.getPairTestCount();
+                partitions.shutdown();
+                partitions = null;
+            }
+            if (strips > 1) {
+                int threads = Math.min(strips, Runtime.getRuntime().availableProcessors());
+                partitions = new PartitionedSimulation(collisionDetector, strips, threads);
+            }
+        }
+    }
+    
+    public int getPartitionCount() {
+        PartitionedSimulation current = partitions;
+        return current == null ? 1 : current.getStripCount();
+    }
+    
+    // Number of exact pair tests run so far, whichever way the collisions were handled.
+    public long getPairTestCount() {
+        PartitionedSimulation current = partitions;
+        return collisionDetector.getPairTestCount() + retiredPairTests
+                + (current == null ? 0 : current.getPairTestCount());
+    }
+    
+    // Gives access to the detector, e.g. to switch the broad-phase strategy.
+    public CollisionDetector getCollisionDetector() {
+        return collisionDetector;
+    }
+    
+    /**
+     * Gets the latest published state for drawing. Must only be called from one thread,
+     * normally the Event Dispatch Thread, and stays unchanged until that thread calls it again.
+     */
+    public WorldSnapshot getSnapshot() {
+        if (!isRunning) {
+            // Nothing else publishes while stopped, so bring in any shapes added since
+            synchronized (stateLock) {
+                applyShapeChanges();
+                if (snapshotStale || viewport != capturedViewport) {
+                    publishSnapshot();
+                }
+            }
         }
+        return snapshots.getLatest();
     }
     
-    public List<Shape> getShapes() {
-        return shapes;
+    /**
+     * Finds the top-most body drawn under a point, e.g. the mouse pointer. Returns null if there is none.
+     * Hit-tests the latest published snapshot, which only holds the bodies in view, so it never waits
+     * for the simulation thread. Like getSnapshot(), only call it from the thread that draws.
+     */
+    public Shape findShapeAt(double x, double y) {
+        WorldSnapshot snapshot = getSnapshot();
+        int index = snapshot.findBodyAt(x, y);
+        return index < 0 ? null : snapshot.getBody(index);
     }
     
     // Checker to check if the game is still running.
@@ -97,28 +424,213 @@ public class GameEngine {
         return isRunning;
     }
     
-    // Updates the game on over time.
-    private void update() {
-        long currentTime = System.currentTimeMillis();
-        double deltaTime = (currentTime - lastUpdateTime) / 1000.0; // Convert to seconds
-        deltaTime *= speedMultiplier;
-        lastUpdateTime = currentTime;
+    /**
+     * Simulation thread loop. Real time is scaled by the speed multiplier and fed into an accumulator,
+     * which is drained in fixed steps of the configured timestep. Results therefore do not depend on
+     * how often the thread wakes up, and a slow repaint can never stall the physics.
+     */
+    private void runSimulation() {
+        final long frameNanos = 1_000_000_000L / Constants.TARGET_FPS;
+        long previousTime = System.nanoTime();
+        long lastFrameTime = previousTime;
+        double accumulator = 0;
         
-        // Update physics
-        for (Shape shape : shapes) {
-            shape.move(deltaTime);
+        while (isRunning) {
+            long currentTime = System.nanoTime();
+            double speed = speedMultiplier;
+            accumulator += (currentTime - previousTime) / 1e9 * speed;
+            previousTime = currentTime;
+            // After a long stall, drop the backlog instead of spiralling into ever longer catch-ups
+            accumulator = Math.min(accumulator, Constants.MAX_FRAME_TIME * Math.max(speed, 1.0));
+            
+            // The lock is taken for each step, so other threads never wait for a whole catch-up
+            double timestep;
+            while (true) {
+                synchronized (stateLock) {
+                    timestep = config.getTimestep();
+                    if (accumulator < timestep) {
+                        // Rendering only needs the state at the display rate
+                        if (currentTime - lastFrameTime >= frameNanos) {
+                            publishSnapshot();
+                            lastFrameTime = currentTime;
+                        }
+                        break;
+                    }
+                    step(timestep);
+                }
+                accumulator -= timestep;
+            }
+            if (lastFrameTime == currentTime) {
+                notifyUpdate();
+            }
+            
+            // Sleep until the next step is due
+            double secondsToNextStep = (timestep - accumulator) / Math.max(speed, 1e-3);
+            LockSupport.parkNanos((long) (Math.min(secondsToNextStep, frameNanos / 1e9) * 1e9));
         }
         
-        // Handle collisions
+        synchronized (stateLock) {
+            publishSnapshot();
+        }
+        notifyUpdate();
+    }
+    
+    /**
+     * Advances the simulation by one tick, after applying the queued shape changes.
+     * Does not allocate once the broad phase has grown to size and nothing is added or removed.
+     * @param deltaTime Simulated time to advance, in seconds
+     */
+    public void step(double deltaTime) {
+        long start = SimulationStats.ENABLED ? System.nanoTime() : 0;
+        applyShapeChanges();
+        if (eventDriven) {
+            stepEventDriven(deltaTime);
+        } else if (continuousCollision) {
+            stepContinuous(deltaTime);
+        } else {
+            advance(deltaTime);
+        }
+        world.updateSleep();
+        tickCount++;
+        if (recorder != null) {
+            recorder.capture(world, tickCount, shapes.getEpoch());
+        }
+        if (SimulationStats.ENABLED) {
+            stats.record(SimulationStats.Phase.TICK, System.nanoTime() - start);
+            stats.countTick();
+        }
+    }
+    
+    /**
+     * Global substepping: moves everything up to the first time of impact in the tick, lets the
+     * discrete pass resolve that contact, and repeats for the rest of the tick. A tick is split into
+     * at most Constants.MAX_SUBSTEPS pieces, none shorter than deltaTime / MAX_SUBSTEPS, so a crowded
+     * scene degrades to plain substepping instead of stalling.
+     */
+    private void stepContinuous(double deltaTime) {
+        double remaining = deltaTime;
+        double minSubstep = deltaTime / Constants.MAX_SUBSTEPS;
+        for (int substep = 1; substep < Constants.MAX_SUBSTEPS && remaining > minSubstep; substep++) {
+            double impact = collisionDetector.findTimeOfImpact(shapes, remaining);
+            if (impact >= remaining) {
+                break;
+            }
+            double substepTime = Math.max(impact, minSubstep);
+            advance(substepTime);
+            remaining -= substepTime;
+        }
+        advance(remaining);
+    }
+    
+    private void stepEventDriven(double deltaTime) {
+        // Shapes that already overlap, e.g. freshly added ones, are separated the usual way first
         collisionDetector.detectAndResolveCollisions(shapes);
-        collisionDetector.checkWallCollisions(shapes, Constants.SIMULATION_WIDTH, 
-                                            Constants.SIMULATION_HEIGHT);
+        WorldConfig bounds = config;
+        eventCount += eventSimulation.advance(shapes, deltaTime, bounds.getWidth(), bounds.getHeight());
+        // Catches shapes that started a step outside the walls
+        resolveWallCollisions();
+        indexedBroadPhase = null; // The shapes moved on after the broad phase ran
+    }
+    
+    // Moves every shape and resolves the collisions at the new positions.
+    private void advance(double deltaTime) {
+        if (partitions != null) {
+            // Moves, collides and bounces in one go, recording its own phases
+            WorldConfig bounds = config;
+            partitions.advance(shapes, world, otherShapes, deltaTime, bounds.getWidth(), bounds.getHeight(), stats);
+            indexedBroadPhase = null;
+            return;
+        }
+        long start = SimulationStats.ENABLED ? System.nanoTime() : 0;
         
-        // Trigger UI update
-        if (updateCallback != null) {
-            updateCallback.run();
+        // Update physics
+        world.integrate(deltaTime);
+        for (int i = 0; i < otherShapes.size(); i++) {
+            otherShapes.get(i).move(deltaTime);
+        }
+        if (SimulationStats.ENABLED) {
+            stats.record(SimulationStats.Phase.INTEGRATE, System.nanoTime() - start);
+        }
+        
+        // Handle collisions; the detector records its own phases
+        collisionDetector.detectAndResolveCollisions(shapes);
+        indexedBroadPhase = collisionDetector.getParallelism() == 1 ? collisionDetector.getBroadPhase() : null;
+        resolveWallCollisions();
+    }
+    
+    private void resolveWallCollisions() {
+        long start = SimulationStats.ENABLED ? System.nanoTime() : 0;
+        WorldConfig bounds = config;
+        collisionDetector.checkWallCollisions(world, bounds.getWidth(), bounds.getHeight());
+        collisionDetector.checkWallCollisions(otherShapes, bounds.getWidth(), bounds.getHeight());
+        if (SimulationStats.ENABLED) {
+            stats.record(SimulationStats.Phase.WALLS, System.nanoTime() - start);
+        }
+    }
+    
+    // Copies the bodies in view into the back snapshot and publishes it. Callers hold stateLock,
+    // which keeps the triple buffer's writer side to one thread at a time.
+    private void publishSnapshot() {
+        WorldSnapshot snapshot = snapshots.getBackBuffer();
+        Viewport requested = viewport;
+        Viewport view = requested != null ? requested : wholeWorld;
+        boolean indexed = findVisibleBodies(view);
+        if (indexed) {
+            snapshot.capture(world, tickCount, view, visibleBodies, visibleCount);
+        } else {
+            snapshot.capture(world, tickCount, view);
+        }
+        RenderMode mode = renderMode;
+        if (mode == RenderMode.HEATMAP
+                || (mode == RenderMode.AUTO && snapshot.size() > Constants.HEATMAP_BODY_THRESHOLD)) {
+            if (indexed) {
+                snapshot.captureDensity(world, Constants.HEATMAP_TILE_SIZE, view, visibleBodies, visibleCount);
+            } else {
+                snapshot.captureDensity(world, Constants.HEATMAP_TILE_SIZE, view);
+            }
+        }
+        snapshots.publish();
+        capturedViewport = requested;
+        snapshotStale = false;
+    }
+    
+    /**
+     * Asks the broad phase, the grid or tree, for the bodies that may be in view, in world order. Only
+     * done when it ran on the current shapes this tick and every shape is a body of the world, so its
+     * indices and the world's agree. Bodies the resolver pushed into view after the broad phase ran may
+     * show up a frame late.
+     * @return Whether visibleBodies holds the candidates; if not, the caller checks every body
+     */
+    private boolean findVisibleBodies(Viewport view) {
+        BroadPhase broadPhase = collisionDetector.getBroadPhase();
+        if (broadPhase != indexedBroadPhase || !(broadPhase instanceof SpatialIndex)
+                || !otherShapes.isEmpty()) {
+            return false;
+        }
+        if (visibleBodies.length < shapes.size()) {
+            visibleBodies = new int[Math.max(shapes.size(), visibleBodies.length * 2)];
+        }
+        visibleCount = 0;
+        ((SpatialIndex) broadPhase).queryRectangle(shapes, view.getMinX(), view.getMinY(),
+                view.getMaxX(), view.getMaxY(), visibleCollector);
+        Arrays.sort(visibleBodies, 0, visibleCount);
+        return true;
+    }
+    
+    // Applies the queued shape changes. Callers hold stateLock, or are the only thread using the engine
+    // (e.g. step() in a headless run), so the registry has one owner at a time.
+    private void applyShapeChanges() {
+        if (registry.applyPending()) {
+            shapes = registry.getView();
+            snapshotStale = true;
+            indexedBroadPhase = null;
         }
     }
-
     
+    private void notifyUpdate() {
+        Runnable callback = updateCallback;
+        if (callback != null) {
+            callback.run();
+        }
+    }
 }
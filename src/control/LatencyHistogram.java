@@ -0,0 +1,117 @@
+package control;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds with log-linear buckets, like HdrHistogram:
+ * each power of two is split into 32 equal buckets, so a percentile is off by at most about 3%.
+ * Recording is a few shifts and one array increment, and never allocates.
+ * Meant for one recording thread; other threads may read at any time and see a slightly stale picture.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HIGHEST_BIT = 40; // Longer durations (over 18 minutes) go into the top bucket
+    private static final long HIGHEST_VALUE = (1L << HIGHEST_BIT) - 1;
+    private static final int BUCKETS = (HIGHEST_BIT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private volatile long count;
+    private volatile long sum;
+    private volatile long max;
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, HIGHEST_VALUE));
+        counts[bucketOf(value)]++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+        count++; // Written last, so readers never see more samples in total than in the buckets
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public double getMean() {
+        long samples = count;
+        return samples == 0 ? 0 : (double) sum / samples;
+    }
+
+    @Override
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Smallest value that at least the given percentage of samples are at or below,
+     * rounded up to the end of its bucket. 0 if nothing was recorded.
+     * @param percentile Between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+        long samples = count;
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(samples * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    @Override
+    public long getP90() {
+        return getPercentile(90);
+    }
+
+    @Override
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    @Override
+    public long getP999() {
+        return getPercentile(99.9);
+    }
+
+    // Not synchronised with record(), so a sample recorded at the same moment may be lost.
+    @Override
+    public void reset() {
+        count = 0;
+        Arrays.fill(counts, 0);
+        sum = 0;
+        max = 0;
+    }
+
+    // Values below 64 get a bucket each; above that, the top 6 bits pick the bucket.
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,24 @@
+package control;
+
+/**
+ * JMX view of one LatencyHistogram. All values are in nanoseconds.
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    double getMean();
+
+    long getMax();
+
+    long getP50();
+
+    long getP90();
+
+    long getP99();
+
+    long getP999();
+
+    // Clears the histogram, e.g. after warm-up.
+    void reset();
+}
@@ -0,0 +1,104 @@
+package control;
+
+import shapes.WorldSnapshot;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Plays back a recording made by TrajectoryRecorder, without simulating anything.
+ * The caller drives playback, e.g. from a Swing timer, by calling advance() with the real time
+ * that has passed; recorded ticks are played back at the timestep stored in the recording, so one
+ * second of simulated time takes one second.
+ * Meant for the Event Dispatch Thread only.
+ */
+public class ReplayPlayer {
+
+    private TrajectoryReader reader;
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+    private double position; // Current tick, kept fractional so slow playback still moves forward
+    private boolean playing;
+
+    /**
+     * Opens a recording and shows its first frame. Any recording already open is closed.
+     */
+    public void open(Path path) throws IOException {
+        TrajectoryReader opened = new TrajectoryReader(path);
+        close();
+        reader = opened;
+        position = reader.getFirstTick();
+        playing = false;
+        reader.readFrame(reader.getFirstTick(), snapshot);
+    }
+
+    public void close() throws IOException {
+        playing = false;
+        if (reader != null) {
+            TrajectoryReader closing = reader;
+            reader = null;
+            closing.close();
+        }
+    }
+
+    public boolean isOpen() {
+        return reader != null;
+    }
+
+    public void play() {
+        if (reader != null) {
+            if (getTick() >= reader.getLastTick()) {
+                position = reader.getFirstTick(); // Start over when at the end
+            }
+            playing = true;
+        }
+    }
+
+    public void pause() {
+        playing = false;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Moves playback forward if playing. Stops at the end of the recording.
+     * @param seconds Real time since the last call, already scaled by any playback speed
+     */
+    public void advance(double seconds) throws IOException {
+        if (!playing) {
+            return;
+        }
+        position += seconds / reader.getTimestep();
+        if (position >= reader.getLastTick()) {
+            position = reader.getLastTick();
+            playing = false;
+        }
+        reader.readFrame(getTick(), snapshot);
+    }
+
+    // Jumps to the frame at or before a tick.
+    public void seek(long tick) throws IOException {
+        if (reader == null) {
+            return;
+        }
+        position = Math.max(reader.getFirstTick(), Math.min(tick, reader.getLastTick()));
+        reader.readFrame(getTick(), snapshot);
+    }
+
+    public long getTick() {
+        return (long) position;
+    }
+
+    public long getFirstTick() {
+        return reader == null ? 0 : reader.getFirstTick();
+    }
+
+    public long getLastTick() {
+        return reader == null ? 0 : reader.getLastTick();
+    }
+
+    // The frame to draw. Changed by advance() and seek().
+    public WorldSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,113 @@
+package control;
+
+import shapes.Circle;
+import shapes.GameRectangle;
+import shapes.Shape;
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes scenes as plain text, one shape per line:
+ * type,x,y,width,height,mass,velocityX,velocityY,colour
+ * For circles x and y are the centre and width is the diameter; for rectangles x and y are the
+ * top-left corner. Numbers are written in full precision, so a scene reads back exactly.
+ * Blank lines and lines starting with '#' are ignored.
+ */
+public class SceneFile {
+
+    private static final String HEADER = "# type,x,y,width,height,mass,velocityX,velocityY,colour";
+
+    private SceneFile() {
+    }
+
+    public static List<Shape> read(Path path) throws IOException {
+        List<Shape> shapes = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    shapes.add(parseShape(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return shapes;
+    }
+
+    public static void write(Path path, List<Shape> shapes) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int i = 0; i < shapes.size(); i++) {
+                writer.write(formatShape(shapes.get(i)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static Shape parseShape(String line) {
+        String[] fields = line.split(",");
+        if (fields.length != 9) {
+            throw new IllegalArgumentException("Expected 9 fields but found " + fields.length);
+        }
+        String type = fields[0].trim();
+        double x = Double.parseDouble(fields[1].trim());
+        double y = Double.parseDouble(fields[2].trim());
+        double width = Double.parseDouble(fields[3].trim());
+        double height = Double.parseDouble(fields[4].trim());
+        double mass = Double.parseDouble(fields[5].trim());
+        double velocityX = Double.parseDouble(fields[6].trim());
+        double velocityY = Double.parseDouble(fields[7].trim());
+        Color color = new Color(Integer.parseInt(fields[8].trim(), 16));
+
+        Shape shape;
+        if ("circle".equalsIgnoreCase(type)) {
+            shape = new Circle(x, y, width / 2, mass, color);
+        } else if ("rectangle".equalsIgnoreCase(type)) {
+            shape = new GameRectangle(x, y, width, height, mass, color);
+        } else {
+            throw new IllegalArgumentException("Unknown shape type: " + type);
+        }
+        shape.setVelocity(velocityX, velocityY);
+        return shape;
+    }
+
+    private static String formatShape(Shape shape) {
+        String type;
+        double width;
+        double height;
+        Color color;
+        if (shape instanceof Circle) {
+            Circle circle = (Circle) shape;
+            type = "circle";
+            width = circle.getRadius() * 2;
+            height = width;
+            color = circle.getColor();
+        } else if (shape instanceof GameRectangle) {
+            GameRectangle rect = (GameRectangle) shape;
+            type = "rectangle";
+            width = rect.getWidth();
+            height = rect.getHeight();
+            color = rect.getColor();
+        } else {
+            throw new IllegalArgumentException("Cannot save shape type: " + shape.getClass().getName());
+        }
+        return type + "," + shape.getX() + "," + shape.getY() + "," + width + "," + height + ","
+                + shape.getMass() + "," + shape.getVelocityX() + "," + shape.getVelocityY() + ","
+                + String.format("%06x", color.getRGB() & 0xFFFFFF);
+    }
+}
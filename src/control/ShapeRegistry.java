@@ -0,0 +1,220 @@
+package control;
+
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The shapes of a simulation, shared between the thread that steps it and everyone else.
+ * Any thread can add or remove shapes at any time; the changes are queued without locking and only
+ * applied when the owner calls applyPending(), normally at the start of a tick. Readers get a View:
+ * a fixed list of the shapes at one tick boundary, tagged with an epoch that goes up with every change.
+ * Views are never copied. New shapes are appended past the end of every published view, and only
+ * removals write a fresh array, so a view stays valid for as long as anyone holds it.
+ */
+public class ShapeRegistry {
+
+    // A change run by the owner, e.g. to swap all shapes and something else in the same tick.
+    public interface Command {
+        void apply(ShapeRegistry registry);
+    }
+
+    /**
+     * The shapes at one tick boundary, in the order they were added. The list never changes, but
+     * the shapes in it are live: read their state from a WorldSnapshot to get a consistent picture.
+     */
+    public static final class View extends AbstractList<Shape> implements RandomAccess {
+
+        private final Shape[] shapes;
+        private final int size;
+        private final long epoch;
+
+        private View(Shape[] shapes, int size, long epoch) {
+            this.shapes = shapes;
+            this.size = size;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public Shape get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return shapes[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // Goes up by one whenever shapes are added or removed.
+        public long getEpoch() {
+            return epoch;
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final CommandQueue<Command> commands = new CommandQueue<>();
+    private final Consumer<Command> applier = command -> command.apply(this);
+
+    // Owner side
+    private final PhysicsWorld world;       // Array storage for every PhysicsBody in the registry
+    private final List<Shape> otherShapes = new ArrayList<>(); // Shapes that keep their own state
+    private final Set<Shape> pendingRemovals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Shape[] shapes = new Shape[DEFAULT_CAPACITY];
+    private int size;
+    private long epoch;
+    private boolean changed;
+
+    private volatile View view = new View(shapes, 0, 0);
+
+    public ShapeRegistry(PhysicsWorld world) {
+        this.world = world;
+    }
+
+    // Producer side: queues a change. Can be called from any thread.
+    public void add(Shape shape) {
+        commands.push(registry -> registry.insert(shape));
+    }
+
+    // Queues many shapes as one change. The collection is copied, so the caller may reuse it.
+    public void addAll(Collection<? extends Shape> newShapes) {
+        List<Shape> copy = Arrays.asList(newShapes.toArray(new Shape[0]));
+        commands.push(registry -> registry.insertAll(copy));
+    }
+
+    public void remove(Shape shape) {
+        commands.push(registry -> registry.delete(shape));
+    }
+
+    public void clear() {
+        commands.push(ShapeRegistry::deleteAll);
+    }
+
+    // Queues a change of several steps that must be applied together.
+    public void submit(Command command) {
+        commands.push(command);
+    }
+
+    // The shapes as of the last applyPending(). Lock-free; can be called from any thread.
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * Owner side: applies every queued change and publishes a new view if anything changed.
+     * Must not be called by two threads at once.
+     * @return Whether shapes were added or removed
+     */
+    public boolean applyPending() {
+        commands.drain(applier);
+        flushRemovals();
+        if (!changed) {
+            return false;
+        }
+        changed = false;
+        view = new View(shapes, size, ++epoch);
+        return true;
+    }
+
+    // Shapes that are not PhysicsBody objects. Owner side only.
+    List<Shape> getOtherShapes() {
+        return otherShapes;
+    }
+
+    // The following are for commands, which run on the owner's thread.
+
+    public void insert(Shape shape) {
+        flushRemovals();
+        ensureCapacity(size + 1);
+        append(shape);
+    }
+
+    public void insertAll(Collection<? extends Shape> newShapes) {
+        flushRemovals();
+        int bodies = 0;
+        for (Shape shape : newShapes) {
+            if (shape instanceof PhysicsBody) {
+                bodies++;
+            }
+        }
+        world.ensureCapacity(world.size() + bodies);
+        ensureCapacity(size + newShapes.size());
+        for (Shape shape : newShapes) {
+            append(shape);
+        }
+    }
+
+    // The shapes with the changes applied so far, e.g. to check new shapes against. Not a published view.
+    public List<Shape> getCurrentShapes() {
+        flushRemovals();
+        return Collections.unmodifiableList(Arrays.asList(shapes).subList(0, size));
+    }
+
+    // Removals are gathered and done in one pass before the next insert or the end of applyPending().
+    public void delete(Shape shape) {
+        pendingRemovals.add(shape);
+    }
+
+    public void deleteAll() {
+        pendingRemovals.clear();
+        // A fresh array, since published views still hold the old one
+        shapes = new Shape[DEFAULT_CAPACITY];
+        size = 0;
+        world.clear();
+        otherShapes.clear();
+        changed = true;
+    }
+
+    private void append(Shape shape) {
+        // Safe in place: every published view of this array ends at or before this slot
+        shapes[size++] = shape;
+        if (shape instanceof PhysicsBody) {
+            world.add((PhysicsBody) shape);
+        } else {
+            otherShapes.add(shape);
+        }
+        changed = true;
+    }
+
+    private void flushRemovals() {
+        if (pendingRemovals.isEmpty()) {
+            return;
+        }
+        Shape[] kept = new Shape[shapes.length];
+        int keptCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (!pendingRemovals.contains(shapes[i])) {
+                kept[keptCount++] = shapes[i];
+            }
+        }
+        if (keptCount != size) {
+            // Compacted into the new array; views may still be reading the old one
+            shapes = kept;
+            size = keptCount;
+            world.removeAll(pendingRemovals);
+            otherShapes.removeAll(pendingRemovals);
+            changed = true;
+        }
+        pendingRemovals.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > shapes.length) {
+            // Old views keep the old array
+            shapes = Arrays.copyOf(shapes, Math.max(capacity, shapes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package control;
+
+import shapes.Circle;
+import shapes.GameRectangle;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the shapes described by a SpawnSpec straight into a PhysicsWorld.
+ * For non-overlapping placement every placed shape is entered into a uniform grid with cells about
+ * the size of the largest new shape, so checking a candidate spot only looks at the few shapes in
+ * the cells it covers. Placing a million shapes then takes about as long as creating them.
+ */
+final class ShapeSpawner {
+
+    private static final int MAX_ATTEMPTS = 30;   // Random spots tried per shape before it is left out
+    private static final int MAX_CELLS = 1 << 22;
+    private static final int PALETTE_SIZE = 32;   // Shared colours, which also lets the renderer batch them
+
+    private final SpawnSpec spec;
+    private final Random random;
+    private final Color[] palette = new Color[PALETTE_SIZE];
+
+    // Placed shapes: centre, half size, and whether they are circles
+    private int placedCount;
+    private double[] centreX = new double[0];
+    private double[] centreY = new double[0];
+    private double[] halfWidth = new double[0];
+    private double[] halfHeight = new double[0];
+    private boolean[] circle = new boolean[0];
+
+    // Grid over the spawn area; a shape is entered in every cell its box covers
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private int[] cellHead;
+    private int[] entryNext = new int[0];
+    private int[] entryShape = new int[0];
+    private int entryCount;
+
+    ShapeSpawner(SpawnSpec spec) {
+        this.spec = spec;
+        this.random = new Random(spec.getSeed());
+        for (int c = 0; c < PALETTE_SIZE; c++) {
+            palette[c] = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+        if (spec.isNonOverlapping()) {
+            double area = spec.getAreaWidth() * spec.getAreaHeight();
+            cellSize = Math.max(spec.getMaxSize(), Math.sqrt(area / MAX_CELLS));
+            columns = Math.max(1, (int) Math.ceil(spec.getAreaWidth() / cellSize));
+            rows = Math.max(1, (int) Math.ceil(spec.getAreaHeight() / cellSize));
+            cellHead = new int[columns * rows];
+            Arrays.fill(cellHead, -1);
+            ensureShapeCapacity(spec.getCount());
+        }
+    }
+
+    // Keeps new shapes clear of shapes that are already there. Only needed for non-overlapping placement.
+    void avoid(List<Shape> existing) {
+        if (!spec.isNonOverlapping()) {
+            return;
+        }
+        ensureShapeCapacity(existing.size() + spec.getCount());
+        for (int i = 0; i < existing.size(); i++) {
+            Shape shape = existing.get(i);
+            double minX = shape.getMinX();
+            double minY = shape.getMinY();
+            double maxX = shape.getMaxX();
+            double maxY = shape.getMaxY();
+            place((minX + maxX) / 2, (minY + maxY) / 2, (maxX - minX) / 2, (maxY - minY) / 2,
+                  shape.getTypeId() == PhysicsWorld.TYPE_CIRCLE);
+        }
+    }
+
+    /**
+     * Leaves out the spawned shapes that overlap an existing shape. Used when the spawned shapes are
+     * finally added, since the shapes avoid() saw may have moved or been joined by others by then.
+     * The spawned shapes are already clear of each other.
+     * @return The spawned shapes that are still clear, in order
+     */
+    static List<Shape> keepClear(SpawnSpec spec, List<Shape> existing, List<Shape> spawned) {
+        ShapeSpawner checker = new ShapeSpawner(spec);
+        checker.avoid(existing);
+        List<Shape> clear = new ArrayList<>(spawned.size());
+        for (int i = 0; i < spawned.size(); i++) {
+            Shape shape = spawned.get(i);
+            double half = (shape.getMaxX() - shape.getMinX()) / 2;
+            if (!checker.overlapsPlaced(shape.getMinX() + half, shape.getMinY() + half, half,
+                    shape.getTypeId() == PhysicsWorld.TYPE_CIRCLE)) {
+                clear.add(shape);
+            }
+        }
+        return clear;
+    }
+
+    /**
+     * Creates the shapes in the given world.
+     * @return The number of shapes created, less than requested if some found no free spot
+     */
+    int spawn(PhysicsWorld world) {
+        int count = spec.getCount();
+        world.ensureCapacity(world.size() + count);
+        int created = 0;
+        for (int n = 0; n < count; n++) {
+            boolean isCircle = random.nextDouble() < spec.getCircleFraction();
+            double size = between(spec.getMinSize(), spec.getMaxSize());
+            double mass = between(spec.getMinMass(), spec.getMaxMass());
+            double velocityX = between(spec.getMinVelocity(), spec.getMaxVelocity());
+            double velocityY = between(spec.getMinVelocity(), spec.getMaxVelocity());
+            Color color = palette[random.nextInt(PALETTE_SIZE)];
+            double half = size / 2;
+
+            double x = 0;
+            double y = 0;
+            boolean found = false;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && !found; attempt++) {
+                x = coordinate(spec.getAreaX(), spec.getAreaWidth(), half);
+                y = coordinate(spec.getAreaY(), spec.getAreaHeight(), half);
+                found = !spec.isNonOverlapping() || !overlapsPlaced(x, y, half, isCircle);
+            }
+            if (!found) {
+                continue;
+            }
+            if (spec.isNonOverlapping()) {
+                place(x, y, half, half, isCircle);
+            }
+
+            PhysicsBody body = isCircle
+                    ? new Circle(world, x, y, half, mass, color)
+                    : new GameRectangle(world, x - half, y - half, size, size, mass, color);
+            body.setVelocity(velocityX, velocityY);
+            created++;
+        }
+        return created;
+    }
+
+    private double between(double min, double max) {
+        return min + random.nextDouble() * (max - min);
+    }
+
+    // A centre coordinate that keeps a shape of the given half size inside [start, start + length].
+    private double coordinate(double start, double length, double half) {
+        double low = start + Math.min(half, length / 2);
+        double high = start + length - Math.min(half, length / 2);
+        if (spec.getDistribution() == SpawnSpec.Distribution.GAUSSIAN) {
+            double value = start + length / 2 + random.nextGaussian() * length / 6;
+            return Math.max(low, Math.min(high, value));
+        }
+        return low + random.nextDouble() * (high - low);
+    }
+
+    private boolean overlapsPlaced(double x, double y, double half, boolean isCircle) {
+        int firstColumn = column(x - half);
+        int lastColumn = column(x + half);
+        int firstRow = row(y - half);
+        int lastRow = row(y + half);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                for (int e = cellHead[r * columns + c]; e >= 0; e = entryNext[e]) {
+                    if (overlaps(x, y, half, isCircle, entryShape[e])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Exact test against one placed shape. Touching counts as overlapping, as it does for two rectangles.
+    private boolean overlaps(double x, double y, double half, boolean isCircle, int other) {
+        double dx = Math.abs(x - centreX[other]);
+        double dy = Math.abs(y - centreY[other]);
+        double otherHalfWidth = halfWidth[other];
+        double otherHalfHeight = halfHeight[other];
+        if (isCircle && circle[other]) {
+            double reach = half + otherHalfWidth;
+            return dx * dx + dy * dy <= reach * reach;
+        }
+        if (isCircle || circle[other]) {
+            // Distance from the circle's centre to the box
+            double radius = isCircle ? half : otherHalfWidth;
+            double boxHalfWidth = isCircle ? otherHalfWidth : half;
+            double boxHalfHeight = isCircle ? otherHalfHeight : half;
+            double outsideX = Math.max(dx - boxHalfWidth, 0);
+            double outsideY = Math.max(dy - boxHalfHeight, 0);
+            return outsideX * outsideX + outsideY * outsideY <= radius * radius;
+        }
+        return dx <= half + otherHalfWidth && dy <= half + otherHalfHeight;
+    }
+
+    private void place(double x, double y, double halfX, double halfY, boolean isCircle) {
+        int shape = placedCount++;
+        centreX[shape] = x;
+        centreY[shape] = y;
+        halfWidth[shape] = halfX;
+        halfHeight[shape] = halfY;
+        circle[shape] = isCircle;
+        int lastColumn = column(x + halfX);
+        int lastRow = row(y + halfY);
+        for (int r = row(y - halfY); r <= lastRow; r++) {
+            for (int c = column(x - halfX); c <= lastColumn; c++) {
+                if (entryCount == entryShape.length) {
+                    entryShape = Arrays.copyOf(entryShape, Math.max(16, entryCount * 2));
+                    entryNext = Arrays.copyOf(entryNext, entryShape.length);
+                }
+                int cell = r * columns + c;
+                entryShape[entryCount] = shape;
+                entryNext[entryCount] = cellHead[cell];
+                cellHead[cell] = entryCount++;
+            }
+        }
+    }
+
+    // Cells outside the area are folded onto its edge
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - spec.getAreaX()) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - spec.getAreaY()) / cellSize)));
+    }
+
+    private void ensureShapeCapacity(int capacity) {
+        if (centreX.length >= capacity) {
+            return;
+        }
+        centreX = Arrays.copyOf(centreX, capacity);
+        centreY = Arrays.copyOf(centreY, capacity);
+        halfWidth = Arrays.copyOf(halfWidth, capacity);
+        halfHeight = Arrays.copyOf(halfHeight, capacity);
+        circle = Arrays.copyOf(circle, capacity);
+        if (entryShape.length < capacity) {
+            entryShape = Arrays.copyOf(entryShape, capacity);
+            entryNext = Arrays.copyOf(entryNext, capacity);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package control;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-phase timings and collision counters of one simulation.
+ * Off unless the JVM is started with -Dsimulator.stats=true. ENABLED is a static final, so the JIT
+ * removes every "if (SimulationStats.ENABLED)" block, System.nanoTime() calls included, when it is off.
+ * The simulation thread records every phase but RENDER, which the thread that paints records.
+ */
+public class SimulationStats implements SimulationStatsMXBean {
+
+    public static final boolean ENABLED = Boolean.getBoolean("simulator.stats");
+
+    private static final String DOMAIN = "collision.simulator";
+
+    public enum Phase {
+        INTEGRATE("integrate"),
+        BROAD_PHASE("broad-phase"),
+        NARROW_PHASE("narrow-phase"),
+        RESOLVE("resolve"),
+        WALLS("walls"),
+        RENDER("render"),
+        TICK("tick"); // A whole step, all of the above but RENDER
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+    private volatile long ticks;
+    private volatile long pairsTested;
+    private volatile long contactsFound;
+    private volatile long impulsesApplied;
+    private ObjectName[] registeredNames;
+
+    public SimulationStats() {
+        for (int p = 0; p < histograms.length; p++) {
+            histograms[p] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    // Counters are added once per tick or phase, not once per pair, to keep the volatile writes few.
+    public void countTick() {
+        ticks++;
+    }
+
+    public void addPairsTested(long pairs) {
+        pairsTested += pairs;
+    }
+
+    public void addContactsFound(long contacts) {
+        contactsFound += contacts;
+    }
+
+    public void addImpulsesApplied(long impulses) {
+        impulsesApplied += impulses;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks;
+    }
+
+    @Override
+    public long getPairsTested() {
+        return pairsTested;
+    }
+
+    @Override
+    public long getContactsFound() {
+        return contactsFound;
+    }
+
+    @Override
+    public long getImpulsesApplied() {
+        return impulsesApplied;
+    }
+
+    @Override
+    public void reset() {
+        ticks = 0;
+        pairsTested = 0;
+        contactsFound = 0;
+        impulsesApplied = 0;
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Publishes the counters and the phase histograms on the platform MBean server, as
+     * collision.simulator:type=SimulationStats,name=NAME and
+     * collision.simulator:type=PhaseTiming,name=NAME,phase=PHASE.
+     * @param name Tells simulations in the same JVM apart
+     */
+    public synchronized void registerMBeans(String name) {
+        unregisterMBeans();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        // Filled in as each bean is registered, so a failure only undoes this object's own beans
+        registeredNames = new ObjectName[histograms.length + 1];
+        try {
+            ObjectName statsName = new ObjectName(DOMAIN + ":type=SimulationStats,name=" + ObjectName.quote(name));
+            server.registerMBean(this, statsName);
+            registeredNames[0] = statsName;
+            for (Phase phase : Phase.values()) {
+                ObjectName phaseName = new ObjectName(DOMAIN + ":type=PhaseTiming,name=" + ObjectName.quote(name)
+                        + ",phase=" + phase.getLabel());
+                server.registerMBean(getHistogram(phase), phaseName);
+                registeredNames[phase.ordinal() + 1] = phaseName;
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalArgumentException("Cannot register statistics as " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        if (registeredNames == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName registered : registeredNames) {
+            try {
+                if (registered != null) {
+                    server.unregisterMBean(registered);
+                }
+            } catch (JMException e) {
+                // Already gone
+            }
+        }
+        registeredNames = null;
+    }
+}
@@ -0,0 +1,19 @@
+package control;
+
+/**
+ * JMX view of the counters in SimulationStats. The phase timings are published as separate
+ * LatencyHistogramMXBeans, one per phase.
+ */
+public interface SimulationStatsMXBean {
+
+    long getTicks();
+
+    long getPairsTested();
+
+    long getContactsFound();
+
+    long getImpulsesApplied();
+
+    // Clears the counters and every phase histogram.
+    void reset();
+}
@@ -0,0 +1,183 @@
+package control;
+
+import shapes.Circle;
+import shapes.GameRectangle;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the full state of a PhysicsWorld in a compact binary format.
+ * Little-endian layout:
+ *   header  int magic "CSIM", int version, int body count, int reserved (0), long tick
+ *   body    double x, y, velocityX, velocityY, width, height, mass; int ARGB colour; byte type
+ * x and y are the centre of a circle (width is its diameter) and the top-left corner of a rectangle,
+ * as in SceneFile. Values are stored as they are in memory, so a world reads back bit for bit.
+ * Large files are memory-mapped in chunks; small ones go through one reused heap buffer.
+ * Sleep state is not stored: restored bodies start awake.
+ */
+public class SnapshotFile {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4353494D; // "CSIM"
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = 7 * Double.BYTES + Integer.BYTES + 1;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int CHUNK_RECORDS = (64 << 20) / RECORD_BYTES; // About 64 MB per mapping
+    private static final int COLOR_CACHE_BITS = 10;
+    private static final int COLOR_CACHE_SIZE = 1 << COLOR_CACHE_BITS;
+    private static final long MAP_THRESHOLD = 1 << 20; // Files smaller than this are not worth mapping
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes every body of a world.
+     * @param tick Tick count of the simulation, stored in the header
+     */
+    public static void write(Path path, PhysicsWorld world, long tick) throws IOException {
+        int count = world.size();
+        long fileSize = HEADER_BYTES + (long) count * RECORD_BYTES;
+        boolean mapped = fileSize >= MAP_THRESHOLD;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).putLong(tick);
+            header.flip();
+            writeFully(channel, header, 0);
+
+            ByteBuffer heapBuffer = mapped ? null : ByteBuffer.allocate(count * RECORD_BYTES).order(ORDER);
+            long position = HEADER_BYTES;
+            for (int first = 0; first < count; first += CHUNK_RECORDS) {
+                int records = Math.min(CHUNK_RECORDS, count - first);
+                int bytes = records * RECORD_BYTES;
+                ByteBuffer buffer;
+                if (mapped) {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes).order(ORDER);
+                } else {
+                    buffer = heapBuffer;
+                    buffer.clear();
+                }
+                for (int i = first; i < first + records; i++) {
+                    buffer.putDouble(world.getX(i));
+                    buffer.putDouble(world.getY(i));
+                    buffer.putDouble(world.getVelocityX(i));
+                    buffer.putDouble(world.getVelocityY(i));
+                    buffer.putDouble(world.getWidth(i));
+                    buffer.putDouble(world.getHeight(i));
+                    buffer.putDouble(world.getMass(i));
+                    buffer.putInt(world.getRgb(i));
+                    buffer.put((byte) world.getType(i));
+                }
+                if (!mapped) {
+                    buffer.flip();
+                    writeFully(channel, buffer, position);
+                }
+                position += bytes;
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot, adding its bodies to a world.
+     * @param world World to add the bodies to, normally an empty one
+     * @return The tick count stored in the snapshot
+     */
+    public static long read(Path path, PhysicsWorld world) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException(path + ": not a snapshot file");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException(path + ": not a snapshot file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + ": unsupported snapshot version " + version);
+            }
+            int count = header.getInt();
+            header.getInt(); // Reserved
+            long tick = header.getLong();
+            if (count < 0 || fileSize != HEADER_BYTES + (long) count * RECORD_BYTES) {
+                throw new IOException(path + ": snapshot is truncated or corrupt");
+            }
+
+            boolean mapped = fileSize >= MAP_THRESHOLD;
+            ByteBuffer heapBuffer = mapped ? null : ByteBuffer.allocate(count * RECORD_BYTES).order(ORDER);
+            world.ensureCapacity(world.size() + count);
+            // Scenes tend to reuse a few colours, so recently seen ones share a Color object
+            Color[] recentColors = new Color[COLOR_CACHE_SIZE];
+            long position = HEADER_BYTES;
+            for (int first = 0; first < count; first += CHUNK_RECORDS) {
+                int records = Math.min(CHUNK_RECORDS, count - first);
+                int bytes = records * RECORD_BYTES;
+                ByteBuffer buffer;
+                if (mapped) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ORDER);
+                } else {
+                    buffer = heapBuffer;
+                    readFully(channel, buffer, position);
+                    buffer.flip();
+                }
+                for (int r = 0; r < records; r++) {
+                    double x = buffer.getDouble();
+                    double y = buffer.getDouble();
+                    double velocityX = buffer.getDouble();
+                    double velocityY = buffer.getDouble();
+                    double width = buffer.getDouble();
+                    double height = buffer.getDouble();
+                    double mass = buffer.getDouble();
+                    int rgb = buffer.getInt();
+                    int type = buffer.get();
+                    int slot = (rgb * 0x9E3779B1) >>> (32 - COLOR_CACHE_BITS);
+                    Color color = recentColors[slot];
+                    if (color == null || color.getRGB() != rgb) {
+                        color = new Color(rgb, true);
+                        recentColors[slot] = color;
+                    }
+
+                    PhysicsBody body;
+                    if (type == PhysicsWorld.TYPE_CIRCLE) {
+                        body = new Circle(world, x, y, width / 2, mass, color);
+                    } else if (type == PhysicsWorld.TYPE_RECTANGLE) {
+                        body = new GameRectangle(world, x, y, width, height, mass, color);
+                    } else {
+                        throw new IOException(path + ": unknown shape type " + type + " in body " + (first + r));
+                    }
+                    body.setVelocity(velocityX, velocityY);
+                }
+                position += bytes;
+            }
+            return tick;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        buffer.limit(buffer.capacity());
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+}
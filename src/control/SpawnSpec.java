@@ -0,0 +1,178 @@
+package control;
+
+import constants.Constants;
+
+/**
+ * Describes a batch of random shapes for GameEngine.spawnShapes: how many, where, and the ranges
+ * their properties are drawn from. The same spec and seed always give the same shapes.
+ * Defaults match the "Add Random Shape" button, spread over the whole simulation area.
+ */
+public class SpawnSpec {
+
+    public enum Distribution {
+        UNIFORM,   // Evenly over the area
+        GAUSSIAN   // Clustered around the centre of the area, a sixth of its size per standard deviation
+    }
+
+    private final int count;
+    private long seed;
+    private Distribution distribution = Distribution.UNIFORM;
+    private double circleFraction = 0.5;
+    private double minMass = Constants.MIN_MASS;
+    private double maxMass = Constants.MAX_MASS;
+    private double minSize = Constants.MIN_SIZE;
+    private double maxSize = Constants.MAX_SIZE;
+    private double minVelocity = Constants.MIN_VELOCITY;
+    private double maxVelocity = Constants.MAX_VELOCITY;
+    private boolean nonOverlapping;
+    private double areaX;
+    private double areaY;
+    private double areaWidth = Constants.SIMULATION_WIDTH;
+    private double areaHeight = Constants.SIMULATION_HEIGHT;
+
+    public SpawnSpec(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Shape count cannot be negative: " + count);
+        }
+        this.count = count;
+    }
+
+    /**
+     * Largest shape size that lets a number of shapes cover about the given fraction of an area,
+     * e.g. to size a million shapes so they can all be placed without overlapping.
+     */
+    public static double fittingSize(int count, double width, double height, double coverage) {
+        return Math.sqrt(width * height * coverage / Math.max(count, 1));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setDistribution(Distribution distribution) {
+        if (distribution == null) {
+            throw new IllegalArgumentException("Distribution cannot be null");
+        }
+        this.distribution = distribution;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    // Share of circles among the shapes, the rest being squares.
+    public void setCircleFraction(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Circle fraction must be between 0 and 1: " + fraction);
+        }
+        this.circleFraction = fraction;
+    }
+
+    public double getCircleFraction() {
+        return circleFraction;
+    }
+
+    public void setMassRange(double min, double max) {
+        checkRange("Mass", min, max);
+        if (min <= 0) {
+            throw new IllegalArgumentException("Mass must be positive: " + min);
+        }
+        this.minMass = min;
+        this.maxMass = max;
+    }
+
+    public double getMinMass() {
+        return minMass;
+    }
+
+    public double getMaxMass() {
+        return maxMass;
+    }
+
+    // Diameter of circles and side of squares.
+    public void setSizeRange(double min, double max) {
+        checkRange("Size", min, max);
+        if (min <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + min);
+        }
+        this.minSize = min;
+        this.maxSize = max;
+    }
+
+    public double getMinSize() {
+        return minSize;
+    }
+
+    public double getMaxSize() {
+        return maxSize;
+    }
+
+    // Range of each velocity component.
+    public void setVelocityRange(double min, double max) {
+        checkRange("Velocity", min, max);
+        this.minVelocity = min;
+        this.maxVelocity = max;
+    }
+
+    public double getMinVelocity() {
+        return minVelocity;
+    }
+
+    public double getMaxVelocity() {
+        return maxVelocity;
+    }
+
+    /**
+     * When on, shapes are only placed where they touch neither each other nor the shapes already in
+     * the simulation. A shape that finds no free spot after a number of tries is left out, so fewer
+     * shapes than requested may be spawned in a crowded area.
+     */
+    public void setNonOverlapping(boolean nonOverlapping) {
+        this.nonOverlapping = nonOverlapping;
+    }
+
+    public boolean isNonOverlapping() {
+        return nonOverlapping;
+    }
+
+    // The area shapes are placed in, entirely inside it. Defaults to the default bounds of WorldConfig.
+    public void setArea(double x, double y, double width, double height) {
+        if (!(width > 0 && height > 0)) {
+            throw new IllegalArgumentException("Area must have a positive size: " + width + "x" + height);
+        }
+        this.areaX = x;
+        this.areaY = y;
+        this.areaWidth = width;
+        this.areaHeight = height;
+    }
+
+    public double getAreaX() {
+        return areaX;
+    }
+
+    public double getAreaY() {
+        return areaY;
+    }
+
+    public double getAreaWidth() {
+        return areaWidth;
+    }
+
+    public double getAreaHeight() {
+        return areaHeight;
+    }
+
+    private static void checkRange(String name, double min, double max) {
+        if (!(min <= max) || Double.isInfinite(min) || Double.isInfinite(max)) {
+            throw new IllegalArgumentException(name + " range is invalid: " + min + " to " + max);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package control;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of trajectory recordings, shared by TrajectoryRecorder and TrajectoryReader. Little-endian.
+ *   file header  int magic "CTRJ", int version, double quantum, int tick interval, int reserved (0),
+ *                double timestep (seconds per tick)
+ *   frame        byte kind, long tick, int body count, int payload bytes, payload
+ *   keyframe     per body: byte type, int ARGB colour, double width, height, minX, minY
+ *   delta frame  per body: zigzag varints of the change in minX and minY, in units of the quantum
+ *   footer       keyframe index of (long tick, long file offset) pairs, long index offset, int magic "CIDX"
+ * Positions are the top-left corner of each body's bounding box. Delta frames are relative to the
+ * positions the reader reconstructed for the previous frame, so rounding errors never add up.
+ * A recording that was not closed properly has no footer; readers then scan the frame headers.
+ */
+final class TrajectoryFormat {
+
+    static final int MAGIC = 0x4354524A; // "CTRJ"
+    static final int VERSION = 1;
+    static final int FOOTER_MAGIC = 0x43494458; // "CIDX"
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_BYTES = 32;
+    static final int FRAME_HEADER_BYTES = 17;
+    static final int FOOTER_BYTES = 12;
+    static final int INDEX_ENTRY_BYTES = 16;
+    static final int KEYFRAME_BODY_BYTES = 1 + 4 + 4 * 8;
+
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+
+    private TrajectoryFormat() {
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,296 @@
+package control;
+
+import shapes.WorldSnapshot;
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to a recording written by TrajectoryRecorder.
+ * The file is memory-mapped one window at a time, so recordings far larger than memory or than
+ * the 2 GB limit of a single mapping can be read. Any tick is rebuilt from the last keyframe at
+ * or before it, found by binary search in the keyframe index, plus the delta frames after that
+ * keyframe. Playing forward continues from the frame decoded last instead of starting over.
+ * Not thread-safe.
+ */
+public class TrajectoryReader implements Closeable {
+
+    private static final int WINDOW_BYTES = 64 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final double quantum;
+    private final int tickInterval;
+    private final double timestep;
+    private final long dataEnd; // End of the frames, where the footer starts if there is one
+    private long[] keyframeTicks;
+    private long[] keyframeOffsets;
+    private int keyframeCount;
+    private final long firstTick;
+    private final long lastTick;
+
+    // Mapped part of the file
+    private ByteBuffer window;
+    private long windowStart;
+
+    // Bodies of the frame decoded last
+    private int count;
+    private int[] type = new int[0];
+    private Color[] colors = new Color[0];
+    private double[] width = new double[0];
+    private double[] height = new double[0];
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private int decodedKeyframe = -1;
+    private long decodedTick;
+    private long nextFrameOffset;
+
+    public TrajectoryReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            ByteBuffer header = readAt(0, TrajectoryFormat.HEADER_BYTES);
+            if (header == null || header.getInt() != TrajectoryFormat.MAGIC) {
+                throw new IOException(path + ": not a trajectory recording");
+            }
+            int version = header.getInt();
+            if (version != TrajectoryFormat.VERSION) {
+                throw new IOException(path + ": unsupported recording version " + version);
+            }
+            quantum = header.getDouble();
+            tickInterval = header.getInt();
+            header.getInt(); // Reserved
+            timestep = header.getDouble();
+            if (!(timestep > 0) || Double.isInfinite(timestep)) {
+                throw new IOException(path + ": invalid timestep " + timestep);
+            }
+
+            keyframeTicks = new long[16];
+            keyframeOffsets = new long[16];
+            ByteBuffer footer = fileSize >= TrajectoryFormat.HEADER_BYTES + TrajectoryFormat.FOOTER_BYTES
+                    ? readAt(fileSize - TrajectoryFormat.FOOTER_BYTES, TrajectoryFormat.FOOTER_BYTES) : null;
+            if (footer != null && footer.getInt(8) == TrajectoryFormat.FOOTER_MAGIC) {
+                dataEnd = footer.getLong(0);
+                readIndex(fileSize - TrajectoryFormat.FOOTER_BYTES);
+            } else {
+                // The recording was not closed properly, so rebuild the index from the frame headers
+                dataEnd = scanFrames(fileSize);
+            }
+            if (keyframeCount == 0) {
+                throw new IOException(path + ": recording has no frames");
+            }
+            firstTick = keyframeTicks[0];
+            lastTick = findLastTick();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    // Seconds per tick of the engine that made the recording.
+    public double getTimestep() {
+        return timestep;
+    }
+
+    // Ticks between recorded frames.
+    public int getTickInterval() {
+        return tickInterval;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    /**
+     * Rebuilds the last recorded frame at or before a tick and copies it into a snapshot for drawing.
+     * Ticks outside the recording are clamped to its first or last frame.
+     */
+    public void readFrame(long tick, WorldSnapshot target) throws IOException {
+        int keyframe = findKeyframe(tick);
+        if (keyframe != decodedKeyframe || tick < decodedTick) {
+            decodeKeyframe(keyframe);
+        }
+        while (nextFrameOffset < dataEnd) {
+            ByteBuffer header = map(nextFrameOffset, TrajectoryFormat.FRAME_HEADER_BYTES);
+            byte kind = header.get();
+            long frameTick = header.getLong();
+            if (kind == TrajectoryFormat.KEYFRAME || frameTick > tick) {
+                break;
+            }
+            decodeDelta();
+        }
+        target.load(count, decodedTick, type, minX, minY, width, height, colors);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // Index of the last keyframe at or before the tick, or 0 if the tick is before the first one.
+    private int findKeyframe(long tick) {
+        int index = Arrays.binarySearch(keyframeTicks, 0, keyframeCount, tick);
+        if (index < 0) {
+            index = -index - 2; // Insertion point minus one
+        }
+        return Math.max(index, 0);
+    }
+
+    private void decodeKeyframe(int keyframe) throws IOException {
+        long offset = keyframeOffsets[keyframe];
+        ByteBuffer header = map(offset, TrajectoryFormat.FRAME_HEADER_BYTES);
+        header.get();
+        long frameTick = header.getLong();
+        int bodies = header.getInt();
+        int payload = header.getInt();
+        ensureCapacity(bodies);
+
+        ByteBuffer buffer = map(offset + TrajectoryFormat.FRAME_HEADER_BYTES, payload);
+        for (int i = 0; i < bodies; i++) {
+            type[i] = buffer.get();
+            int rgb = buffer.getInt();
+            width[i] = buffer.getDouble();
+            height[i] = buffer.getDouble();
+            minX[i] = buffer.getDouble();
+            minY[i] = buffer.getDouble();
+            // Bodies keep their colour until the next keyframe, so only create a Color when it changes
+            if (colors[i] == null || colors[i].getRGB() != rgb) {
+                colors[i] = new Color(rgb, true);
+            }
+        }
+        count = bodies;
+        decodedKeyframe = keyframe;
+        decodedTick = frameTick;
+        nextFrameOffset = offset + TrajectoryFormat.FRAME_HEADER_BYTES + payload;
+    }
+
+    private void decodeDelta() throws IOException {
+        ByteBuffer header = map(nextFrameOffset, TrajectoryFormat.FRAME_HEADER_BYTES);
+        header.get();
+        long frameTick = header.getLong();
+        int bodies = header.getInt();
+        int payload = header.getInt();
+        if (bodies != count) {
+            throw new IOException(path + ": delta frame at tick " + frameTick + " does not match its keyframe");
+        }
+        ByteBuffer buffer = map(nextFrameOffset + TrajectoryFormat.FRAME_HEADER_BYTES, payload);
+        for (int i = 0; i < bodies; i++) {
+            // Same arithmetic as the recorder
+            minX[i] += TrajectoryFormat.getVarLong(buffer) * quantum;
+            minY[i] += TrajectoryFormat.getVarLong(buffer) * quantum;
+        }
+        decodedTick = frameTick;
+        nextFrameOffset += TrajectoryFormat.FRAME_HEADER_BYTES + payload;
+    }
+
+    // Returns a buffer positioned at the given offset with at least length bytes after it.
+    private ByteBuffer map(long offset, int length) throws IOException {
+        if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+            long size = Math.min(Math.max(WINDOW_BYTES, length), channel.size() - offset);
+            if (size < length) {
+                throw new IOException(path + ": recording is truncated");
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(TrajectoryFormat.ORDER);
+            windowStart = offset;
+        }
+        window.limit(window.capacity());
+        window.position((int) (offset - windowStart));
+        return window;
+    }
+
+    private void readIndex(long indexEnd) throws IOException {
+        long entries = (indexEnd - dataEnd) / TrajectoryFormat.INDEX_ENTRY_BYTES;
+        if (entries < 0 || entries > Integer.MAX_VALUE) {
+            throw new IOException(path + ": corrupt keyframe index");
+        }
+        keyframeTicks = new long[(int) Math.max(entries, 1)];
+        keyframeOffsets = new long[keyframeTicks.length];
+        for (int k = 0; k < entries; k++) {
+            ByteBuffer entry = map(dataEnd + (long) k * TrajectoryFormat.INDEX_ENTRY_BYTES,
+                    TrajectoryFormat.INDEX_ENTRY_BYTES);
+            keyframeTicks[k] = entry.getLong();
+            keyframeOffsets[k] = entry.getLong();
+        }
+        keyframeCount = (int) entries;
+    }
+
+    // Walks the frame headers, indexing the keyframes. Returns where the last complete frame ends.
+    private long scanFrames(long fileSize) throws IOException {
+        long offset = TrajectoryFormat.HEADER_BYTES;
+        while (offset + TrajectoryFormat.FRAME_HEADER_BYTES <= fileSize) {
+            ByteBuffer header = readAt(offset, TrajectoryFormat.FRAME_HEADER_BYTES);
+            byte kind = header.get();
+            long frameTick = header.getLong();
+            header.getInt();
+            long end = offset + TrajectoryFormat.FRAME_HEADER_BYTES + header.getInt();
+            if (end > fileSize || (kind != TrajectoryFormat.KEYFRAME && kind != TrajectoryFormat.DELTA)) {
+                break; // Cut off while being written
+            }
+            if (kind == TrajectoryFormat.KEYFRAME) {
+                if (keyframeCount == keyframeTicks.length) {
+                    keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+                    keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+                }
+                keyframeTicks[keyframeCount] = frameTick;
+                keyframeOffsets[keyframeCount] = offset;
+                keyframeCount++;
+            }
+            offset = end;
+        }
+        return offset;
+    }
+
+    // The index only lists keyframes, so walk the few frames after the last one.
+    private long findLastTick() throws IOException {
+        long offset = keyframeOffsets[keyframeCount - 1];
+        long tick = keyframeTicks[keyframeCount - 1];
+        while (offset < dataEnd) {
+            ByteBuffer header = map(offset, TrajectoryFormat.FRAME_HEADER_BYTES);
+            header.get();
+            tick = header.getLong();
+            header.getInt();
+            offset += TrajectoryFormat.FRAME_HEADER_BYTES + header.getInt();
+        }
+        return tick;
+    }
+
+    // Reads a few bytes with a plain read, for headers outside the mapped window. Null at end of file.
+    private ByteBuffer readAt(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(TrajectoryFormat.ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void ensureCapacity(int bodies) {
+        if (type.length >= bodies) {
+            return;
+        }
+        int capacity = Math.max(bodies, type.length * 2);
+        type = new int[capacity];
+        colors = Arrays.copyOf(colors, capacity);
+        width = new double[capacity];
+        height = new double[capacity];
+        minX = new double[capacity];
+        minY = new double[capacity];
+    }
+}
@@ -0,0 +1,342 @@
+package control;
+
+import shapes.PhysicsWorld;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the trajectories of all bodies to a file, see TrajectoryFormat.
+ * The simulation thread only copies the positions into a preallocated slot of a bounded ring buffer.
+ * A background thread encodes the frames, as a keyframe every so often and as quantised deltas in
+ * between, and writes them out. When the writer falls behind and the ring is full, the overflow
+ * policy decides what happens to the new frame; getFramesDropped() and getStallNanos() report it.
+ * Attach with GameEngine.setRecorder, and detach before calling close().
+ */
+public class TrajectoryRecorder implements Closeable {
+
+    public enum OverflowPolicy {
+        DROP,   // Never wait: skip the frame and count it as dropped
+        BLOCK   // Wait for the writer, so every frame is kept; for headless runs that need full data
+    }
+
+    // Positions are stored to 1/256 px
+    public static final double DEFAULT_QUANTUM = 1.0 / 256;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 60;
+    public static final int DEFAULT_BUFFER_FRAMES = 32;
+
+    private final FileChannel channel;
+    private final int tickInterval;
+    private final int keyframeInterval;
+    private final double quantum;
+    private final double timestep;
+    private final OverflowPolicy policy;
+    private final Thread writerThread;
+
+    // Ring buffer. Only the simulation thread writes slots before head, only the writer reads them.
+    private final Frame[] slots;
+    private final AtomicLong head = new AtomicLong(); // Frames published by the simulation thread
+    private final AtomicLong tail = new AtomicLong(); // Frames taken by the writer
+    private volatile boolean closed;
+    private volatile IOException writeError;
+
+    // Metrics. Each is only changed by one thread.
+    private volatile long framesWritten;
+    private volatile long framesDropped;
+    private volatile long stallNanos;
+    private volatile long bytesWritten;
+
+    // Encoder state, owned by the writer thread
+    private ByteBuffer frameBuffer = ByteBuffer.allocate(1 << 16).order(TrajectoryFormat.ORDER);
+    private double[] positionX = new double[0]; // Positions as a reader will reconstruct them
+    private double[] positionY = new double[0];
+    private int lastCount = -1;
+    private long lastStructureVersion = -1;
+    private int framesSinceKeyframe;
+    private long filePosition;
+    private long[] keyframeIndex = new long[32]; // Pairs of tick and file offset
+    private int keyframeCount;
+
+    public TrajectoryRecorder(Path path, double timestep) throws IOException {
+        this(path, timestep, 1, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_BUFFER_FRAMES, OverflowPolicy.DROP);
+    }
+
+    /**
+     * @param path File to write, replaced if it exists
+     * @param timestep Seconds per tick of the recorded engine, so a player can replay it at the right speed
+     * @param tickInterval Record every this many ticks
+     * @param keyframeInterval Write a full keyframe every this many recorded frames
+     * @param bufferFrames Frames the ring buffer holds before the overflow policy applies
+     * @param policy What to do with a frame when the ring buffer is full
+     */
+    public TrajectoryRecorder(Path path, double timestep, int tickInterval, int keyframeInterval, int bufferFrames,
+                              OverflowPolicy policy) throws IOException {
+        if (!(timestep > 0) || Double.isInfinite(timestep)) {
+            throw new IllegalArgumentException("Timestep must be positive: " + timestep);
+        }
+        if (tickInterval < 1 || keyframeInterval < 1 || bufferFrames < 1) {
+            throw new IllegalArgumentException("Intervals and buffer size must be at least 1");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Overflow policy cannot be null");
+        }
+        this.tickInterval = tickInterval;
+        this.keyframeInterval = keyframeInterval;
+        this.quantum = DEFAULT_QUANTUM;
+        this.timestep = timestep;
+        this.policy = policy;
+        this.slots = new Frame[bufferFrames];
+        for (int i = 0; i < bufferFrames; i++) {
+            slots[i] = new Frame();
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_BYTES).order(TrajectoryFormat.ORDER);
+        header.putInt(TrajectoryFormat.MAGIC).putInt(TrajectoryFormat.VERSION).putDouble(quantum)
+                .putInt(tickInterval).putInt(0).putDouble(timestep);
+        header.flip();
+        write(header);
+
+        writerThread = new Thread(this::runWriter, "Trajectory writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Records the bodies of a world if the tick is due. Called on the simulation thread after each step.
+     * @param structureVersion Changes whenever bodies are added or removed, which forces a keyframe
+     */
+    public void capture(PhysicsWorld world, long tick, long structureVersion) {
+        if (closed || tick % tickInterval != 0) {
+            return;
+        }
+        long published = head.get();
+        if (published - tail.get() >= slots.length) {
+            if (policy == OverflowPolicy.DROP || writeError != null) {
+                framesDropped++;
+                return;
+            }
+            long start = System.nanoTime();
+            while (published - tail.get() >= slots.length && writerThread.isAlive()) {
+                LockSupport.parkNanos(50_000);
+            }
+            stallNanos += System.nanoTime() - start;
+            if (!writerThread.isAlive()) {
+                framesDropped++;
+                return;
+            }
+        }
+        slots[(int) (published % slots.length)].capture(world, tick, structureVersion);
+        head.lazySet(published + 1);
+        LockSupport.unpark(writerThread);
+    }
+
+    // Frames written to the file so far.
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    // Frames skipped because the ring buffer was full (DROP) or the writer had failed.
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    // Time the simulation thread spent waiting for the writer (BLOCK).
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the remaining frames and the keyframe index, then closes the file.
+     * @throws IOException If writing failed at any point
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        boolean interrupted = false;
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            if (writeError == null) {
+                writeFooter();
+            }
+        } catch (IOException e) {
+            writeError = e;
+        } finally {
+            channel.close();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void runWriter() {
+        try {
+            long taken = 0;
+            while (true) {
+                if (taken == head.get()) {
+                    if (closed && taken == head.get()) {
+                        return;
+                    }
+                    LockSupport.parkNanos(1_000_000);
+                    continue;
+                }
+                encode(slots[(int) (taken % slots.length)]);
+                taken++;
+                tail.lazySet(taken);
+            }
+        } catch (IOException e) {
+            writeError = e;
+        }
+    }
+
+    private void encode(Frame frame) throws IOException {
+        int count = frame.count;
+        boolean keyframe = framesSinceKeyframe >= keyframeInterval || count != lastCount
+                || frame.structureVersion != lastStructureVersion;
+        int maxBytes = TrajectoryFormat.FRAME_HEADER_BYTES
+                + count * (keyframe ? TrajectoryFormat.KEYFRAME_BODY_BYTES : 20);
+        if (frameBuffer.capacity() < maxBytes) {
+            frameBuffer = ByteBuffer.allocate(Math.max(maxBytes, frameBuffer.capacity() * 2))
+                    .order(TrajectoryFormat.ORDER);
+        }
+        if (positionX.length < count) {
+            positionX = new double[Math.max(count, positionX.length * 2)];
+            positionY = new double[positionX.length];
+        }
+
+        ByteBuffer buffer = frameBuffer;
+        buffer.clear();
+        buffer.put(keyframe ? TrajectoryFormat.KEYFRAME : TrajectoryFormat.DELTA);
+        buffer.putLong(frame.tick);
+        buffer.putInt(count);
+        buffer.putInt(0); // Payload size, filled in below
+        if (keyframe) {
+            for (int i = 0; i < count; i++) {
+                buffer.put((byte) frame.type[i]);
+                buffer.putInt(frame.rgb[i]);
+                buffer.putDouble(frame.width[i]);
+                buffer.putDouble(frame.height[i]);
+                buffer.putDouble(frame.minX[i]);
+                buffer.putDouble(frame.minY[i]);
+                positionX[i] = frame.minX[i];
+                positionY[i] = frame.minY[i];
+            }
+            addKeyframe(frame.tick, filePosition);
+            framesSinceKeyframe = 0;
+            lastCount = count;
+            lastStructureVersion = frame.structureVersion;
+        } else {
+            for (int i = 0; i < count; i++) {
+                long stepsX = Math.round((frame.minX[i] - positionX[i]) / quantum);
+                long stepsY = Math.round((frame.minY[i] - positionY[i]) / quantum);
+                TrajectoryFormat.putVarLong(buffer, stepsX);
+                TrajectoryFormat.putVarLong(buffer, stepsY);
+                // Same arithmetic as the reader
+                positionX[i] += stepsX * quantum;
+                positionY[i] += stepsY * quantum;
+            }
+        }
+        framesSinceKeyframe++;
+        buffer.putInt(13, buffer.position() - TrajectoryFormat.FRAME_HEADER_BYTES);
+        buffer.flip();
+        write(buffer);
+        framesWritten++;
+    }
+
+    private void addKeyframe(long tick, long offset) {
+        if (keyframeCount * 2 == keyframeIndex.length) {
+            keyframeIndex = Arrays.copyOf(keyframeIndex, keyframeIndex.length * 2);
+        }
+        keyframeIndex[keyframeCount * 2] = tick;
+        keyframeIndex[keyframeCount * 2 + 1] = offset;
+        keyframeCount++;
+    }
+
+    private void writeFooter() throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(keyframeCount * TrajectoryFormat.INDEX_ENTRY_BYTES
+                + TrajectoryFormat.FOOTER_BYTES).order(TrajectoryFormat.ORDER);
+        long indexOffset = filePosition;
+        for (int k = 0; k < keyframeCount * 2; k++) {
+            footer.putLong(keyframeIndex[k]);
+        }
+        footer.putLong(indexOffset).putInt(TrajectoryFormat.FOOTER_MAGIC);
+        footer.flip();
+        write(footer);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            filePosition += channel.write(buffer, filePosition);
+        }
+        bytesWritten += bytes;
+    }
+
+    // One slot of the ring buffer. Type, colour and size are only copied again after bodies change.
+    private static class Frame {
+        long tick;
+        int count;
+        long structureVersion;
+        private long copiedStructureVersion = -1;
+        double[] minX = new double[0];
+        double[] minY = new double[0];
+        double[] width = new double[0];
+        double[] height = new double[0];
+        int[] type = new int[0];
+        int[] rgb = new int[0];
+
+        void capture(PhysicsWorld world, long frameTick, long version) {
+            int bodies = world.size();
+            if (minX.length < bodies) {
+                int capacity = Math.max(bodies, minX.length * 2);
+                minX = new double[capacity];
+                minY = new double[capacity];
+                width = new double[capacity];
+                height = new double[capacity];
+                type = new int[capacity];
+                rgb = new int[capacity];
+                copiedStructureVersion = -1;
+            }
+            if (copiedStructureVersion != version || count != bodies) {
+                for (int i = 0; i < bodies; i++) {
+                    width[i] = world.getWidth(i);
+                    height[i] = world.getHeight(i);
+                    type[i] = world.getType(i);
+                    rgb[i] = world.getRgb(i);
+                }
+                copiedStructureVersion = version;
+            }
+            for (int i = 0; i < bodies; i++) {
+                minX[i] = world.getMinX(i);
+                minY[i] = world.getMinY(i);
+            }
+            tick = frameTick;
+            count = bodies;
+            structureVersion = version;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package control;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free hand-over of the latest value from one writer thread to one reader thread.
+ * The writer fills its back buffer and swaps it with the middle one; the reader swaps its front
+ * buffer with the middle one when something new was published. Neither side ever waits, and
+ * the buffer the reader holds is never written to.
+ */
+public class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; // Set when the middle buffer holds data the reader has not seen
+
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 2;   // Only touched by the writer
+    private int front = 0;  // Only touched by the reader
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = factory.get();
+        }
+    }
+
+    // Writer side: the buffer to fill before calling publish().
+    @SuppressWarnings("unchecked")
+    public T getBackBuffer() {
+        return (T) buffers[back];
+    }
+
+    // Writer side: makes the back buffer the latest value.
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // Reader side: the latest published value, which stays unchanged until the next call.
+    @SuppressWarnings("unchecked")
+    public T getLatest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return (T) buffers[front];
+    }
+}
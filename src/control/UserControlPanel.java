@@ -1,6 +1,7 @@
 package control;
 
 import constants.Constants;
+import shapes.RenderMode;
 import shapes.Shape;
 import shapes.Circle;
 import shapes.GameRectangle;
@@ -15,11 +16,18 @@ public class UserControlPanel extends JPanel {
     private final GameEngine gameEngine;
     private final Random random = new Random();
     
+    private static final int MAX_SPAWN_COUNT = 2_000_000;
+    private static final double SPAWN_COVERAGE = 0.3; // Share of the area the spawned shapes fill at most
+    
     private JComboBox<String> shapeTypeCombo;
     private JSpinner massSpinner;
     private JSpinner velocityXSpinner;
     private JSpinner velocityYSpinner;
     private JSpinner sizeSpinner;
+    private JComboBox<String> renderModeCombo;
+    private JSpinner spawnCountSpinner;
+    private JCheckBox noOverlapCheckBox;
+    private JButton spawnButton;
     
     public UserControlPanel(GameEngine gameEngine) {
         this.gameEngine = gameEngine;
@@ -43,6 +51,20 @@ public class UserControlPanel extends JPanel {
         velocityXSpinner.setToolTipText(String.format("Range: %.0f to %.0f", Constants.MIN_VELOCITY, Constants.MAX_VELOCITY));
         velocityYSpinner.setToolTipText(String.format("Range: %.0f to %.0f", Constants.MIN_VELOCITY, Constants.MAX_VELOCITY));
         sizeSpinner.setToolTipText(String.format("Range: %.0f to %.0f", Constants.MIN_SIZE, Constants.MAX_SIZE));
+        
+        // Bulk spawning
+        spawnCountSpinner = new JSpinner(new SpinnerNumberModel(1000, 1, MAX_SPAWN_COUNT, 1000));
+        spawnCountSpinner.setToolTipText(String.format("Range: 1 to %d", MAX_SPAWN_COUNT));
+        noOverlapCheckBox = new JCheckBox("No overlap", true);
+        noOverlapCheckBox.setToolTipText("Only place shapes where they touch nothing");
+        
+        // Rendering mode, in the order of RenderMode
+        renderModeCombo = new JComboBox<>(new String[] {"Auto", "Shapes", "Heatmap"});
+        renderModeCombo.setSelectedIndex(gameEngine.getRenderMode().ordinal());
+        renderModeCombo.setToolTipText(String.format("Auto shows a heatmap above %d shapes", 
+            Constants.HEATMAP_BODY_THRESHOLD));
+        renderModeCombo.addActionListener(e -> 
+            gameEngine.setRenderMode(RenderMode.values()[renderModeCombo.getSelectedIndex()]));
     }
     
     private JSpinner createSpinner(double value, double min, double max, double step) {
@@ -147,6 +169,32 @@ public class UserControlPanel extends JPanel {
         
         gbc.gridy = row++;
         add(clearButton, gbc);
+        
+        // Bulk spawning
+        spawnButton = new JButton("Spawn N");
+        spawnButton.setFocusPainted(false);
+        spawnButton.addActionListener(e -> spawnShapes());
+        
+        gbc.insets = new Insets(5, 5, 5, 5);
+        addLabelComponentAndRange("N:", spawnCountSpinner, "", gbc, row++);
+        gbc.gridx = 0;
+        gbc.gridy = row++;
+        gbc.gridwidth = 1;
+        add(noOverlapCheckBox, gbc);
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        add(spawnButton, gbc);
+        gbc.gridwidth = 3;
+        gbc.gridx = 0;
+        
+        // Display settings
+        JSeparator displaySeparator = new JSeparator();
+        gbc.gridy = row++;
+        gbc.insets = new Insets(15, 0, 15, 0);
+        add(displaySeparator, gbc);
+        
+        gbc.insets = new Insets(5, 5, 5, 5);
+        addLabelComponentAndRange("Rendering:", renderModeCombo, "", gbc, row++);
     }
     
     private void addLabelComponentAndRange(String labelText, JComponent component, String rangeText,
@@ -183,9 +231,12 @@ public class UserControlPanel extends JPanel {
             double velocityY = (Double) velocityYSpinner.getValue();
             double size = (Double) sizeSpinner.getValue();
             
-            // Random position within the spawn area
-            double x = random.nextDouble() * Constants.SPAWN_WIDTH + Constants.SPAWN_PADDING;
-            double y = random.nextDouble() * Constants.SPAWN_HEIGHT + Constants.SPAWN_PADDING;
+            // Random position within the world, away from the walls
+            WorldConfig config = gameEngine.getWorldConfig();
+            double x = random.nextDouble() * Math.max(config.getWidth() - 2 * Constants.SPAWN_PADDING, 0)
+                    + Constants.SPAWN_PADDING;
+            double y = random.nextDouble() * Math.max(config.getHeight() - 2 * Constants.SPAWN_PADDING, 0)
+                    + Constants.SPAWN_PADDING;
             
             // Random colour
             Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
@@ -207,6 +258,49 @@ public class UserControlPanel extends JPanel {
         }
     }
     
+    /**
+     * Spawns N random shapes in one go, sized so that they fit into the world.
+     * Large batches take a while, so they are generated off the Event Dispatch Thread.
+     */
+    private void spawnShapes() {
+        int count = (Integer) spawnCountSpinner.getValue();
+        WorldConfig config = gameEngine.getWorldConfig();
+        SpawnSpec spec = new SpawnSpec(count);
+        spec.setArea(0, 0, config.getWidth(), config.getHeight());
+        double maxSize = Math.min(Constants.MAX_SIZE, SpawnSpec.fittingSize(count, 
+            config.getWidth(), config.getHeight(), SPAWN_COVERAGE));
+        spec.setSizeRange(Math.min(Constants.MIN_SIZE, maxSize / 2), maxSize);
+        spec.setNonOverlapping(noOverlapCheckBox.isSelected());
+        spec.setSeed(random.nextLong());
+        
+        spawnButton.setEnabled(false);
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return gameEngine.spawnShapes(spec);
+            }
+            
+            @Override
+            protected void done() {
+                spawnButton.setEnabled(true);
+                try {
+                    int created = get();
+                    if (created < count) {
+                        JOptionPane.showMessageDialog(UserControlPanel.this, 
+                            String.format("Only %d of %d shapes found a free spot.", created, count), 
+                            "Spawn", 
+                            JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(UserControlPanel.this, 
+                        "Error spawning shapes: " + ex.getMessage(), 
+                        "Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
     // This method helps to add a random shape into the simulator.
     private void addRandomShape() {
         // Randomise all values
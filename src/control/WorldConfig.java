@@ -0,0 +1,71 @@
+package control;
+
+import constants.Constants;
+
+/**
+ * Size and physics settings of a world that can be chosen at run time, see GameEngine.setWorldConfig.
+ * Defaults to the values in Constants.
+ */
+public class WorldConfig {
+
+    private int width = Constants.SIMULATION_WIDTH;
+    private int height = Constants.SIMULATION_HEIGHT;
+    private double timestep = Constants.FIXED_TIMESTEP;
+    private double restitution = Constants.RESTITUTION;
+
+    public WorldConfig() {
+    }
+
+    public WorldConfig(WorldConfig other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.timestep = other.timestep;
+        this.restitution = other.restitution;
+    }
+
+    // The walls: bodies are kept between 0 and width, and 0 and height.
+    public void setBounds(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Bounds must be at least 1x1: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // Length of one fixed tick of the running simulation, in seconds.
+    public void setTimestep(double timestep) {
+        if (!(timestep > 0) || Double.isInfinite(timestep)) {
+            throw new IllegalArgumentException("Timestep must be positive: " + timestep);
+        }
+        this.timestep = timestep;
+    }
+
+    public double getTimestep() {
+        return timestep;
+    }
+
+    // Restitution of collisions between bodies, from 0 (inelastic) to 1 (elastic), see PhysicsWorld.
+    public void setRestitution(double restitution) {
+        if (!(restitution >= 0 && restitution <= 1)) {
+            throw new IllegalArgumentException("Restitution must be between 0 and 1: " + restitution);
+        }
+        this.restitution = restitution;
+    }
+
+    public double getRestitution() {
+        return restitution;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%d, timestep %.6g s, restitution %.3g", width, height, timestep, restitution);
+    }
+}
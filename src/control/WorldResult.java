@@ -0,0 +1,81 @@
+package control;
+
+/**
+ * What one world of a batch run ended with, see BatchRunner.
+ * Energies are the total kinetic energy of the world's bodies before the first tick and after the last.
+ */
+public class WorldResult {
+
+    private final int world;
+    private final long seed;
+    private final int shapeCount;
+    private final long ticks;
+    private final long nanos;
+    private final long pairTests;
+    private final double initialEnergy;
+    private final double finalEnergy;
+    private final int asleep;
+
+    WorldResult(int world, long seed, int shapeCount, long ticks, long nanos, long pairTests,
+                double initialEnergy, double finalEnergy, int asleep) {
+        this.world = world;
+        this.seed = seed;
+        this.shapeCount = shapeCount;
+        this.ticks = ticks;
+        this.nanos = nanos;
+        this.pairTests = pairTests;
+        this.initialEnergy = initialEnergy;
+        this.finalEnergy = finalEnergy;
+        this.asleep = asleep;
+    }
+
+    // Position of the world's spec in the list handed to the runner.
+    public int getWorld() {
+        return world;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    // Time spent stepping this world, not counting the spawn.
+    public double getSeconds() {
+        return nanos / 1e9;
+    }
+
+    public long getPairTests() {
+        return pairTests;
+    }
+
+    public double getInitialEnergy() {
+        return initialEnergy;
+    }
+
+    public double getFinalEnergy() {
+        return finalEnergy;
+    }
+
+    // Final over initial energy, 1 for a world that started at rest.
+    public double getEnergyRatio() {
+        return initialEnergy > 0 ? finalEnergy / initialEnergy : 1;
+    }
+
+    // Bodies asleep after the last tick.
+    public int getAsleep() {
+        return asleep;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("World %d (seed %d): %d shapes, %d ticks in %.3f s, %d pair tests, energy %.4g -> %.4g, %d asleep",
+                world, seed, shapeCount, ticks, getSeconds(), pairTests, initialEnergy, finalEnergy, asleep);
+    }
+}
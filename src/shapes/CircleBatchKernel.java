@@ -0,0 +1,82 @@
+package shapes;
+
+/**
+ * Exact overlap test for many circle pairs at once, for a narrow phase that has all its candidate
+ * pairs before it resolves any of them. Reads the world arrays directly instead of going through
+ * CollisionRegistry for every pair, and compares the squared distance between the centres with the
+ * squared sum of the radii, so no square root is taken. The answers are those of
+ * CircleCircleCollision.collided.
+ * best() is a kernel on the Vector API when the JVM has it (JDK 17+ started with
+ * --add-modules jdk.incubator.vector), and the plain loop otherwise.
+ */
+public abstract class CircleBatchKernel {
+
+    // Built from src-vector; missing from the plain javac build and from jars made before JDK 17
+    private static final String VECTOR_KERNEL = "shapes.VectorCircleKernel";
+
+    private static final CircleBatchKernel SCALAR = new CircleBatchKernel() {
+        @Override
+        public void test(PhysicsWorld world, int[] first, int[] second, int from, int to, boolean[] touching) {
+            testScalar(world, first, second, from, to, touching);
+        }
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+    };
+
+    private static final CircleBatchKernel VECTOR = loadVector();
+    private static final CircleBatchKernel BEST =
+            VECTOR == null || Boolean.getBoolean("simulator.noVector") ? SCALAR : VECTOR;
+
+    /**
+     * Tests the pairs from index 'from' up to 'to' of the pair arrays.
+     * @param world World holding both circles of every pair
+     * @param first World index of the first circle of each pair
+     * @param second World index of the second circle of each pair
+     * @param touching Set to whether each pair overlaps, at the same index as the pair
+     */
+    public abstract void test(PhysicsWorld world, int[] first, int[] second, int from, int to, boolean[] touching);
+
+    // Short name for statistics and benchmark output.
+    public abstract String getName();
+
+    // The fastest kernel this JVM can run. Start with -Dsimulator.noVector=true to always get the plain loop.
+    public static CircleBatchKernel best() {
+        return BEST;
+    }
+
+    public static CircleBatchKernel scalar() {
+        return SCALAR;
+    }
+
+    // The Vector API kernel, or null when this JVM cannot run it.
+    public static CircleBatchKernel vector() {
+        return VECTOR;
+    }
+
+    private static CircleBatchKernel loadVector() {
+        try {
+            return (CircleBatchKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not compiled in, class file too new for this JVM, or the incubator module was not added
+            return null;
+        }
+    }
+
+    // The plain loop, also used by the vector kernel for the pairs left over after the last full vector.
+    static void testScalar(PhysicsWorld world, int[] first, int[] second, int from, int to, boolean[] touching) {
+        double[] x = world.x;
+        double[] y = world.y;
+        double[] diameter = world.extentX;
+        for (int k = from; k < to; k++) {
+            int i = first[k];
+            int j = second[k];
+            double dx = x[i] - x[j];
+            double dy = y[i] - y[j];
+            double radii = (diameter[i] + diameter[j]) * 0.5;
+            touching[k] = dx * dx + dy * dy < radii * radii;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package shapes;
+
+import constants.Constants;
+
+// Circle-circle kernel: distance-based detection and an impulse along the line between the centres.
+// The swept test solves for the time the distance between the moving centres reaches the sum of the radii.
+final class CircleCircleCollision implements CollisionAlgorithm {
+
+    @Override
+    public boolean collided(Shape first, Shape second) {
+        Circle circle = (Circle) first;
+        Circle otherCircle = (Circle) second;
+        double dx = circle.getX() - otherCircle.getX();
+        double dy = circle.getY() - otherCircle.getY();
+        // Comparing squared lengths saves the square root; CircleBatchKernel makes the same comparison
+        double radii = circle.getRadius() + otherCircle.getRadius();
+        return dx * dx + dy * dy < radii * radii;
+    }
+
+    @Override
+    public boolean resolve(Shape first, Shape second) {
+        Circle circle = (Circle) first;
+        Circle otherCircle = (Circle) second;
+        PhysicsWorld w = circle.world;
+        int i = circle.index;
+        PhysicsWorld ow = otherCircle.world;
+        int j = otherCircle.index;
+
+        // Calculate collision normal
+        double dx = ow.x[j] - w.x[i];
+        double dy = ow.y[j] - w.y[i];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+
+        if (distance == 0) {
+            return false; // Avoid division by zero
+        }
+
+        dx /= distance;
+        dy /= distance;
+
+        // Relative velocity
+        double dvx = ow.vx[j] - w.vx[i];
+        double dvy = ow.vy[j] - w.vy[i];
+
+        // Relative velocity in collision normal direction
+        double dvn = dvx * dx + dvy * dy;
+
+        // Do not resolve if velocities are separating
+        if (dvn > 0)
+            return false;
+
+        // Collision impulse
+        double mass1 = w.mass[i];
+        double mass2 = ow.mass[j];
+        double impulse = ((1 + w.restitution) * dvn) / (mass1 + mass2);
+
+        // Update velocities
+        w.vx[i] += impulse * mass2 * dx;
+        w.vy[i] += impulse * mass2 * dy;
+        ow.vx[j] -= impulse * mass1 * dx;
+        ow.vy[j] -= impulse * mass1 * dy;
+
+        // Separate overlapping circles
+        double overlap = (circle.getRadius() + otherCircle.getRadius()) - distance;
+        if (overlap > 0) {
+            double totalMass = mass1 + mass2;
+            double moveRatio1 = mass2 / totalMass;
+            double moveRatio2 = mass1 / totalMass;
+
+            w.x[i] -= dx * overlap * moveRatio1;
+            w.y[i] -= dy * overlap * moveRatio1;
+            ow.x[j] += dx * overlap * moveRatio2;
+            ow.y[j] += dy * overlap * moveRatio2;
+        }
+        return true;
+    }
+
+    @Override
+    public double timeOfImpact(Shape first, Shape second, double horizon) {
+        Circle circle = (Circle) first;
+        Circle otherCircle = (Circle) second;
+        double radii = circle.getRadius() + otherCircle.getRadius();
+        double reach = Math.max(radii - Constants.CONTACT_SLOP, radii * 0.5);
+        return timeToReach(otherCircle.getX() - circle.getX(), otherCircle.getY() - circle.getY(),
+                otherCircle.getVelocityX() - circle.getVelocityX(),
+                otherCircle.getVelocityY() - circle.getVelocityY(), reach, horizon);
+    }
+
+    /**
+     * Time until a point at (dx, dy), moving with velocity (vx, vy), comes within reach of the origin.
+     * Also used for the rounded corners in the circle-rectangle test.
+     */
+    static double timeToReach(double dx, double dy, double vx, double vy, double reach, double horizon) {
+        double c = dx * dx + dy * dy - reach * reach;
+        if (c <= 0) {
+            return 0;
+        }
+        double b = dx * vx + dy * vy;
+        if (b >= 0) {
+            return Double.POSITIVE_INFINITY; // Moving apart
+        }
+        double a = vx * vx + vy * vy;
+        double discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return Double.POSITIVE_INFINITY; // Passes by
+        }
+        // Smaller root of a*t^2 + 2*b*t + c, in the form that does not cancel
+        double t = c / (-b + Math.sqrt(discriminant));
+        return t <= horizon ? t : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,168 @@
+package shapes;
+
+import constants.Constants;
+
+// Circle-rectangle kernel: closest-point detection, and an impulse along the normal from that point.
+// The swept test casts the circle's centre against the rectangle grown by the radius, with rounded corners.
+final class CircleRectangleCollision implements CollisionAlgorithm {
+
+    @Override
+    public boolean collided(Shape first, Shape second) {
+        Circle circle = (Circle) first;
+        GameRectangle rect = (GameRectangle) second;
+        PhysicsWorld w = rect.world;
+        int i = rect.index;
+
+        // Find the closest point on the rectangle to the circle
+        double closestX = Math.max(w.x[i], Math.min(circle.getX(), w.x[i] + w.extentX[i]));
+        double closestY = Math.max(w.y[i], Math.min(circle.getY(), w.y[i] + w.extentY[i]));
+
+        // Calculate the distance from the circle's center to this closest point
+        double distanceX = circle.getX() - closestX;
+        double distanceY = circle.getY() - closestY;
+
+        // If the distance is less than the circle's radius, there's a collision
+        double distanceSquared = (distanceX * distanceX) + (distanceY * distanceY);
+        return distanceSquared < (circle.getRadius() * circle.getRadius());
+    }
+
+    @Override
+    public boolean resolve(Shape first, Shape second) {
+        Circle circle = (Circle) first;
+        GameRectangle rect = (GameRectangle) second;
+        PhysicsWorld w = circle.world;
+        int i = circle.index;
+        double radius = circle.getRadius();
+
+        // Find the closest point on the rectangle to the circle's center
+        double closestX = Math.max(rect.getX(), Math.min(w.x[i], rect.getX() + rect.getWidth()));
+        double closestY = Math.max(rect.getY(), Math.min(w.y[i], rect.getY() + rect.getHeight()));
+
+        // Calculate the distance from the circle's center to this closest point
+        double dx = w.x[i] - closestX;
+        double dy = w.y[i] - closestY;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+
+        // Check if we're actually colliding
+        if (distance >= radius) {
+            return false;
+        }
+
+        // If distance is 0, the circle center is inside the rectangle
+        if (distance < 0.0001) {
+            // Push the circle out to the nearest edge
+            double distLeft = w.x[i] - rect.getX();
+            double distRight = (rect.getX() + rect.getWidth()) - w.x[i];
+            double distTop = w.y[i] - rect.getY();
+            double distBottom = (rect.getY() + rect.getHeight()) - w.y[i];
+
+            double minDist = Math.min(Math.min(distLeft, distRight), Math.min(distTop, distBottom));
+
+            if (minDist == distLeft) {
+                w.x[i] = rect.getX() - radius;
+                w.vx[i] = -Math.abs(w.vx[i]);
+                dx = -1;
+                dy = 0;
+            } else if (minDist == distRight) {
+                w.x[i] = rect.getX() + rect.getWidth() + radius;
+                w.vx[i] = Math.abs(w.vx[i]);
+                dx = 1;
+                dy = 0;
+            } else if (minDist == distTop) {
+                w.y[i] = rect.getY() - radius;
+                w.vy[i] = -Math.abs(w.vy[i]);
+                dx = 0;
+                dy = -1;
+            } else {
+                w.y[i] = rect.getY() + rect.getHeight() + radius;
+                w.vy[i] = Math.abs(w.vy[i]);
+                dx = 0;
+                dy = 1;
+            }
+        } else {
+            // Normalise the direction
+            dx /= distance;
+            dy /= distance;
+        }
+
+        // Relative velocity
+        double rvx = w.vx[i] - rect.getVelocityX();
+        double rvy = w.vy[i] - rect.getVelocityY();
+
+        // Relative velocity in collision normal direction
+        double speed = rvx * dx + rvy * dy;
+
+        // Do not resolve if velocities are separating
+        if (speed > 0)
+            return false;
+
+        // Collision impulse
+        double mass = w.mass[i];
+        double impulse = (1 + w.restitution) * speed / (mass + rect.getMass());
+
+        // Update velocities
+        w.vx[i] -= impulse * rect.getMass() * dx;
+        w.vy[i] -= impulse * rect.getMass() * dy;
+        // Straight into the arrays: setVelocity would wake the rectangle's island, which is not safe
+        // while other threads resolve contacts. Callers wake it through onContact.
+        rect.world.vx[rect.index] += impulse * mass * dx;
+        rect.world.vy[rect.index] += impulse * mass * dy;
+
+        // Separate if overlapping
+        if (distance > 0.0001) {
+            double overlap = radius - distance;
+            if (overlap > 0) {
+                // Move the circle away from the rectangle
+                w.x[i] += dx * overlap;
+                w.y[i] += dy * overlap;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public double timeOfImpact(Shape first, Shape second, double horizon) {
+        Circle circle = (Circle) first;
+        GameRectangle rect = (GameRectangle) second;
+        double radius = circle.getRadius();
+        double reach = Math.max(radius - Constants.CONTACT_SLOP, radius * 0.5);
+        double px = circle.getX();
+        double py = circle.getY();
+        double left = rect.getX();
+        double top = rect.getY();
+        double right = left + rect.getWidth();
+        double bottom = top + rect.getHeight();
+
+        // Already touching
+        double closestX = Math.max(left, Math.min(px, right));
+        double closestY = Math.max(top, Math.min(py, bottom));
+        double distanceX = px - closestX;
+        double distanceY = py - closestY;
+        if (distanceX * distanceX + distanceY * distanceY < reach * reach) {
+            return 0;
+        }
+
+        // Motion of the circle relative to the rectangle, cast against the rectangle grown by the reach
+        double vx = circle.getVelocityX() - rect.getVelocityX();
+        double vy = circle.getVelocityY() - rect.getVelocityY();
+        double entry = Math.max(
+                RectangleRectangleCollision.entryTime(left - reach - px, right + reach - px, vx),
+                RectangleRectangleCollision.entryTime(top - reach - py, bottom + reach - py, vy));
+        double exit = Math.min(
+                RectangleRectangleCollision.exitTime(left - reach - px, right + reach - px, vx),
+                RectangleRectangleCollision.exitTime(top - reach - py, bottom + reach - py, vy));
+        if (entry >= exit || exit <= 0 || entry > horizon) {
+            return Double.POSITIVE_INFINITY;
+        }
+        entry = Math.max(entry, 0);
+        double hitX = px + vx * entry;
+        double hitY = py + vy * entry;
+        if ((hitX >= left && hitX <= right) || (hitY >= top && hitY <= bottom)) {
+            return entry; // Hits a side
+        }
+        // In a corner region of the grown box: the corner is rounded, so test against a circle there
+        double cornerX = hitX < left ? left : right;
+        double cornerY = hitY < top ? top : bottom;
+        return CircleCircleCollision.timeToReach(px - cornerX, py - cornerY, vx, vy, reach, horizon);
+    }
+}
@@ -0,0 +1,26 @@
+package shapes;
+
+/**
+ * Narrow-phase kernel for one ordered pair of shape types, registered in the CollisionRegistry.
+ * The first argument always has the first type the kernel was registered for.
+ */
+public interface CollisionAlgorithm {
+
+    boolean collided(Shape first, Shape second);
+
+    /**
+     * Applies the collision response to two touching shapes. Only changes the two shapes, and does not
+     * wake sleeping ones, so contacts that share no shape can be resolved at the same time. The caller
+     * reports the contact through Shape.onContact afterwards, on one thread, which wakes the islands.
+     * @return true if an impulse was applied, false if the shapes were already moving apart
+     */
+    boolean resolve(Shape first, Shape second);
+
+    /**
+     * Swept test for continuous collision detection. Both shapes are moved along their velocities.
+     * @param horizon How far ahead to look, in seconds
+     * @return Seconds until the shapes overlap by Constants.CONTACT_SLOP, 0 if they already touch,
+     *         or Double.POSITIVE_INFINITY if they do not meet within the horizon
+     */
+    double timeOfImpact(Shape first, Shape second, double horizon);
+}
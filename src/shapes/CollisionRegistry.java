@@ -0,0 +1,115 @@
+package shapes;
+
+import java.util.Arrays;
+
+/**
+ * Table of collision kernels indexed by the type ids of the two shapes.
+ * The narrow phase finds the kernel for a pair with one array lookup instead of a chain of
+ * instanceof checks. A new shape type only needs a type id from newTypeId() and one register()
+ * call per shape type it can collide with.
+ * Register new types before starting any simulation; lookups are not synchronised.
+ */
+public final class CollisionRegistry {
+
+    // Used for pairs of types nobody registered: they never collide
+    private static final CollisionAlgorithm NO_COLLISION = new CollisionAlgorithm() {
+        @Override
+        public boolean collided(Shape first, Shape second) {
+            return false;
+        }
+
+        @Override
+        public boolean resolve(Shape first, Shape second) {
+            return false;
+        }
+
+        @Override
+        public double timeOfImpact(Shape first, Shape second, double horizon) {
+            return Double.POSITIVE_INFINITY;
+        }
+    };
+
+    private static CollisionAlgorithm[] table = new CollisionAlgorithm[0];
+    private static int stride;
+    private static int nextTypeId = PhysicsWorld.TYPE_RECTANGLE + 1;
+
+    static {
+        register(PhysicsWorld.TYPE_CIRCLE, PhysicsWorld.TYPE_CIRCLE, new CircleCircleCollision());
+        register(PhysicsWorld.TYPE_CIRCLE, PhysicsWorld.TYPE_RECTANGLE, new CircleRectangleCollision());
+        register(PhysicsWorld.TYPE_RECTANGLE, PhysicsWorld.TYPE_RECTANGLE, new RectangleRectangleCollision());
+    }
+
+    private CollisionRegistry() {
+    }
+
+    // Hands out a type id for a new kind of shape.
+    public static synchronized int newTypeId() {
+        return nextTypeId++;
+    }
+
+    /**
+     * Registers the kernel for shapes of firstType colliding with shapes of secondType.
+     * The reverse order is registered too, with the arguments swapped.
+     */
+    public static synchronized void register(int firstType, int secondType, CollisionAlgorithm algorithm) {
+        ensureStride(Math.max(firstType, secondType) + 1);
+        table[firstType * stride + secondType] = algorithm;
+        if (firstType != secondType) {
+            table[secondType * stride + firstType] = new SwappedAlgorithm(algorithm);
+        }
+    }
+
+    // Finds the kernel for a pair of type ids.
+    public static CollisionAlgorithm lookup(int firstType, int secondType) {
+        if (firstType >= stride || secondType >= stride) {
+            return NO_COLLISION;
+        }
+        return table[firstType * stride + secondType];
+    }
+
+    public static boolean collided(Shape first, Shape second) {
+        return lookup(first.getTypeId(), second.getTypeId()).collided(first, second);
+    }
+
+    public static void resolve(Shape first, Shape second) {
+        lookup(first.getTypeId(), second.getTypeId()).resolve(first, second);
+    }
+
+    private static void ensureStride(int typeCount) {
+        if (typeCount <= stride) {
+            return;
+        }
+        int newStride = Math.max(typeCount, stride * 2);
+        CollisionAlgorithm[] newTable = new CollisionAlgorithm[newStride * newStride];
+        Arrays.fill(newTable, NO_COLLISION);
+        for (int a = 0; a < stride; a++) {
+            System.arraycopy(table, a * stride, newTable, a * newStride, stride);
+        }
+        table = newTable;
+        stride = newStride;
+    }
+
+    // Lets a kernel written for (A, B) serve pairs that arrive as (B, A).
+    private static final class SwappedAlgorithm implements CollisionAlgorithm {
+        private final CollisionAlgorithm algorithm;
+
+        SwappedAlgorithm(CollisionAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean collided(Shape first, Shape second) {
+            return algorithm.collided(second, first);
+        }
+
+        @Override
+        public boolean resolve(Shape first, Shape second) {
+            return algorithm.resolve(second, first);
+        }
+
+        @Override
+        public double timeOfImpact(Shape first, Shape second, double horizon) {
+            return algorithm.timeOfImpact(second, first, horizon);
+        }
+    }
+}
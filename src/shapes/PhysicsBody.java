@@ -0,0 +1,152 @@
+package shapes;
+
+import java.awt.Color;
+
+/**
+ * Base class for shapes whose state lives in a PhysicsWorld.
+ * A body is only a handle: the world it belongs to and its index in that world.
+ * A new body starts in a small world of its own until it is added to a simulation.
+ */
+public abstract class PhysicsBody implements Shape {
+
+    PhysicsWorld world;
+    int index;
+    protected final Color color; // Kept on the handle so drawing does not create Color objects
+
+    protected PhysicsBody(int type, double x, double y, double offsetX, double offsetY,
+                          double width, double height, double mass, Color color) {
+        this.color = color;
+        PhysicsWorld own = new PhysicsWorld(1);
+        own.bind(this, own.addBody(type, x, y, offsetX, offsetY, width, height, mass, color.getRGB()));
+    }
+
+    // Creates the body straight in a world, which saves a copy when building large scenes.
+    protected PhysicsBody(PhysicsWorld world, int type, double x, double y, double offsetX, double offsetY,
+                          double width, double height, double mass, Color color) {
+        this.color = color;
+        world.bind(this, world.addBody(type, x, y, offsetX, offsetY, width, height, mass, color.getRGB()));
+    }
+
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void move(double deltaTime) {
+        world.x[index] += world.vx[index] * deltaTime;
+        world.y[index] += world.vy[index] * deltaTime;
+    }
+
+    @Override
+    public int getTypeId() {
+        return world.type[index];
+    }
+
+    // Both lookups go through the CollisionRegistry, so adding a shape type does not touch the existing ones
+    @Override
+    public boolean collidedWith(Shape other) {
+        return CollisionRegistry.collided(this, other);
+    }
+
+    @Override
+    public void handleCollision(Shape other) {
+        CollisionRegistry.resolve(this, other);
+    }
+
+    @Override
+    public boolean isAsleep() {
+        return world.asleep[index];
+    }
+
+    @Override
+    public void wakeUp() {
+        if (world.asleep[index]) {
+            world.wake(index);
+        }
+    }
+
+    @Override
+    public void onContact(Shape other) {
+        if (other instanceof PhysicsBody && ((PhysicsBody) other).world == world) {
+            world.recordContact(index, ((PhysicsBody) other).index);
+        } else if (other.isAsleep() != isAsleep()) {
+            // No shared island outside a world; just wake whichever side is asleep
+            wakeUp();
+            other.wakeUp();
+        }
+    }
+
+    @Override
+    public void handleWallCollision(int width, int height) {
+        world.resolveWallCollision(index, width, height);
+    }
+
+    // Getters
+    @Override
+    public double getX() {
+        return world.x[index];
+    }
+
+    @Override
+    public double getY() {
+        return world.y[index];
+    }
+
+    @Override
+    public double getVelocityX() {
+        return world.vx[index];
+    }
+
+    @Override
+    public double getVelocityY() {
+        return world.vy[index];
+    }
+
+    @Override
+    public double getMass() {
+        return world.mass[index];
+    }
+
+    @Override
+    public double getMinX() {
+        return world.getMinX(index);
+    }
+
+    @Override
+    public double getMinY() {
+        return world.getMinY(index);
+    }
+
+    @Override
+    public double getMaxX() {
+        return world.getMaxX(index);
+    }
+
+    @Override
+    public double getMaxY() {
+        return world.getMaxY(index);
+    }
+
+    // Setters
+    @Override
+    public void setVelocity(double vx, double vy) {
+        wakeUp();
+        world.vx[index] = vx;
+        world.vy[index] = vy;
+    }
+
+    // Moves the body without changing its velocity, e.g. to push overlapping shapes apart.
+    public void setPosition(double x, double y) {
+        wakeUp();
+        world.x[index] = x;
+        world.y[index] = y;
+    }
+}
@@ -0,0 +1,490 @@
+package shapes;
+
+import constants.Constants;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Data-oriented storage for the bodies of a simulation.
+ * Position, velocity, mass and bounding-box extent of every body live in parallel primitive arrays,
+ * so the per-tick passes over all bodies are tight loops over contiguous memory that the JIT can
+ * unroll and vectorise. Circle and GameRectangle objects are thin handles holding an index into a world.
+ * Bodies that stay almost still for a while are put to sleep together with everything touching them,
+ * and the narrow phase skips pairs of sleeping bodies until an awake body runs into them.
+ */
+public class PhysicsWorld {
+
+    public static final int TYPE_CIRCLE = 0;
+    public static final int TYPE_RECTANGLE = 1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Position and velocity of each body
+    double[] x;
+    double[] y;
+    double[] vx;
+    double[] vy;
+    double[] mass;
+
+    // Offset from the position to the top-left corner of the bounding box, and the size of the box
+    double[] offsetX;
+    double[] offsetY;
+    double[] extentX;
+    double[] extentY;
+
+    int[] type;
+    int[] rgb;
+    PhysicsBody[] bodies;
+    int size;
+
+    // Sleeping. Bodies touching this tick are joined in a union-find over islandParent;
+    // the members of a sleeping island are linked in a ring through islandNext
+    boolean[] asleep;
+    int[] sleepTicks;    // Consecutive ticks spent below the energy threshold
+    int[] islandParent;
+    int[] islandNext;
+    private int[] islandMinTicks; // Scratch: fewest still ticks of any body in an island, kept at its root
+    private boolean sleepingEnabled;
+
+    // Fraction of the approach speed two bodies keep after they collide, read by the collision kernels
+    double restitution = Constants.RESTITUTION;
+
+    public PhysicsWorld() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PhysicsWorld(int capacity) {
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Grows the arrays up front, e.g. before adding many bodies at once.
+    public void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        offsetX = Arrays.copyOf(offsetX, capacity);
+        offsetY = Arrays.copyOf(offsetY, capacity);
+        extentX = Arrays.copyOf(extentX, capacity);
+        extentY = Arrays.copyOf(extentY, capacity);
+        type = Arrays.copyOf(type, capacity);
+        rgb = Arrays.copyOf(rgb, capacity);
+        bodies = Arrays.copyOf(bodies, capacity);
+        asleep = Arrays.copyOf(asleep, capacity);
+        sleepTicks = Arrays.copyOf(sleepTicks, capacity);
+        islandParent = Arrays.copyOf(islandParent, capacity);
+        islandNext = Arrays.copyOf(islandNext, capacity);
+        islandMinTicks = new int[capacity];
+    }
+
+    /**
+     * Moves a body into this world. Its handle is rebound to the new slot.
+     * @param body The body to add, usually a freshly created shape
+     */
+    public void add(PhysicsBody body) {
+        PhysicsWorld source = body.world;
+        if (source == this) {
+            return;
+        }
+        int from = body.index;
+        int to = addBody(source.type[from], source.x[from], source.y[from],
+                source.offsetX[from], source.offsetY[from], source.extentX[from], source.extentY[from],
+                source.mass[from], source.rgb[from]);
+        vx[to] = source.vx[from];
+        vy[to] = source.vy[from];
+        bind(body, to);
+    }
+
+    // Appends the state of a new body and returns its index. The caller binds a handle to it.
+    int addBody(int bodyType, double px, double py, double boxOffsetX, double boxOffsetY,
+                double boxWidth, double boxHeight, double bodyMass, int bodyRgb) {
+        if (size == x.length) {
+            ensureCapacity(Math.max(DEFAULT_CAPACITY, size * 2));
+        }
+        int i = size++;
+        type[i] = bodyType;
+        x[i] = px;
+        y[i] = py;
+        vx[i] = 0;
+        vy[i] = 0;
+        mass[i] = bodyMass;
+        offsetX[i] = boxOffsetX;
+        offsetY[i] = boxOffsetY;
+        extentX[i] = boxWidth;
+        extentY[i] = boxHeight;
+        rgb[i] = bodyRgb;
+        asleep[i] = false;
+        sleepTicks[i] = 0;
+        islandParent[i] = i;
+        islandNext[i] = i;
+        return i;
+    }
+
+    void bind(PhysicsBody body, int i) {
+        bodies[i] = body;
+        body.world = this;
+        body.index = i;
+    }
+
+    /**
+     * Removes every body. Existing handles keep their last state in a detached world,
+     * so shapes still referenced elsewhere stay valid.
+     */
+    public void clear() {
+        PhysicsWorld detached = new PhysicsWorld(0);
+        detached.x = x;
+        detached.y = y;
+        detached.vx = vx;
+        detached.vy = vy;
+        detached.mass = mass;
+        detached.offsetX = offsetX;
+        detached.offsetY = offsetY;
+        detached.extentX = extentX;
+        detached.extentY = extentY;
+        detached.type = type;
+        detached.rgb = rgb;
+        detached.bodies = bodies;
+        detached.asleep = asleep;
+        detached.sleepTicks = sleepTicks;
+        detached.islandParent = islandParent;
+        detached.islandNext = islandNext;
+        detached.islandMinTicks = islandMinTicks;
+        detached.size = size;
+        for (int i = 0; i < size; i++) {
+            bodies[i].world = detached;
+        }
+        allocate(x.length);
+    }
+
+    /**
+     * Removes the bodies contained in a collection, keeping the others in order. Each removed handle
+     * keeps its last state in a world of its own. Pass a set, as this asks it once per body.
+     * Islands that lose a sleeping body are woken, since nothing may hold them up any more.
+     */
+    public void removeAll(Collection<?> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        final int count = size;
+        for (int i = 0; i < count; i++) {
+            if (asleep[i] && removed.contains(bodies[i])) {
+                wake(i);
+            }
+        }
+        int[] newIndex = new int[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            PhysicsBody body = bodies[i];
+            if (removed.contains(body)) {
+                newIndex[i] = -1;
+                new PhysicsWorld(1).add(body);
+                continue;
+            }
+            // Slot i is still intact here, since kept never passes i
+            newIndex[i] = kept;
+            if (kept != i) {
+                moveBody(i, kept);
+            }
+            kept++;
+        }
+        // Only sleeping rings point at other bodies, and none of them holds a removed body
+        for (int i = 0; i < kept; i++) {
+            islandNext[i] = newIndex[islandNext[i]];
+            islandParent[i] = i;
+        }
+        Arrays.fill(bodies, kept, count, null);
+        size = kept;
+    }
+
+    private void moveBody(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        mass[to] = mass[from];
+        offsetX[to] = offsetX[from];
+        offsetY[to] = offsetY[from];
+        extentX[to] = extentX[from];
+        extentY[to] = extentY[from];
+        type[to] = type[from];
+        rgb[to] = rgb[from];
+        asleep[to] = asleep[from];
+        sleepTicks[to] = sleepTicks[from];
+        islandNext[to] = islandNext[from];
+        bind(bodies[from], to);
+    }
+
+    /**
+     * Moves every body along its velocity. Sleeping bodies have zero velocity, so they are left in
+     * place without a per-body branch that would stop the loops from vectorising.
+     * @param deltaTime Time step in seconds
+     */
+    public void integrate(double deltaTime) {
+        integrate(deltaTime, 0, size);
+    }
+
+    // Moves the bodies from index 'from' up to 'to', e.g. one thread's share of them.
+    public void integrate(double deltaTime, int from, int to) {
+        final double[] px = x;
+        final double[] py = y;
+        final double[] velX = vx;
+        final double[] velY = vy;
+        for (int i = from; i < to; i++) {
+            px[i] += velX[i] * deltaTime;
+        }
+        for (int i = from; i < to; i++) {
+            py[i] += velY[i] * deltaTime;
+        }
+    }
+
+    /**
+     * Bounces every body off the walls of a width x height container.
+     */
+    public void resolveWallCollisions(int width, int height) {
+        resolveWallCollisions(width, height, 0, size);
+    }
+
+    // Same for the bodies from index 'from' up to 'to'.
+    public void resolveWallCollisions(int width, int height, int from, int to) {
+        for (int i = from; i < to; i++) {
+            resolveWallCollision(i, width, height);
+        }
+    }
+
+    /**
+     * Turns sleeping on or off; it is off by default. A body that falls asleep has its remaining
+     * velocity set to zero, so a simulation with sleeping does not conserve momentum or energy.
+     * Turning it off wakes every body.
+     */
+    public void setSleepingEnabled(boolean enabled) {
+        sleepingEnabled = enabled;
+        if (!enabled) {
+            for (int i = 0; i < size; i++) {
+                asleep[i] = false;
+                sleepTicks[i] = 0;
+                islandParent[i] = i;
+                islandNext[i] = i;
+            }
+        }
+    }
+
+    public boolean isSleepingEnabled() {
+        return sleepingEnabled;
+    }
+
+    /**
+     * Sets how bouncy collisions between bodies are: 1 keeps all the energy, 0 stops the bodies
+     * dead along the contact normal. Walls always bounce elastically.
+     */
+    public void setRestitution(double restitution) {
+        if (!(restitution >= 0 && restitution <= 1)) {
+            throw new IllegalArgumentException("Restitution must be between 0 and 1: " + restitution);
+        }
+        this.restitution = restitution;
+    }
+
+    public double getRestitution() {
+        return restitution;
+    }
+
+    /**
+     * Records that two bodies touched this tick, after the contact was resolved.
+     * A sleeping body hit by an awake one wakes up together with its whole island.
+     */
+    public void recordContact(int i, int j) {
+        if (!sleepingEnabled) {
+            return;
+        }
+        if (asleep[i] != asleep[j]) {
+            wake(asleep[i] ? i : j);
+        }
+        int rootI = findIsland(i);
+        int rootJ = findIsland(j);
+        if (rootI != rootJ) {
+            islandParent[rootI] = rootJ;
+        }
+    }
+
+    // Wakes a body and every body that fell asleep in the same island.
+    public void wake(int i) {
+        int j = i;
+        do {
+            int next = islandNext[j];
+            asleep[j] = false;
+            sleepTicks[j] = 0;
+            islandNext[j] = j;
+            j = next;
+        } while (j != i);
+    }
+
+    public boolean isAsleep(int i) {
+        return asleep[i];
+    }
+
+    /**
+     * Advances the sleep timers at the end of a tick. An island, i.e. a group of bodies connected
+     * by this tick's contacts, falls asleep once every body in it has had less kinetic energy than
+     * Constants.SLEEP_ENERGY_THRESHOLD for Constants.SLEEP_TICKS ticks in a row.
+     */
+    public void updateSleep() {
+        if (!sleepingEnabled) {
+            return;
+        }
+        final int count = size;
+        for (int i = 0; i < count; i++) {
+            if (asleep[i]) {
+                continue;
+            }
+            double energy = 0.5 * mass[i] * (vx[i] * vx[i] + vy[i] * vy[i]);
+            sleepTicks[i] = energy < Constants.SLEEP_ENERGY_THRESHOLD ? sleepTicks[i] + 1 : 0;
+            islandMinTicks[i] = Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!asleep[i]) {
+                int root = findIsland(i);
+                islandMinTicks[root] = Math.min(islandMinTicks[root], sleepTicks[i]);
+            }
+        }
+        // Link the members of each island that is ready into a ring around its root
+        for (int i = 0; i < count; i++) {
+            if (!asleep[i]) {
+                int root = findIsland(i);
+                if (root != i && islandMinTicks[root] >= Constants.SLEEP_TICKS) {
+                    islandNext[i] = islandNext[root];
+                    islandNext[root] = i;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (!asleep[i] && islandMinTicks[findIsland(i)] >= Constants.SLEEP_TICKS) {
+                asleep[i] = true;
+                vx[i] = 0;
+                vy[i] = 0;
+            }
+        }
+        // Islands are rebuilt from the contacts of each tick
+        for (int i = 0; i < count; i++) {
+            islandParent[i] = i;
+        }
+    }
+
+    private int findIsland(int i) {
+        while (islandParent[i] != i) {
+            islandParent[i] = islandParent[islandParent[i]]; // Path halving
+            i = islandParent[i];
+        }
+        return i;
+    }
+
+    void resolveWallCollision(int i, int width, int height) {
+        // Left wall
+        if (x[i] + offsetX[i] < 0) {
+            x[i] = 0 - offsetX[i];
+            vx[i] = Math.abs(vx[i]);
+        }
+        // Right wall
+        double far = extentX[i] + offsetX[i];
+        if (x[i] + far > width) {
+            x[i] = width - far;
+            vx[i] = -Math.abs(vx[i]);
+        }
+        // Top wall
+        if (y[i] + offsetY[i] < 0) {
+            y[i] = 0 - offsetY[i];
+            vy[i] = Math.abs(vy[i]);
+        }
+        // Bottom wall
+        far = extentY[i] + offsetY[i];
+        if (y[i] + far > height) {
+            y[i] = height - far;
+            vy[i] = -Math.abs(vy[i]);
+        }
+    }
+
+    // Per-body accessors for code outside the package
+    public PhysicsBody getBody(int i) {
+        return bodies[i];
+    }
+
+    public int getType(int i) {
+        return type[i];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getVelocityX(int i) {
+        return vx[i];
+    }
+
+    public double getVelocityY(int i) {
+        return vy[i];
+    }
+
+    public double getMass(int i) {
+        return mass[i];
+    }
+
+    // Size of the bounding box, i.e. the diameter of a circle
+    public double getWidth(int i) {
+        return extentX[i];
+    }
+
+    public double getHeight(int i) {
+        return extentY[i];
+    }
+
+    public int getRgb(int i) {
+        return rgb[i];
+    }
+
+    public double getMinX(int i) {
+        return x[i] + offsetX[i];
+    }
+
+    public double getMinY(int i) {
+        return y[i] + offsetY[i];
+    }
+
+    public double getMaxX(int i) {
+        return x[i] + offsetX[i] + extentX[i];
+    }
+
+    public double getMaxY(int i) {
+        return y[i] + offsetY[i] + extentY[i];
+    }
+
+    private void allocate(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        mass = new double[capacity];
+        offsetX = new double[capacity];
+        offsetY = new double[capacity];
+        extentX = new double[capacity];
+        extentY = new double[capacity];
+        type = new int[capacity];
+        rgb = new int[capacity];
+        bodies = new PhysicsBody[capacity];
+        asleep = new boolean[capacity];
+        sleepTicks = new int[capacity];
+        islandParent = new int[capacity];
+        islandNext = new int[capacity];
+        islandMinTicks = new int[capacity];
+        size = 0;
+    }
+}
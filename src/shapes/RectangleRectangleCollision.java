@@ -0,0 +1,130 @@
+package shapes;
+
+import constants.Constants;
+
+// Rectangle-rectangle kernel: axis-aligned box overlap, resolved along the axis of least overlap.
+// The swept test intersects the time intervals in which the boxes overlap on each axis.
+final class RectangleRectangleCollision implements CollisionAlgorithm {
+
+    @Override
+    public boolean collided(Shape first, Shape second) {
+        GameRectangle rect = (GameRectangle) first;
+        GameRectangle otherRect = (GameRectangle) second;
+        PhysicsWorld w = rect.world;
+        int i = rect.index;
+        PhysicsWorld ow = otherRect.world;
+        int j = otherRect.index;
+        return !(w.x[i] + w.extentX[i] < ow.x[j] || 
+                ow.x[j] + ow.extentX[j] < w.x[i] || 
+                w.y[i] + w.extentY[i] < ow.y[j] || 
+                ow.y[j] + ow.extentY[j] < w.y[i]);
+    }
+
+    @Override
+    public boolean resolve(Shape first, Shape second) {
+        GameRectangle rect = (GameRectangle) first;
+        GameRectangle otherRect = (GameRectangle) second;
+        PhysicsWorld w = rect.world;
+        int i = rect.index;
+        PhysicsWorld ow = otherRect.world;
+        int j = otherRect.index;
+        double mass1 = w.mass[i];
+        double mass2 = ow.mass[j];
+        double e = w.restitution;
+        
+        // Calculate center positions
+        double centerX1 = w.x[i] + w.extentX[i] / 2;
+        double centerY1 = w.y[i] + w.extentY[i] / 2;
+        double centerX2 = ow.x[j] + ow.extentX[j] / 2;
+        double centerY2 = ow.y[j] + ow.extentY[j] / 2;
+        
+        // Calculate overlap on each axis
+        double overlapX = (w.extentX[i] + ow.extentX[j]) / 2 - Math.abs(centerX1 - centerX2);
+        double overlapY = (w.extentY[i] + ow.extentY[j]) / 2 - Math.abs(centerY1 - centerY2);
+        
+        // Resolve collision on the axis with minimum overlap
+        if (overlapX < overlapY) {
+            // Collision on X axis
+            double totalMass = mass1 + mass2;
+            double v1 = w.vx[i];
+            double v2 = ow.vx[j];
+            
+            // Calculate new velocities using conservation of momentum
+            w.vx[i] = ((mass1 - e * mass2) * v1 + (1 + e) * mass2 * v2) / totalMass;
+            ow.vx[j] = ((mass2 - e * mass1) * v2 + (1 + e) * mass1 * v1) / totalMass;
+            
+            // Separate rectangles
+            if (centerX1 < centerX2) {
+                w.x[i] -= overlapX * (mass2 / totalMass);
+                ow.x[j] += overlapX * (mass1 / totalMass);
+            } else {
+                w.x[i] += overlapX * (mass2 / totalMass);
+                ow.x[j] -= overlapX * (mass1 / totalMass);
+            }
+        } else {
+            // Collision on Y axis
+            double totalMass = mass1 + mass2;
+            double v1 = w.vy[i];
+            double v2 = ow.vy[j];
+            
+            // Calculate new velocities using conservation of momentum
+            w.vy[i] = ((mass1 - e * mass2) * v1 + (1 + e) * mass2 * v2) / totalMass;
+            ow.vy[j] = ((mass2 - e * mass1) * v2 + (1 + e) * mass1 * v1) / totalMass;
+            
+            // Separate rectangles
+            if (centerY1 < centerY2) {
+                w.y[i] -= overlapY * (mass2 / totalMass);
+                ow.y[j] += overlapY * (mass1 / totalMass);
+            } else {
+                w.y[i] += overlapY * (mass2 / totalMass);
+                ow.y[j] -= overlapY * (mass1 / totalMass);
+            }
+        }
+        return true; // Boxes always exchange momentum, even when already separating
+    }
+
+    @Override
+    public double timeOfImpact(Shape first, Shape second, double horizon) {
+        GameRectangle rect = (GameRectangle) first;
+        GameRectangle otherRect = (GameRectangle) second;
+        double slop = Math.min(Constants.CONTACT_SLOP,
+                0.5 * Math.min(Math.min(rect.getWidth(), otherRect.getWidth()),
+                        Math.min(rect.getHeight(), otherRect.getHeight())));
+        // Motion of the first box relative to the second
+        double vx = rect.getVelocityX() - otherRect.getVelocityX();
+        double vy = rect.getVelocityY() - otherRect.getVelocityY();
+
+        // On each axis the boxes overlap by more than the slop while lo < v * t < hi
+        double loX = otherRect.getX() - rect.getX() - rect.getWidth() + slop;
+        double hiX = otherRect.getX() + otherRect.getWidth() - rect.getX() - slop;
+        double loY = otherRect.getY() - rect.getY() - rect.getHeight() + slop;
+        double hiY = otherRect.getY() + otherRect.getHeight() - rect.getY() - slop;
+
+        double entry = Math.max(entryTime(loX, hiX, vx), entryTime(loY, hiY, vy));
+        double exit = Math.min(exitTime(loX, hiX, vx), exitTime(loY, hiY, vy));
+        if (entry >= exit || exit <= 0 || entry > horizon) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(entry, 0);
+    }
+
+    // Start of the time interval in which lo < v * t < hi. Also used by the circle-rectangle test.
+    static double entryTime(double lo, double hi, double v) {
+        if (v > 0) {
+            return lo / v;
+        } else if (v < 0) {
+            return hi / v;
+        }
+        return lo < 0 && hi > 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+
+    // End of the time interval in which lo < v * t < hi.
+    static double exitTime(double lo, double hi, double v) {
+        if (v > 0) {
+            return hi / v;
+        } else if (v < 0) {
+            return lo / v;
+        }
+        return lo < 0 && hi > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,10 @@
+package shapes;
+
+/**
+ * How the simulation area is drawn.
+ */
+public enum RenderMode {
+    AUTO,     // Shapes, or a heatmap once there are more than Constants.HEATMAP_BODY_THRESHOLD bodies
+    SHAPES,   // Every body as its own shape
+    HEATMAP   // Density of bodies per tile, coloured by their average kinetic energy
+}
@@ -15,9 +15,32 @@ public interface Shape {
 
     void handleWallCollision(int width, int height);
 
+    // Sleeping shapes are at rest and are not tested against each other until something wakes them.
+    boolean isAsleep();
+
+    void wakeUp();
+
+    // Called by the narrow phase after a contact with another shape has been resolved.
+    void onContact(Shape otherShape);
+
+    // Identifies the kind of shape for the CollisionRegistry. Shapes of the same kind share one id.
+    int getTypeId();
+
     // Gets the bounding rectangle for any shape for collision detection. Works for any shape because any shape can fit within a rectangular box.
     public abstract Rectangle getBounds();
 
+    // Edges of the exact bounding box. Unlike getBounds() these do not allocate, so the broad phase uses them every tick.
+    double getMinX();
+
+    double getMinY();
+
+    double getMaxX();
+
+    double getMaxY();
+
+    // Checks if a point lies inside the shape, e.g. for hit-testing the mouse pointer.
+    boolean contains(double px, double py);
+
     // Getters for physics properties
     double getX();
 
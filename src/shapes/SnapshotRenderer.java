@@ -0,0 +1,360 @@
+package shapes;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws WorldSnapshots into a reusable back buffer, fast enough for tens of thousands of bodies.
+ * Bodies are given in world coordinates and drawn through a Viewport, which pans and zooms the scene.
+ * Up to the detail limit every body is drawn as Shape.draw does: anti-aliased, outlined, in order.
+ * Above it, bodies outside the buffer are skipped, outlines and anti-aliasing are dropped, and the
+ * bodies are grouped by colour so the colour is set once per group instead of twice per body.
+ * Overlapping bodies may then stack in a different order. Opaque circles a few pixels across
+ * are written straight into the image's pixel array, which is far cheaper than fillOval at that size.
+ * Snapshots that carry a density grid are drawn as a heatmap instead, at a cost that depends on
+ * the number of pixels only: the more bodies in a tile the stronger its colour, and the colour
+ * runs from blue to red with the average kinetic energy of those bodies.
+ * Not thread-safe; meant for the Event Dispatch Thread.
+ */
+public class SnapshotRenderer {
+
+    public static final int DEFAULT_DETAIL_LIMIT = 2000;
+    // Circles up to this diameter, in pixels, are plotted directly
+    public static final int TINY_CIRCLE_SIZE = 8;
+
+    // Rows of each tiny circle: first and last pixel of every row, relative to the bounding box
+    private static final int[][] SPAN_START = new int[TINY_CIRCLE_SIZE + 1][];
+    private static final int[][] SPAN_END = new int[TINY_CIRCLE_SIZE + 1][];
+
+    static {
+        for (int diameter = 1; diameter <= TINY_CIRCLE_SIZE; diameter++) {
+            SPAN_START[diameter] = new int[diameter];
+            SPAN_END[diameter] = new int[diameter];
+            double radius = diameter / 2.0;
+            for (int row = 0; row < diameter; row++) {
+                // Pixels whose centres are inside the circle, as a non-anti-aliased fillOval picks them
+                double dy = row + 0.5 - radius;
+                double half = Math.sqrt(Math.max(radius * radius - dy * dy, 0));
+                int start = (int) Math.ceil(radius - half - 0.5);
+                int end = (int) Math.floor(radius + half - 0.5);
+                if (end < start) {
+                    start = end = (int) radius; // Keep a thin row visible
+                }
+                SPAN_START[diameter][row] = Math.max(start, 0);
+                SPAN_END[diameter][row] = Math.min(end, diameter - 1);
+            }
+        }
+    }
+
+    // Heatmap colours for each pair of density level and energy level
+    private static final int HEAT_LEVELS = 64;
+    private static final int[] HEAT_COLORS = new int[HEAT_LEVELS * HEAT_LEVELS];
+
+    static {
+        for (int d = 0; d < HEAT_LEVELS; d++) {
+            float strength = (float) d / (HEAT_LEVELS - 1);
+            for (int e = 0; e < HEAT_LEVELS; e++) {
+                float hue = 0.66f * (1 - (float) e / (HEAT_LEVELS - 1)); // Blue when slow, red when fast
+                HEAT_COLORS[d * HEAT_LEVELS + e] = Color.HSBtoRGB(hue, 0.25f + 0.75f * strength, 1 - 0.45f * strength);
+            }
+        }
+    }
+
+    private int detailLimit = DEFAULT_DETAIL_LIMIT;
+    private boolean rasterCircles = true;
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int[] pixels; // Pixel array of the image, only fetched once the raster path is used
+
+    // Colour grouping, reused between frames
+    private int[] paletteKeys = new int[0];     // Open-addressing table from RGB to group
+    private int[] paletteGroups = new int[0];
+    private int paletteShift;
+    private Color[] groupColors = new Color[0];
+    private int[] groupStart = new int[0];
+    private int groupCount;
+    private int[] bodyGroup = new int[0];
+    private int[] order = new int[0];
+
+    /**
+     * Sets how many bodies are still drawn in full detail. Above that the fast path is used.
+     * @param bodies 0 to always use the fast path
+     */
+    public void setDetailLimit(int bodies) {
+        if (bodies < 0) {
+            throw new IllegalArgumentException("Detail limit cannot be negative: " + bodies);
+        }
+        this.detailLimit = bodies;
+    }
+
+    public int getDetailLimit() {
+        return detailLimit;
+    }
+
+    // Whether the fast path plots tiny circles into the pixel array. On by default.
+    public void setRasterCirclesEnabled(boolean enabled) {
+        this.rasterCircles = enabled;
+    }
+
+    public boolean isRasterCirclesEnabled() {
+        return rasterCircles;
+    }
+
+    /**
+     * Starts a frame: makes sure the back buffer has the given size and fills it with the background.
+     * @return Graphics of the back buffer, e.g. for drawing what goes under the bodies. Do not dispose it.
+     */
+    public Graphics2D beginFrame(int width, int height, Color background) {
+        width = Math.max(width, 1);
+        height = Math.max(height, 1);
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            if (graphics != null) {
+                graphics.dispose();
+            }
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+            pixels = null;
+        }
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        graphics.setColor(background);
+        graphics.fillRect(0, 0, width, height);
+        return graphics;
+    }
+
+    /**
+     * Draws the bodies of a snapshot into the back buffer, over whatever beginFrame's caller drew.
+     * @param view Maps world coordinates to the pixels of the buffer
+     */
+    public void drawBodies(WorldSnapshot snapshot, Viewport view) {
+        if (snapshot.hasDensity()) {
+            drawHeatmap(snapshot, view);
+        } else if (snapshot.size() <= detailLimit) {
+            drawDetailed(snapshot, view);
+        } else {
+            drawFast(snapshot, view);
+        }
+    }
+
+    // The finished frame, to be drawn with Graphics.drawImage.
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    private void drawDetailed(WorldSnapshot snapshot, Viewport view) {
+        Graphics2D g = graphics;
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = view.getScale();
+        for (int i = 0; i < snapshot.size; i++) {
+            double minX = view.toScreenX(snapshot.minX[i]);
+            double minY = view.toScreenY(snapshot.minY[i]);
+            double sizeX = snapshot.extentX[i] * scale;
+            double sizeY = snapshot.extentY[i] * scale;
+            // The outline reaches one pixel past the box
+            if (minX > width || minY > height || minX + sizeX < -1 || minY + sizeY < -1) {
+                continue;
+            }
+            if (snapshot.type[i] == PhysicsWorld.TYPE_CIRCLE) {
+                Circle.draw(g, minX, minY, sizeX, snapshot.colors[i]);
+            } else {
+                GameRectangle.draw(g, minX, minY, sizeX, sizeY, snapshot.colors[i]);
+            }
+        }
+    }
+
+    private void drawFast(WorldSnapshot snapshot, Viewport view) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = view.getScale();
+        int visible = groupByColor(snapshot, view, width, height);
+        Graphics2D g = graphics;
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        for (int group = 0; groupStart[group] < visible; group++) {
+            Color color = groupColors[group];
+            boolean opaque = color.getAlpha() == 255;
+            int rgb = color.getRGB();
+            g.setColor(color);
+            for (int k = groupStart[group]; k < groupStart[group + 1]; k++) {
+                int i = order[k];
+                int x = (int) view.toScreenX(snapshot.minX[i]);
+                int y = (int) view.toScreenY(snapshot.minY[i]);
+                int sizeX = Math.max((int) (snapshot.extentX[i] * scale), 1); // Far out, bodies stay a pixel
+                if (snapshot.type[i] == PhysicsWorld.TYPE_CIRCLE) {
+                    if (rasterCircles && opaque && sizeX <= TINY_CIRCLE_SIZE) {
+                        plotCircle(x, y, sizeX, rgb, width, height);
+                    } else {
+                        g.fillOval(x, y, sizeX, sizeX);
+                    }
+                } else {
+                    g.fillRect(x, y, sizeX, Math.max((int) (snapshot.extentY[i] * scale), 1));
+                }
+            }
+        }
+    }
+
+    // Colours every tile that holds bodies; empty tiles keep what is already there.
+    // The grid is placed through the view, so it follows the camera even if it was captured for an older view.
+    private void drawHeatmap(WorldSnapshot snapshot, Viewport view) {
+        int[] density = snapshot.density;
+        float[] energy = snapshot.energy;
+        int columns = snapshot.densityColumns;
+        int rows = snapshot.densityRows;
+        int tiles = columns * rows;
+
+        // Log scales, so a few crowded tiles do not wash out the rest
+        int maxDensity = 0;
+        double maxEnergy = 0;
+        for (int t = 0; t < tiles; t++) {
+            int bodies = density[t];
+            if (bodies > 0) {
+                maxDensity = Math.max(maxDensity, bodies);
+                maxEnergy = Math.max(maxEnergy, energy[t] / bodies);
+            }
+        }
+        if (maxDensity == 0) {
+            return;
+        }
+        double densityScale = maxDensity > 1 ? (HEAT_LEVELS - 1) / Math.log(maxDensity) : 0;
+        double energyScale = maxEnergy > 0 ? (HEAT_LEVELS - 1) / Math.log1p(maxEnergy) : 0;
+
+        if (pixels == null) {
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double tileSize = snapshot.tileSize;
+        for (int row = 0; row < rows; row++) {
+            int top = Math.max((int) Math.round(view.toScreenY(snapshot.densityMinY + row * tileSize)), 0);
+            int bottom = Math.min((int) Math.round(view.toScreenY(snapshot.densityMinY + (row + 1) * tileSize)), height);
+            if (top >= bottom) {
+                continue;
+            }
+            for (int column = 0; column < columns; column++) {
+                int t = row * columns + column;
+                int bodies = density[t];
+                if (bodies == 0) {
+                    continue;
+                }
+                int left = Math.max((int) Math.round(view.toScreenX(snapshot.densityMinX + column * tileSize)), 0);
+                int right = Math.min((int) Math.round(view.toScreenX(snapshot.densityMinX + (column + 1) * tileSize)), width);
+                int densityLevel = Math.min((int) (Math.log(bodies) * densityScale), HEAT_LEVELS - 1);
+                int energyLevel = Math.min((int) (Math.log1p(energy[t] / bodies) * energyScale), HEAT_LEVELS - 1);
+                int rgb = HEAT_COLORS[densityLevel * HEAT_LEVELS + energyLevel];
+                for (int y = top; y < bottom; y++) {
+                    int offset = y * width;
+                    for (int x = left; x < right; x++) {
+                        pixels[offset + x] = rgb;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts the visible bodies into order[], grouped by colour with a counting sort. Within a group
+     * bodies keep their snapshot order. Fills groupColors and groupStart.
+     * @return The number of visible bodies
+     */
+    private int groupByColor(WorldSnapshot snapshot, Viewport view, int width, int height) {
+        int count = snapshot.size;
+        ensureCapacity(count);
+        int mask = paletteKeys.length - 1;
+        Arrays.fill(paletteGroups, -1);
+        int groups = 0;
+        int visible = 0;
+        double scale = view.getScale();
+        for (int i = 0; i < count; i++) {
+            double minX = view.toScreenX(snapshot.minX[i]);
+            double minY = view.toScreenY(snapshot.minY[i]);
+            if (minX >= width || minY >= height || minX + snapshot.extentX[i] * scale < 0
+                    || minY + snapshot.extentY[i] * scale < 0) {
+                bodyGroup[i] = -1;
+                continue;
+            }
+            Color color = snapshot.colors[i];
+            int rgb = color.getRGB();
+            int slot = (rgb * 0x9E3779B1) >>> paletteShift;
+            while (paletteGroups[slot] >= 0 && paletteKeys[slot] != rgb) {
+                slot = (slot + 1) & mask;
+            }
+            if (paletteGroups[slot] < 0) {
+                paletteKeys[slot] = rgb;
+                paletteGroups[slot] = groups;
+                groupColors[groups] = color;
+                groupStart[groups + 1] = 0;
+                groups++;
+            }
+            int group = paletteGroups[slot];
+            bodyGroup[i] = group;
+            groupStart[group + 1]++;
+            visible++;
+        }
+
+        groupStart[0] = 0;
+        for (int group = 0; group < groups; group++) {
+            groupStart[group + 1] += groupStart[group];
+        }
+        for (int i = 0; i < count; i++) {
+            int group = bodyGroup[i];
+            if (group >= 0) {
+                order[groupStart[group]++] = i;
+            }
+        }
+        // The placement pass moved every start to the next group's start; shift them back
+        for (int group = groups; group > 0; group--) {
+            groupStart[group] = groupStart[group - 1];
+        }
+        groupStart[0] = 0;
+        // Drop references to colours no body uses any more
+        if (groups < groupCount) {
+            Arrays.fill(groupColors, groups, groupCount, null);
+        }
+        groupCount = groups;
+        return visible;
+    }
+
+    // Writes a small filled circle straight into the pixel array, clipped to the image.
+    private void plotCircle(int x, int y, int diameter, int rgb, int width, int height) {
+        if (pixels == null) {
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        int[] start = SPAN_START[diameter];
+        int[] end = SPAN_END[diameter];
+        int opaqueRgb = rgb | 0xFF000000;
+        for (int row = 0; row < diameter; row++) {
+            int py = y + row;
+            if (py < 0 || py >= height) {
+                continue;
+            }
+            int from = Math.max(x + start[row], 0);
+            int to = Math.min(x + end[row], width - 1);
+            int offset = py * width;
+            for (int px = from; px <= to; px++) {
+                pixels[offset + px] = opaqueRgb;
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (bodyGroup.length < count) {
+            int capacity = Math.max(count, bodyGroup.length * 2);
+            bodyGroup = new int[capacity];
+            order = new int[capacity];
+            groupColors = Arrays.copyOf(groupColors, capacity);
+            groupStart = new int[capacity + 1];
+        }
+        // Keep the colour table at most half full
+        int tableSize = Integer.highestOneBit(Math.max(count, 8) * 2 - 1) << 1;
+        if (paletteKeys.length < tableSize) {
+            paletteKeys = new int[tableSize];
+            paletteGroups = new int[tableSize];
+            paletteShift = 32 - Integer.numberOfTrailingZeros(tableSize);
+        }
+    }
+}
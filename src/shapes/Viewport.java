@@ -0,0 +1,104 @@
+package shapes;
+
+/**
+ * The part of the world shown on screen: the world point at the top-left pixel, the scale in pixels
+ * per world unit, and the size of the screen area in pixels. Immutable, so the Event Dispatch Thread
+ * can hand it to the simulation thread; panning and zooming return a new viewport.
+ */
+public final class Viewport {
+
+    public static final double MIN_SCALE = 1e-4;
+    public static final double MAX_SCALE = 64;
+
+    private final double minX;
+    private final double minY;
+    private final double scale;
+    private final int pixelWidth;
+    private final int pixelHeight;
+
+    public Viewport(double minX, double minY, double scale, int pixelWidth, int pixelHeight) {
+        if (!(scale >= MIN_SCALE && scale <= MAX_SCALE)) {
+            throw new IllegalArgumentException("Scale must be between " + MIN_SCALE + " and " + MAX_SCALE + ": " + scale);
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.scale = scale;
+        this.pixelWidth = Math.max(pixelWidth, 1);
+        this.pixelHeight = Math.max(pixelHeight, 1);
+    }
+
+    // The largest view of a whole width x height world that fits the pixels, at most one pixel per unit.
+    public static Viewport fit(double width, double height, int pixelWidth, int pixelHeight) {
+        double scale = Math.min(1, Math.min(Math.max(pixelWidth, 1) / width, Math.max(pixelHeight, 1) / height));
+        return new Viewport(0, 0, Math.max(scale, MIN_SCALE), pixelWidth, pixelHeight);
+    }
+
+    // Moves the view so the world follows the mouse, which moved by the given number of pixels.
+    public Viewport pan(double dx, double dy) {
+        return new Viewport(minX - dx / scale, minY - dy / scale, scale, pixelWidth, pixelHeight);
+    }
+
+    // Zooms by a factor, keeping the world point under the given pixel where it is.
+    public Viewport zoom(double screenX, double screenY, double factor) {
+        double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        double worldX = toWorldX(screenX);
+        double worldY = toWorldY(screenY);
+        return new Viewport(worldX - screenX / newScale, worldY - screenY / newScale, newScale,
+                pixelWidth, pixelHeight);
+    }
+
+    // Same view from the same corner, on a screen area of another size.
+    public Viewport resize(int newPixelWidth, int newPixelHeight) {
+        return new Viewport(minX, minY, scale, newPixelWidth, newPixelHeight);
+    }
+
+    public double toScreenX(double worldX) {
+        return (worldX - minX) * scale;
+    }
+
+    public double toScreenY(double worldY) {
+        return (worldY - minY) * scale;
+    }
+
+    public double toWorldX(double screenX) {
+        return minX + screenX / scale;
+    }
+
+    public double toWorldY(double screenY) {
+        return minY + screenY / scale;
+    }
+
+    // Whether a box in world coordinates shows on screen.
+    public boolean intersects(double boxMinX, double boxMinY, double boxMaxX, double boxMaxY) {
+        return boxMaxX >= minX && boxMinX <= getMaxX() && boxMaxY >= minY && boxMinY <= getMaxY();
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return minX + pixelWidth / scale;
+    }
+
+    public double getMaxY() {
+        return minY + pixelHeight / scale;
+    }
+
+    // Pixels per world unit.
+    public double getScale() {
+        return scale;
+    }
+
+    public int getPixelWidth() {
+        return pixelWidth;
+    }
+
+    public int getPixelHeight() {
+        return pixelHeight;
+    }
+}
@@ -0,0 +1,284 @@
+package shapes;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+/**
+ * Copy of the drawable state of a PhysicsWorld at one tick.
+ * The simulation thread fills a snapshot and then publishes it. Once published it is never
+ * changed while a reader holds it, so the painter can draw it without locking.
+ * Snapshots are recycled by the publisher instead of being allocated every frame.
+ */
+public class WorldSnapshot {
+
+    // Package-private so SnapshotRenderer can read them without copying
+    int size;
+    private int bodyCount; // Bodies in the world, including those left out of this snapshot
+    private long tick;
+    int[] type = new int[0];
+    double[] minX = new double[0];
+    double[] minY = new double[0];
+    double[] extentX = new double[0];
+    double[] extentY = new double[0];
+    Color[] colors = new Color[0];
+    PhysicsBody[] bodies = new PhysicsBody[0]; // For hit-testing; null for bodies loaded from elsewhere
+    
+    // Heatmap: bodies and summed kinetic energy per tile, row by row. Only filled by captureDensity.
+    // Tiles are square in world units; the grid starts at densityMinX, densityMinY
+    boolean hasDensity;
+    double densityMinX;
+    double densityMinY;
+    double tileSize;
+    int densityColumns;
+    int densityRows;
+    int[] density = new int[0];
+    float[] energy = new float[0];
+
+    /**
+     * Overwrites this snapshot with the current state of a world.
+     * Only the publisher may call this, and only on a snapshot no reader can see.
+     * @param world World to copy
+     * @param tick Number of ticks simulated so far
+     */
+    public void capture(PhysicsWorld world, long tick) {
+        int count = world.size;
+        ensureCapacity(count);
+        System.arraycopy(world.type, 0, type, 0, count);
+        System.arraycopy(world.extentX, 0, extentX, 0, count);
+        System.arraycopy(world.extentY, 0, extentY, 0, count);
+        System.arraycopy(world.bodies, 0, bodies, 0, count);
+        for (int i = 0; i < count; i++) {
+            minX[i] = world.x[i] + world.offsetX[i];
+            minY[i] = world.y[i] + world.offsetY[i];
+            colors[i] = world.bodies[i].color;
+        }
+        finish(world, tick, count);
+    }
+
+    /**
+     * Same, but only keeps the bodies whose bounds overlap a view. Checks every body of the world;
+     * with a spatial index at hand, the other capture is cheaper.
+     */
+    public void capture(PhysicsWorld world, long tick, Viewport view) {
+        int count = world.size;
+        ensureCapacity(count);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            kept = keepIfVisible(world, i, view, kept);
+        }
+        finish(world, tick, kept);
+    }
+
+    /**
+     * Same, for bodies a spatial query found near a view, so the cost follows the number of bodies in
+     * sight rather than in the world. Candidates that turn out to be outside the view are left out.
+     * @param candidates World indices in ascending order, so later bodies are still drawn on top
+     * @param count Number of candidates
+     */
+    public void capture(PhysicsWorld world, long tick, Viewport view, int[] candidates, int count) {
+        ensureCapacity(count);
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            kept = keepIfVisible(world, candidates[k], view, kept);
+        }
+        finish(world, tick, kept);
+    }
+
+    private int keepIfVisible(PhysicsWorld world, int i, Viewport view, int kept) {
+        double boxMinX = world.x[i] + world.offsetX[i];
+        double boxMinY = world.y[i] + world.offsetY[i];
+        if (!view.intersects(boxMinX, boxMinY, boxMinX + world.extentX[i], boxMinY + world.extentY[i])) {
+            return kept;
+        }
+        type[kept] = world.type[i];
+        minX[kept] = boxMinX;
+        minY[kept] = boxMinY;
+        extentX[kept] = world.extentX[i];
+        extentY[kept] = world.extentY[i];
+        colors[kept] = world.bodies[i].color;
+        bodies[kept] = world.bodies[i];
+        return kept + 1;
+    }
+
+    private void finish(PhysicsWorld world, long tick, int count) {
+        // Drop references to colours and bodies that are gone
+        if (count < size) {
+            Arrays.fill(colors, count, size, null);
+            Arrays.fill(bodies, count, size, null);
+        }
+        this.size = count;
+        this.bodyCount = world.size;
+        this.tick = tick;
+        this.hasDensity = false;
+    }
+
+    /**
+     * Adds a density grid of a world to this snapshot, for heatmap rendering. Call after capture().
+     * The grid covers the view with tiles of tileSize pixels; only bodies with their centre in view count.
+     * @param tileSize Side of a tile, in pixels
+     */
+    public void captureDensity(PhysicsWorld world, int tileSize, Viewport view) {
+        startDensity(tileSize, view);
+        int count = world.size;
+        for (int i = 0; i < count; i++) {
+            addToDensity(world, i);
+        }
+    }
+
+    // Same, counting only the candidates of a spatial query around the view, see capture().
+    public void captureDensity(PhysicsWorld world, int tileSize, Viewport view, int[] candidates, int count) {
+        startDensity(tileSize, view);
+        for (int k = 0; k < count; k++) {
+            addToDensity(world, candidates[k]);
+        }
+    }
+
+    private void startDensity(int tileSize, Viewport view) {
+        int columns = (view.getPixelWidth() + tileSize - 1) / tileSize;
+        int rows = (view.getPixelHeight() + tileSize - 1) / tileSize;
+        int tiles = columns * rows;
+        if (density.length < tiles) {
+            density = new int[tiles];
+            energy = new float[tiles];
+        } else {
+            Arrays.fill(density, 0, tiles, 0);
+            Arrays.fill(energy, 0, tiles, 0f);
+        }
+        this.densityMinX = view.getMinX();
+        this.densityMinY = view.getMinY();
+        this.tileSize = tileSize / view.getScale();
+        this.densityColumns = columns;
+        this.densityRows = rows;
+        this.hasDensity = true;
+    }
+
+    // Counts a body in the tile holding its centre, if there is one.
+    private void addToDensity(PhysicsWorld world, int i) {
+        double column = (world.x[i] + world.offsetX[i] + world.extentX[i] * 0.5 - densityMinX) / tileSize;
+        double row = (world.y[i] + world.offsetY[i] + world.extentY[i] * 0.5 - densityMinY) / tileSize;
+        if (column < 0 || column >= densityColumns || row < 0 || row >= densityRows) {
+            return;
+        }
+        int tile = (int) row * densityColumns + (int) column;
+        density[tile]++;
+        energy[tile] += (float) (0.5 * world.mass[i] * (world.vx[i] * world.vx[i] + world.vy[i] * world.vy[i]));
+    }
+
+    // Whether captureDensity was called since the last capture() or load().
+    public boolean hasDensity() {
+        return hasDensity;
+    }
+
+    /**
+     * Overwrites this snapshot with bodies from elsewhere, e.g. a frame decoded from a recording.
+     * The arrays are copied, so the caller can reuse them.
+     */
+    public void load(int count, long tick, int[] bodyType, double[] bodyMinX, double[] bodyMinY,
+                     double[] width, double[] height, Color[] bodyColors) {
+        ensureCapacity(count);
+        System.arraycopy(bodyType, 0, type, 0, count);
+        System.arraycopy(bodyMinX, 0, minX, 0, count);
+        System.arraycopy(bodyMinY, 0, minY, 0, count);
+        System.arraycopy(width, 0, extentX, 0, count);
+        System.arraycopy(height, 0, extentY, 0, count);
+        System.arraycopy(bodyColors, 0, colors, 0, count);
+        Arrays.fill(bodies, 0, Math.max(count, size), null);
+        if (count < size) {
+            Arrays.fill(colors, count, size, null);
+        }
+        this.size = count;
+        this.bodyCount = count;
+        this.tick = tick;
+        this.hasDensity = false;
+    }
+
+    // Number of bodies in this snapshot.
+    public int size() {
+        return size;
+    }
+
+    // Number of bodies in the world, which is more than size() when only those in view were captured.
+    public int getBodyCount() {
+        return bodyCount;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getType(int i) {
+        return type[i];
+    }
+
+    public double getMinX(int i) {
+        return minX[i];
+    }
+
+    public double getMinY(int i) {
+        return minY[i];
+    }
+
+    public double getWidth(int i) {
+        return extentX[i];
+    }
+
+    public double getHeight(int i) {
+        return extentY[i];
+    }
+
+    /**
+     * Finds the top-most body drawn at a point, using the positions in this snapshot.
+     * @return Index of the body in this snapshot, or -1 if there is none
+     */
+    public int findBodyAt(double x, double y) {
+        // Later bodies are drawn on top
+        for (int i = size - 1; i >= 0; i--) {
+            double dx = x - minX[i];
+            double dy = y - minY[i];
+            if (dx < 0 || dy < 0 || dx > extentX[i] || dy > extentY[i]) {
+                continue;
+            }
+            if (type[i] != PhysicsWorld.TYPE_CIRCLE) {
+                return i;
+            }
+            double radius = extentX[i] * 0.5;
+            dx -= radius;
+            dy -= radius;
+            if (dx * dx + dy * dy <= radius * radius) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The live body behind entry i, or null when the snapshot was loaded from a file or recording.
+    public PhysicsBody getBody(int i) {
+        return bodies[i];
+    }
+
+    // Draws every body the same way its Shape.draw would.
+    public void draw(Graphics2D g) {
+        for (int i = 0; i < size; i++) {
+            if (type[i] == PhysicsWorld.TYPE_CIRCLE) {
+                Circle.draw(g, minX[i], minY[i], extentX[i], colors[i]);
+            } else {
+                GameRectangle.draw(g, minX[i], minY[i], extentX[i], extentY[i], colors[i]);
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (type.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, type.length * 2);
+        type = new int[capacity];
+        minX = new double[capacity];
+        minY = new double[capacity];
+        extentX = new double[capacity];
+        extentY = new double[capacity];
+        colors = new Color[capacity];
+        bodies = new PhysicsBody[capacity];
+    }
+}
@@ -0,0 +1,224 @@
+package app;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import constants.Constants;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.RandomScene;
+import shapes.Shape;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every broad phase must report each pair of shapes whose bounds overlap, once, in the order the
+ * brute-force nested loop visits them, so the choice of broad phase never changes the results.
+ * The shapes move, and some are removed and added, between calls to exercise incremental updates.
+ */
+class BroadPhaseOrderTest {
+
+    private static final int TICKS = 40;
+
+    @Test
+    void gridReportsPairsInNestedLoopOrder() {
+        assertNestedLoopOrder(new UniformGridBroadPhase(20));
+    }
+
+    @Test
+    void gridWithSmallCellsReportsPairsInNestedLoopOrder() {
+        // Large shapes cover many cells, so the same pair is found in several of them
+        assertNestedLoopOrder(new UniformGridBroadPhase(3));
+    }
+
+    @Test
+    void sweepAndPruneReportsPairsInNestedLoopOrder() {
+        assertNestedLoopOrder(new SweepAndPruneBroadPhase());
+    }
+
+    @Test
+    void treeReportsPairsInNestedLoopOrder() {
+        assertNestedLoopOrder(new DynamicTreeBroadPhase());
+    }
+
+    @Test
+    void gridSkipsPairsOfSleepingShapes() {
+        assertSleepingPairsSkipped(new UniformGridBroadPhase(20));
+        assertSleepingPairsSkipped(new UniformGridBroadPhase(3));
+    }
+
+    @Test
+    void bruteForceSkipsPairsOfSleepingShapes() {
+        assertSleepingPairsSkipped(new BruteForceBroadPhase());
+    }
+
+    @Test
+    void treeQueriesFindEveryShapeThatOverlaps() {
+        RandomScene scene = scene(5);
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            shapes.add(scene.nextBody());
+        }
+        Random random = new Random(5);
+        DynamicTreeBroadPhase tree = new DynamicTreeBroadPhase();
+        tree.findCandidatePairs(shapes, (first, second) -> { });
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 400;
+            double y = random.nextDouble() * 300;
+            Set<Integer> found = new HashSet<>();
+            tree.queryPoint(shapes, x, y, index -> {
+                found.add(index);
+                return true;
+            });
+            Set<Integer> foundInBox = new HashSet<>();
+            tree.queryRectangle(shapes, x, y, x + 30, y + 20, index -> {
+                foundInBox.add(index);
+                return true;
+            });
+            for (int i = 0; i < shapes.size(); i++) {
+                Shape shape = shapes.get(i);
+                if (shape.getMinX() <= x && x <= shape.getMaxX() && shape.getMinY() <= y && y <= shape.getMaxY()) {
+                    assertTrue(found.contains(i), "Point query missed shape " + i);
+                }
+                if (shape.getMaxX() >= x && shape.getMinX() <= x + 30 && shape.getMaxY() >= y && shape.getMinY() <= y + 20) {
+                    assertTrue(foundInBox.contains(i), "Rectangle query missed shape " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void gridQueriesFindEveryShapeThatOverlapsOnce() {
+        List<Shape> shapes = sleepingScene(7, 500);
+        Random random = new Random(7);
+        UniformGridBroadPhase grid = new UniformGridBroadPhase(20);
+        grid.findCandidatePairs(shapes, (first, second) -> { });
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 400 - 50;
+            double y = random.nextDouble() * 300 - 50;
+            // Mostly small areas, and some covering more cells than there are shapes
+            double width = q % 10 == 0 ? 2000 : random.nextDouble() * 100;
+            double height = q % 10 == 0 ? 2000 : random.nextDouble() * 100;
+            List<Integer> found = new ArrayList<>();
+            grid.queryRectangle(shapes, x, y, x + width, y + height, index -> {
+                found.add(index);
+                return true;
+            });
+            assertTrue(new HashSet<>(found).size() == found.size(), "A shape was reported twice");
+            for (int i = 0; i < shapes.size(); i++) {
+                Shape shape = shapes.get(i);
+                boolean overlaps = shape.getMaxX() >= x && shape.getMinX() <= x + width
+                        && shape.getMaxY() >= y && shape.getMinY() <= y + height;
+                assertTrue(overlaps == found.contains(i), "Rectangle query got shape " + i + " wrong");
+            }
+        }
+    }
+
+    private static void assertNestedLoopOrder(BroadPhase broadPhase) {
+        RandomScene scene = scene(11);
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            shapes.add(scene.nextBody());
+        }
+        Random random = new Random(11);
+        for (int tick = 0; tick < TICKS; tick++) {
+            List<long[]> reported = new ArrayList<>();
+            broadPhase.findCandidatePairs(shapes, (first, second) -> reported.add(new long[] {first, second}));
+            check(shapes, reported, tick, false);
+
+            for (Shape shape : shapes) {
+                PhysicsBody body = (PhysicsBody) shape;
+                body.setPosition(body.getX() + random.nextGaussian() * 4, body.getY() + random.nextGaussian() * 4);
+            }
+            if (tick % 10 == 5) {
+                for (int k = 0; k < 20; k++) {
+                    shapes.remove(random.nextInt(shapes.size()));
+                }
+            }
+            if (tick % 10 == 8) {
+                for (int k = 0; k < 30; k++) {
+                    shapes.add(scene.nextBody());
+                }
+            }
+        }
+    }
+
+    // Pairs of sleeping shapes must be left out, the rest still found.
+    private static void assertSleepingPairsSkipped(BroadPhase broadPhase) {
+        List<Shape> shapes = sleepingScene(13, 400);
+        List<long[]> reported = new ArrayList<>();
+        broadPhase.findCandidatePairs(shapes, (first, second) -> reported.add(new long[] {first, second}));
+        check(shapes, reported, 0, true);
+    }
+
+    // Reported pairs must be ascending, so each comes once, and must include every overlapping pair,
+    // apart from pairs of sleeping shapes when those are skipped.
+    private static void check(List<Shape> shapes, List<long[]> reported, int tick, boolean skipSleeping) {
+        long previous = -1;
+        int next = 0;
+        int count = shapes.size();
+        for (long[] pair : reported) {
+            assertTrue(pair[0] < pair[1], "Pair " + pair[0] + ", " + pair[1] + " has first >= second");
+            long key = pair[0] * count + pair[1];
+            assertTrue(key > previous, "Pair " + pair[0] + ", " + pair[1] + " is out of order in tick " + tick);
+            previous = key;
+            if (skipSleeping) {
+                assertFalse(shapes.get((int) pair[0]).isAsleep() && shapes.get((int) pair[1]).isAsleep(),
+                        "Pair " + pair[0] + ", " + pair[1] + " is asleep but was reported");
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (!overlaps(shapes.get(i), shapes.get(j))
+                        || skipSleeping && shapes.get(i).isAsleep() && shapes.get(j).isAsleep()) {
+                    continue;
+                }
+                while (next < reported.size() && reported.get(next)[0] * count + reported.get(next)[1] < (long) i * count + j) {
+                    next++;
+                }
+                if (next == reported.size() || reported.get(next)[0] != i || reported.get(next)[1] != j) {
+                    fail("Overlapping pair " + i + ", " + j + " was not reported in tick " + tick);
+                }
+            }
+        }
+    }
+
+    // Random shapes of which two thirds are asleep.
+    private static List<Shape> sleepingScene(long seed, int count) {
+        RandomScene scene = scene(seed);
+        PhysicsWorld sleeping = new PhysicsWorld();
+        sleeping.setSleepingEnabled(true);
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PhysicsBody body = scene.nextBody();
+            if (i % 3 != 0) {
+                sleeping.add(body);
+            }
+            shapes.add(body);
+        }
+        // Nothing moves, so every island is still long enough to fall asleep
+        for (int tick = 0; tick < Constants.SLEEP_TICKS; tick++) {
+            sleeping.updateSleep();
+        }
+        return shapes;
+    }
+
+    private static boolean overlaps(Shape a, Shape b) {
+        return a.getMaxX() >= b.getMinX() && b.getMaxX() >= a.getMinX()
+                && a.getMaxY() >= b.getMinY() && b.getMaxY() >= a.getMinY();
+    }
+
+    // Mostly small shapes with a few large ones, in a 400x300 area.
+    private static RandomScene scene(long seed) {
+        RandomScene scene = new RandomScene(seed);
+        scene.setArea(0, 0, 400, 300);
+        scene.setSizeRange(2, 12);
+        scene.setLargeShapes(0.05, 40, 120);
+        return scene;
+    }
+}
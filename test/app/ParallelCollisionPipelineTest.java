@@ -0,0 +1,57 @@
+package app;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import constants.Constants;
+import shapes.PhysicsWorld;
+import shapes.RandomScene;
+import shapes.Shape;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The pipeline's batches and pair order only depend on the scene, so every thread count must
+ * leave the scene in the same state, bit for bit.
+ */
+class ParallelCollisionPipelineTest {
+
+    private static final int BODIES = 1500;
+    private static final int TICKS = 300;
+
+    @Test
+    void resultsDoNotDependOnTheThreadCount() {
+        long[] expected = run(2);
+        for (int threads : new int[] {3, 4, 8}) {
+            assertArrayEquals(expected, run(threads), "State after " + TICKS + " ticks on " + threads + " threads");
+        }
+    }
+
+    // Steps a crowded scene and returns the bits of every position and velocity.
+    private static long[] run(int threads) {
+        RandomScene scene = new RandomScene(23);
+        scene.setSpeed(150);
+        PhysicsWorld world = scene.world(BODIES);
+        List<Shape> shapes = RandomScene.shapes(world);
+
+        CollisionDetector detector = new CollisionDetector();
+        detector.setParallelism(threads);
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                world.integrate(Constants.FIXED_TIMESTEP);
+                detector.detectAndResolveCollisions(shapes);
+                detector.checkWallCollisions(world, Constants.SIMULATION_WIDTH, Constants.SIMULATION_HEIGHT);
+            }
+        } finally {
+            detector.setParallelism(1);
+        }
+
+        long[] state = new long[BODIES * 4];
+        for (int i = 0; i < BODIES; i++) {
+            state[i * 4] = Double.doubleToRawLongBits(world.getX(i));
+            state[i * 4 + 1] = Double.doubleToRawLongBits(world.getY(i));
+            state[i * 4 + 2] = Double.doubleToRawLongBits(world.getVelocityX(i));
+            state[i * 4 + 3] = Double.doubleToRawLongBits(world.getVelocityY(i));
+        }
+        return state;
+    }
+}
@@ -0,0 +1,102 @@
+package app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import constants.Constants;
+import shapes.PhysicsWorld;
+import shapes.RandomScene;
+import shapes.Shape;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stepping a world in strips must give bit for bit the positions and velocities of the
+ * single-threaded tick, with each of the broad phases the strips are meant to match.
+ */
+class PartitionedSimulationTest {
+
+    private static final int BODIES = 1500;
+    private static final int TICKS = 400;
+
+    @Test
+    void stripsMatchTheGrid() {
+        assertSameAsSerial(new UniformGridBroadPhase(), false);
+    }
+
+    @Test
+    void stripsMatchTheTree() {
+        assertSameAsSerial(new DynamicTreeBroadPhase(), false);
+    }
+
+    @Test
+    void stripsMatchSweepAndPrune() {
+        assertSameAsSerial(new SweepAndPruneBroadPhase(), false);
+    }
+
+    @Test
+    void stripsMatchTheGridWithSleeping() {
+        assertSameAsSerial(new UniformGridBroadPhase(), true);
+    }
+
+    private static void assertSameAsSerial(BroadPhase broadPhase, boolean sleeping) {
+        Scene serial = new Scene(sleeping);
+        CollisionDetector detector = new CollisionDetector(broadPhase);
+        for (int tick = 0; tick < TICKS; tick++) {
+            serial.world.integrate(Constants.FIXED_TIMESTEP);
+            detector.detectAndResolveCollisions(serial.shapes);
+            detector.checkWallCollisions(serial.world, Constants.SIMULATION_WIDTH, Constants.SIMULATION_HEIGHT);
+            serial.world.updateSleep();
+        }
+
+        // More strips than threads, and narrow enough that many bodies cross a border
+        Scene parallel = new Scene(sleeping);
+        PartitionedSimulation partitions = new PartitionedSimulation(new CollisionDetector(), 12, 4);
+        try {
+            for (int tick = 0; tick < TICKS; tick++) {
+                partitions.advance(parallel.shapes, parallel.world, Collections.<Shape>emptyList(),
+                        Constants.FIXED_TIMESTEP, Constants.SIMULATION_WIDTH, Constants.SIMULATION_HEIGHT, null);
+                parallel.world.updateSleep();
+            }
+        } finally {
+            partitions.shutdown();
+        }
+
+        int asleep = 0;
+        for (int i = 0; i < BODIES; i++) {
+            assertBits(serial.world.getX(i), parallel.world.getX(i), "x", i);
+            assertBits(serial.world.getY(i), parallel.world.getY(i), "y", i);
+            assertBits(serial.world.getVelocityX(i), parallel.world.getVelocityX(i), "velocity x", i);
+            assertBits(serial.world.getVelocityY(i), parallel.world.getVelocityY(i), "velocity y", i);
+            assertEquals(serial.world.isAsleep(i), parallel.world.isAsleep(i), "Sleep state of body " + i);
+            if (serial.world.isAsleep(i)) {
+                asleep++;
+            }
+        }
+        if (sleeping) {
+            assertTrue(asleep > 0, "Some bodies should have fallen asleep");
+        }
+    }
+
+    private static void assertBits(double expected, double actual, String field, int body) {
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual),
+                field + " of body " + body + ": " + expected + " serially, " + actual + " in strips");
+    }
+
+    // A crowded scene, the same for every call. When sleeping, only every tenth body starts moving,
+    // so the others fall asleep and are woken again as they are hit.
+    private static final class Scene {
+        final PhysicsWorld world;
+        final List<Shape> shapes;
+
+        Scene(boolean sleeping) {
+            RandomScene scene = new RandomScene(19);
+            scene.setSpeed(sleeping ? 60 : 150);
+            scene.setMovingEvery(sleeping ? 10 : 1);
+            world = scene.world(BODIES);
+            world.setSleepingEnabled(sleeping);
+            shapes = RandomScene.shapes(world);
+        }
+    }
+}
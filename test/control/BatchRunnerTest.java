@@ -0,0 +1,58 @@
+package control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Each world only depends on its spec, so a sweep must give the same results whatever the number
+ * of threads and whichever order the worlds finish in.
+ */
+class BatchRunnerTest {
+
+    private static final int WORLDS = 12;
+
+    @Test
+    void resultsDependOnlyOnTheSeed() throws InterruptedException {
+        WorldResult[] serial = run(1);
+        WorldResult[] parallel = run(3);
+        for (int world = 0; world < WORLDS; world++) {
+            WorldResult expected = serial[world];
+            WorldResult actual = parallel[world];
+            assertEquals(expected.getSeed(), actual.getSeed());
+            assertEquals(expected.getShapeCount(), actual.getShapeCount(), "Shapes in world " + world);
+            assertEquals(expected.getPairTests(), actual.getPairTests(), "Pair tests in world " + world);
+            assertEquals(Double.doubleToRawLongBits(expected.getInitialEnergy()),
+                    Double.doubleToRawLongBits(actual.getInitialEnergy()), "Initial energy of world " + world);
+            assertEquals(Double.doubleToRawLongBits(expected.getFinalEnergy()),
+                    Double.doubleToRawLongBits(actual.getFinalEnergy()), "Final energy of world " + world);
+            assertEquals(expected.getAsleep(), actual.getAsleep(), "Sleeping bodies in world " + world);
+        }
+        // Different seeds give different scenes
+        assertNotEquals(serial[0].getInitialEnergy(), serial[1].getInitialEnergy());
+    }
+
+    // Runs the sweep and returns the results by world number.
+    private static WorldResult[] run(int threads) throws InterruptedException {
+        List<SpawnSpec> scenes = new ArrayList<>();
+        for (int world = 0; world < WORLDS; world++) {
+            SpawnSpec spec = new SpawnSpec(300);
+            spec.setSeed(BatchRunner.worldSeed(99, world));
+            scenes.add(spec);
+        }
+        BatchRunner runner = new BatchRunner(threads);
+        WorldResult[] results = new WorldResult[WORLDS];
+        try {
+            runner.setTicks(200);
+            runner.setEngineSetup(engine -> engine.setSleepingEnabled(true));
+            BatchSummary summary = runner.run(scenes, result -> results[result.getWorld()] = result);
+            assertEquals(WORLDS, summary.getWorlds());
+        } finally {
+            runner.shutdown();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,78 @@
+package control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class CommandQueueTest {
+
+    @Test
+    void drainRunsCommandsOldestFirst() {
+        CommandQueue<Integer> queue = new CommandQueue<>();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.drain(value -> { throw new AssertionError("Queue should be empty"); }));
+        for (int i = 0; i < 5; i++) {
+            queue.push(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(5, queue.drain(drained::add));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+        assertTrue(queue.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> queue.push(null));
+    }
+
+    @Test
+    @Timeout(60) // A lost command would keep the consumer waiting
+    void concurrentProducersLoseNothingAndKeepTheirOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        CommandQueue<long[]> queue = new CommandQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> done = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                long producer = p;
+                done.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.push(new long[] {producer, i});
+                    }
+                    return null;
+                }));
+            }
+
+            // The consumer drains while the producers are still pushing
+            int[] next = new int[producers];
+            int[] received = new int[1];
+            start.countDown();
+            while (received[0] < producers * perProducer) {
+                received[0] += queue.drain(command -> {
+                    int producer = (int) command[0];
+                    assertEquals(next[producer], command[1], "Command out of order from producer " + producer);
+                    next[producer]++;
+                });
+                Thread.yield();
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+            assertEquals(0, queue.drain(command -> { }));
+            for (int p = 0; p < producers; p++) {
+                assertEquals(perProducer, next[p], "Commands from producer " + p);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
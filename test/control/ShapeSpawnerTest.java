@@ -0,0 +1,87 @@
+package control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import shapes.CollisionRegistry;
+import shapes.GameRectangle;
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.Shape;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ShapeSpawnerTest {
+
+    private static SpawnSpec spec(int count) {
+        SpawnSpec spec = new SpawnSpec(count);
+        spec.setSeed(7);
+        spec.setSizeRange(4, 12);
+        spec.setArea(0, 0, 600, 400);
+        spec.setNonOverlapping(true);
+        return spec;
+    }
+
+    @Test
+    void nonOverlappingSpawnAvoidsExistingShapesAndItself() {
+        GameEngine engine = new GameEngine();
+        for (int i = 0; i < 20; i++) {
+            engine.addShape(new GameRectangle(i * 30, i * 20, 25, 15, 1, Color.BLUE));
+        }
+        int spawned = engine.spawnShapes(spec(1500));
+
+        List<Shape> shapes = engine.getShapes();
+        assertEquals(20 + spawned, shapes.size());
+        for (int i = 0; i < shapes.size(); i++) {
+            for (int j = i + 1; j < shapes.size(); j++) {
+                assertFalse(CollisionRegistry.collided(shapes.get(i), shapes.get(j)), "Shapes " + i + " and " + j + " overlap");
+            }
+        }
+    }
+
+    @Test
+    void keepClearLeavesOutShapesCoveredAfterPlacement() {
+        SpawnSpec spec = spec(800);
+        ShapeSpawner spawner = new ShapeSpawner(spec);
+        spawner.avoid(Collections.<Shape>emptyList());
+        PhysicsWorld world = new PhysicsWorld(spec.getCount());
+        int created = spawner.spawn(world);
+        List<Shape> spawned = new ArrayList<>();
+        for (int i = 0; i < created; i++) {
+            spawned.add(world.getBody(i));
+        }
+
+        // A shape that arrived after the spawner looked
+        Shape late = new GameRectangle(200, 100, 200, 200, 1, Color.BLUE);
+        List<Shape> clear = ShapeSpawner.keepClear(spec, Collections.singletonList(late), spawned);
+
+        int expected = 0;
+        for (Shape shape : spawned) {
+            if (!touches(shape, late)) {
+                expected++;
+            }
+        }
+        assertTrue(expected < created, "The late shape should cover some spawned shapes");
+        assertEquals(expected, clear.size());
+        for (Shape shape : clear) {
+            assertFalse(touches(shape, late));
+        }
+    }
+
+    // Touching counts as overlapping for placement, so compare closed boxes and circles.
+    private static boolean touches(Shape shape, Shape box) {
+        if (shape.getTypeId() != PhysicsWorld.TYPE_CIRCLE) {
+            return shape.getMaxX() >= box.getMinX() && box.getMaxX() >= shape.getMinX()
+                    && shape.getMaxY() >= box.getMinY() && box.getMaxY() >= shape.getMinY();
+        }
+        PhysicsBody circle = (PhysicsBody) shape;
+        double radius = (shape.getMaxX() - shape.getMinX()) / 2;
+        double dx = Math.max(Math.max(box.getMinX() - circle.getX(), circle.getX() - box.getMaxX()), 0);
+        double dy = Math.max(Math.max(box.getMinY() - circle.getY(), circle.getY() - box.getMaxY()), 0);
+        return dx * dx + dy * dy <= radius * radius;
+    }
+}
@@ -0,0 +1,94 @@
+package control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.RandomScene;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A snapshot must read back bit for bit, both through the heap buffer used for small files and
+ * through the memory mapping used for large ones.
+ */
+class SnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void smallSnapshotReadsBackBitForBit() throws IOException {
+        assertRoundTrip(300, 12345L);
+    }
+
+    @Test
+    void mappedSnapshotReadsBackBitForBit() throws IOException {
+        // Above the 1 MB threshold, so the file is mapped
+        assertRoundTrip(40000, Long.MAX_VALUE);
+    }
+
+    @Test
+    void emptyWorldReadsBack() throws IOException {
+        assertRoundTrip(0, 0);
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        Path path = directory.resolve("truncated.snap");
+        SnapshotFile.write(path, randomWorld(50), 1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> SnapshotFile.read(path, new PhysicsWorld()));
+    }
+
+    private void assertRoundTrip(int count, long tick) throws IOException {
+        PhysicsWorld world = randomWorld(count);
+        Path path = directory.resolve("world.snap");
+        SnapshotFile.write(path, world, tick);
+
+        PhysicsWorld restored = new PhysicsWorld();
+        assertEquals(tick, SnapshotFile.read(path, restored));
+        assertEquals(count, restored.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(world.getType(i), restored.getType(i), "Type of body " + i);
+            assertEquals(world.getRgb(i), restored.getRgb(i), "Colour of body " + i);
+            assertBits(world.getX(i), restored.getX(i), "x", i);
+            assertBits(world.getY(i), restored.getY(i), "y", i);
+            assertBits(world.getVelocityX(i), restored.getVelocityX(i), "velocity x", i);
+            assertBits(world.getVelocityY(i), restored.getVelocityY(i), "velocity y", i);
+            assertBits(world.getWidth(i), restored.getWidth(i), "width", i);
+            assertBits(world.getHeight(i), restored.getHeight(i), "height", i);
+            assertBits(world.getMass(i), restored.getMass(i), "mass", i);
+            assertBits(world.getMinX(i), restored.getMinX(i), "min x", i);
+            assertBits(world.getMinY(i), restored.getMinY(i), "min y", i);
+        }
+    }
+
+    private static void assertBits(double expected, double actual, String field, int body) {
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual),
+                "Bits of " + field + " of body " + body + ": " + expected + " read back as " + actual);
+    }
+
+    // Values with full mantissas and some negative zeros, as a running simulation leaves them.
+    private static PhysicsWorld randomWorld(int count) {
+        RandomScene scene = new RandomScene(count);
+        scene.setArea(-100, -100, 1000, 800);
+        scene.setSizeRange(1e-3, 30);
+        scene.setMassRange(0, 50);
+        scene.setSpeed(300);
+        scene.setRandomColors(true);
+        PhysicsWorld world = scene.world(count);
+        for (int i = 0; i < count; i += 10) {
+            PhysicsBody body = world.getBody(i);
+            body.setVelocity(-0.0, body.getVelocityY());
+        }
+        return world;
+    }
+}
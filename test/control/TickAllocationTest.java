@@ -0,0 +1,80 @@
+package control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import app.BroadPhase;
+import app.BruteForceBroadPhase;
+import app.DynamicTreeBroadPhase;
+import app.SweepAndPruneBroadPhase;
+import app.UniformGridBroadPhase;
+import constants.Constants;
+import shapes.RandomScene;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A tick of a running scene must not allocate once the broad phase has grown to size, so a large
+ * scene does not keep the young generation busy.
+ */
+class TickAllocationTest {
+
+    private static final int BODIES = 2000;
+    private static final int WARM_UP_TICKS = 1000;
+    private static final int MEASURED_TICKS = 200;
+
+    @Test
+    void treeTickDoesNotAllocate() {
+        assertNoAllocation(new DynamicTreeBroadPhase());
+    }
+
+    @Test
+    void gridTickDoesNotAllocate() {
+        assertNoAllocation(new UniformGridBroadPhase());
+    }
+
+    @Test
+    void sweepAndPruneTickDoesNotAllocate() {
+        assertNoAllocation(new SweepAndPruneBroadPhase());
+    }
+
+    @Test
+    void bruteForceTickDoesNotAllocate() {
+        assertNoAllocation(new BruteForceBroadPhase());
+    }
+
+    private static void assertNoAllocation(BroadPhase broadPhase) {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        long thread = Thread.currentThread().getId();
+
+        GameEngine engine = new GameEngine();
+        engine.getCollisionDetector().setBroadPhase(broadPhase);
+        RandomScene scene = new RandomScene(42);
+        scene.setArea(20, 20, Constants.SIMULATION_WIDTH - 40, Constants.SIMULATION_HEIGHT - 40);
+        scene.setSizeRange(4, 16);
+        scene.setSpeed(120);
+        engine.addShapes(RandomScene.shapes(scene.world(BODIES)));
+        for (int t = 0; t < WARM_UP_TICKS; t++) {
+            engine.step(1.0 / Constants.TARGET_FPS);
+        }
+
+        // Reading the counter may allocate itself, so that much is taken off
+        long overhead = threads.getThreadAllocatedBytes(thread);
+        overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int t = 0; t < MEASURED_TICKS; t++) {
+            engine.step(1.0 / Constants.TARGET_FPS);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+        assertEquals(0, allocated, "Bytes allocated in " + MEASURED_TICKS + " ticks");
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Per-thread allocation counter not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Per-thread allocation counter not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
@@ -0,0 +1,159 @@
+package control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import shapes.PhysicsBody;
+import shapes.PhysicsWorld;
+import shapes.RandomScene;
+import shapes.WorldSnapshot;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A recording must play back what was recorded: keyframes exactly, delta frames to within half a
+ * quantum, whichever order the frames are read in.
+ */
+class TrajectoryRoundTripTest {
+
+    private static final int FRAMES = 60;
+    private static final int KEYFRAME_INTERVAL = 10;
+    private static final int ADDED_AT = 25; // Tick at which a body is added, forcing a keyframe
+    private static final double TIMESTEP = 1.0 / 240;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void playsBackEveryRecordedFrame() throws IOException {
+        Path path = directory.resolve("run.ctrj");
+        List<double[][]> recorded = record(path);
+
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            assertEquals(TIMESTEP, reader.getTimestep());
+            assertEquals(0, reader.getFirstTick());
+            assertEquals(FRAMES - 1, reader.getLastTick());
+            // Every tenth frame, plus one when the body was added that restarts the count
+            assertEquals(7, reader.getKeyframeCount());
+
+            WorldSnapshot snapshot = new WorldSnapshot();
+            for (int tick = 0; tick < FRAMES; tick++) {
+                assertFrame(reader, snapshot, recorded, tick);
+            }
+            // Backwards, so every frame is decoded again from its keyframe
+            for (int tick = FRAMES - 1; tick >= 0; tick--) {
+                assertFrame(reader, snapshot, recorded, tick);
+            }
+        }
+    }
+
+    @Test
+    void recordingWithoutFooterStillOpens() throws IOException {
+        Path path = directory.resolve("cut.ctrj");
+        List<double[][]> recorded = record(path);
+        int keyframes;
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            keyframes = reader.getKeyframeCount();
+        }
+        // Drop the index and footer, and part of the last frame, as if the process had died while writing
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            long dataEnd = channel.size() - TrajectoryFormat.FOOTER_BYTES
+                    - (long) keyframes * TrajectoryFormat.INDEX_ENTRY_BYTES;
+            channel.truncate(dataEnd - 3);
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            assertEquals(keyframes, reader.getKeyframeCount());
+            assertEquals(FRAMES - 2, reader.getLastTick());
+            WorldSnapshot snapshot = new WorldSnapshot();
+            for (int tick = 0; tick < FRAMES - 1; tick++) {
+                assertFrame(reader, snapshot, recorded, tick);
+            }
+        }
+    }
+
+    @Test
+    void varintsReadBackWhatWasWritten() {
+        long[] values = {0, 1, -1, 63, -64, 64, -65, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1};
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 10);
+        for (long value : values) {
+            TrajectoryFormat.putVarLong(buffer, value);
+        }
+        buffer.flip();
+        for (long value : values) {
+            assertEquals(value, TrajectoryFormat.getVarLong(buffer));
+        }
+        assertEquals(0, buffer.remaining());
+
+        // Small changes, the common case, take one byte
+        buffer.clear();
+        TrajectoryFormat.putVarLong(buffer, -64);
+        TrajectoryFormat.putVarLong(buffer, 63);
+        assertEquals(2, buffer.position());
+    }
+
+    // Records a moving scene tick by tick and returns the minX and minY of every body at each tick.
+    private static List<double[][]> record(Path path) throws IOException {
+        RandomScene scene = new RandomScene(3);
+        scene.setArea(0, 0, 800, 600);
+        scene.setSizeRange(2, 22);
+        PhysicsWorld world = scene.world(200);
+        Random random = new Random(3);
+        List<double[][]> recorded = new ArrayList<>();
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(path, TIMESTEP, 1, KEYFRAME_INTERVAL, 4,
+                TrajectoryRecorder.OverflowPolicy.BLOCK)) {
+            long structureVersion = 0;
+            for (int tick = 0; tick < FRAMES; tick++) {
+                if (tick == ADDED_AT) {
+                    world.add(scene.nextBody());
+                    structureVersion++;
+                }
+                for (int i = 0; i < world.size(); i++) {
+                    PhysicsBody body = world.getBody(i);
+                    // Mostly small moves, with some long jumps that need several varint bytes
+                    double scale = random.nextInt(50) == 0 ? 1e5 : 3;
+                    body.setPosition(body.getX() + random.nextGaussian() * scale,
+                            body.getY() + random.nextGaussian() * scale);
+                }
+                double[][] frame = new double[2][world.size()];
+                for (int i = 0; i < world.size(); i++) {
+                    frame[0][i] = world.getMinX(i);
+                    frame[1][i] = world.getMinY(i);
+                }
+                recorded.add(frame);
+                recorder.capture(world, tick, structureVersion);
+            }
+            recorder.close();
+            assertEquals(FRAMES, recorder.getFramesWritten());
+            assertEquals(0, recorder.getFramesDropped());
+        }
+        return recorded;
+    }
+
+    private static void assertFrame(TrajectoryReader reader, WorldSnapshot snapshot, List<double[][]> recorded,
+                                    int tick) throws IOException {
+        reader.readFrame(tick, snapshot);
+        double[][] expected = recorded.get(tick);
+        assertEquals(tick, snapshot.getTick());
+        assertEquals(expected[0].length, snapshot.size(), "Bodies at tick " + tick);
+        // The keyframe written when the body was added starts the interval again
+        boolean keyframe = (tick < ADDED_AT ? tick : tick - ADDED_AT) % KEYFRAME_INTERVAL == 0;
+        // Half a quantum of rounding, and a little for the sums of large coordinates
+        double tolerance = keyframe ? 0 : TrajectoryRecorder.DEFAULT_QUANTUM / 2 + 1e-9;
+        for (int i = 0; i < snapshot.size(); i++) {
+            double errorX = Math.abs(snapshot.getMinX(i) - expected[0][i]);
+            double errorY = Math.abs(snapshot.getMinY(i) - expected[1][i]);
+            assertTrue(errorX <= tolerance && errorY <= tolerance,
+                    "Body " + i + " at tick " + tick + " is off by " + Math.max(errorX, errorY));
+        }
+    }
+}
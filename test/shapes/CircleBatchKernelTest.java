@@ -0,0 +1,58 @@
+package shapes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.awt.Color;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The batch kernels must give the answers of CircleCircleCollision.collided for every pair,
+ * including circles that exactly touch and circles at the same centre.
+ */
+class CircleBatchKernelTest {
+
+    @Test
+    void scalarKernelMatchesTheRegistry() {
+        assertMatchesRegistry(CircleBatchKernel.scalar());
+    }
+
+    @Test
+    void vectorKernelMatchesTheRegistry() {
+        CircleBatchKernel kernel = CircleBatchKernel.vector();
+        assumeTrue(kernel != null, "No Vector API kernel on this JVM");
+        assertMatchesRegistry(kernel);
+    }
+
+    private static void assertMatchesRegistry(CircleBatchKernel kernel) {
+        Random random = new Random(29);
+        PhysicsWorld world = new PhysicsWorld();
+        int circles = 300;
+        for (int i = 0; i < circles; i++) {
+            // Coarse positions and sizes, so that exact touching and shared centres come up
+            world.add(new Circle(random.nextInt(60), random.nextInt(60), 1 + random.nextInt(8) * 0.5, 1, Color.RED));
+        }
+        int pairs = 5003; // Not a multiple of any vector length, so the tail loop runs too
+        int[] first = new int[pairs];
+        int[] second = new int[pairs];
+        for (int k = 0; k < pairs; k++) {
+            first[k] = random.nextInt(circles);
+            second[k] = random.nextInt(circles);
+        }
+        CollisionAlgorithm registry = CollisionRegistry.lookup(PhysicsWorld.TYPE_CIRCLE, PhysicsWorld.TYPE_CIRCLE);
+
+        // Whole ranges and ones that start and end part way through a vector
+        int[][] ranges = {{0, pairs}, {3, pairs - 5}, {17, 18}, {100, 100}};
+        for (int[] range : ranges) {
+            boolean[] touching = new boolean[pairs];
+            kernel.test(world, first, second, range[0], range[1], touching);
+            for (int k = 0; k < pairs; k++) {
+                boolean expected = k >= range[0] && k < range[1]
+                        && registry.collided(world.getBody(first[k]), world.getBody(second[k]));
+                assertEquals(expected, touching[k], kernel.getName() + " kernel, pair " + k + " of range "
+                        + range[0] + " to " + range[1] + ": bodies " + first[k] + " and " + second[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package shapes;
+
+import constants.Constants;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded random circles and rectangles for the tests. The same seed and settings always give the
+ * same bodies in the same order. By default the bodies are 3 to 12 units across, weigh 1 to 10,
+ * stand still, and lie inside the simulation area with a 10 unit margin.
+ */
+public final class RandomScene {
+
+    private final Random random;
+    private double areaX = 10;
+    private double areaY = 10;
+    private double areaWidth = Constants.SIMULATION_WIDTH - 20;
+    private double areaHeight = Constants.SIMULATION_HEIGHT - 20;
+    private double minSize = 3;
+    private double maxSize = 12;
+    private double largeChance;
+    private double minLargeSize;
+    private double maxLargeSize;
+    private double minMass = 1;
+    private double maxMass = 10;
+    private double speed;
+    private int movingEvery = 1;
+    private double restitution = Constants.RESTITUTION;
+    private boolean randomColors;
+    private int bodiesMade;
+
+    public RandomScene(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // Area the top-left corners are placed in.
+    public void setArea(double x, double y, double width, double height) {
+        areaX = x;
+        areaY = y;
+        areaWidth = width;
+        areaHeight = height;
+    }
+
+    // Diameter of circles and width of rectangles; rectangles are half to one and a half times as tall.
+    public void setSizeRange(double min, double max) {
+        minSize = min;
+        maxSize = max;
+    }
+
+    // Makes some bodies much larger than the rest, e.g. so they cover many broad-phase cells.
+    public void setLargeShapes(double chance, double min, double max) {
+        largeChance = chance;
+        minLargeSize = min;
+        maxLargeSize = max;
+    }
+
+    public void setMassRange(double min, double max) {
+        minMass = min;
+        maxMass = max;
+    }
+
+    // Standard deviation of each velocity component.
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    // Only every nth body gets a velocity, so the others can fall asleep until they are hit.
+    public void setMovingEvery(int n) {
+        movingEvery = n;
+    }
+
+    // Restitution of the worlds built by world().
+    public void setRestitution(double restitution) {
+        this.restitution = restitution;
+    }
+
+    // Gives every body its own colour, alpha included, instead of red circles and blue rectangles.
+    public void setRandomColors(boolean randomColors) {
+        this.randomColors = randomColors;
+    }
+
+    /**
+     * Makes the next body, in a world of its own. Add it to another world to simulate it together
+     * with others.
+     */
+    public PhysicsBody nextBody() {
+        double size = largeChance > 0 && random.nextDouble() < largeChance
+                ? minLargeSize + random.nextDouble() * (maxLargeSize - minLargeSize)
+                : minSize + random.nextDouble() * (maxSize - minSize);
+        double x = areaX + random.nextDouble() * areaWidth;
+        double y = areaY + random.nextDouble() * areaHeight;
+        double mass = minMass + random.nextDouble() * (maxMass - minMass);
+        boolean circle = random.nextBoolean();
+        Color color = randomColors ? new Color(random.nextInt(), true) : circle ? Color.RED : Color.BLUE;
+        PhysicsBody body = circle
+                ? new Circle(x, y, size / 2, mass, color)
+                : new GameRectangle(x, y, size, size * (0.5 + random.nextDouble()), mass, color);
+        double bodySpeed = bodiesMade++ % movingEvery == 0 ? speed : 0;
+        body.setVelocity(random.nextGaussian() * bodySpeed, random.nextGaussian() * bodySpeed);
+        return body;
+    }
+
+    // Makes the next count bodies in a new world.
+    public PhysicsWorld world(int count) {
+        PhysicsWorld world = new PhysicsWorld(count);
+        world.setRestitution(restitution);
+        for (int i = 0; i < count; i++) {
+            world.add(nextBody());
+        }
+        return world;
+    }
+
+    // The bodies of a world as a shape list, in world order.
+    public static List<Shape> shapes(PhysicsWorld world) {
+        List<Shape> shapes = new ArrayList<>(world.size());
+        for (int i = 0; i < world.size(); i++) {
+            shapes.add(world.getBody(i));
+        }
+        return shapes;
+    }
+}
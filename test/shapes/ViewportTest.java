@@ -0,0 +1,74 @@
+package shapes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ViewportTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void screenAndWorldCoordinatesConvertBothWays() {
+        Viewport view = new Viewport(-250.5, 1000.25, 0.375, 800, 600);
+        for (double world = -1000; world <= 1000; world += 12.5) {
+            assertEquals(world, view.toWorldX(view.toScreenX(world)), EPSILON);
+            assertEquals(world, view.toWorldY(view.toScreenY(world)), EPSILON);
+        }
+        assertEquals(0, view.toScreenX(view.getMinX()), EPSILON);
+        assertEquals(800, view.toScreenX(view.getMaxX()), EPSILON);
+        assertEquals(600, view.toScreenY(view.getMaxY()), EPSILON);
+    }
+
+    @Test
+    void zoomKeepsThePointUnderTheMouse() {
+        Viewport view = new Viewport(10, 20, 1, 800, 600);
+        Viewport zoomed = view.zoom(300, 200, 2.5);
+        assertEquals(2.5, zoomed.getScale(), EPSILON);
+        assertEquals(view.toWorldX(300), zoomed.toWorldX(300), EPSILON);
+        assertEquals(view.toWorldY(200), zoomed.toWorldY(200), EPSILON);
+
+        // Clamped at the limits
+        assertEquals(Viewport.MAX_SCALE, view.zoom(0, 0, 1e9).getScale());
+        assertEquals(Viewport.MIN_SCALE, view.zoom(0, 0, 1e-9).getScale());
+    }
+
+    @Test
+    void panMovesTheWorldWithTheMouse() {
+        Viewport view = new Viewport(0, 0, 4, 800, 600);
+        Viewport panned = view.pan(40, -20);
+        // The world point that was at pixel (100, 100) is now at (140, 80)
+        assertEquals(view.toWorldX(100), panned.toWorldX(140), EPSILON);
+        assertEquals(view.toWorldY(100), panned.toWorldY(80), EPSILON);
+    }
+
+    @Test
+    void fitShowsTheWholeWorld() {
+        Viewport view = Viewport.fit(10000, 2000, 800, 600);
+        assertTrue(view.getMaxX() >= 10000 - EPSILON && view.getMaxY() >= 2000 - EPSILON);
+        assertEquals(0.08, view.getScale(), EPSILON);
+        // Never more than one pixel per unit
+        assertEquals(1, Viewport.fit(100, 100, 800, 600).getScale());
+    }
+
+    @Test
+    void intersectsOnlyBoxesInView() {
+        Viewport view = new Viewport(100, 100, 2, 200, 100); // World 100..200 by 100..150
+        assertTrue(view.intersects(90, 90, 110, 110));
+        assertTrue(view.intersects(200, 150, 210, 160)); // Touching the far corner
+        assertFalse(view.intersects(201, 100, 210, 110));
+        assertFalse(view.intersects(100, 40, 110, 99));
+    }
+
+    @Test
+    void rejectsScalesOutsideTheLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new Viewport(0, 0, 0, 800, 600));
+        assertThrows(IllegalArgumentException.class, () -> new Viewport(0, 0, Double.NaN, 800, 600));
+        assertThrows(IllegalArgumentException.class, () -> new Viewport(0, 0, Viewport.MAX_SCALE * 2, 800, 600));
+        // Empty screen areas count as one pixel
+        assertEquals(1, new Viewport(0, 0, 1, 0, -5).getPixelWidth());
+    }
+}
@@ -0,0 +1,55 @@
+package shapes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Color;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hit-testing a snapshot must find the body drawn on top, by the shape of the body rather than its box.
+ */
+class WorldSnapshotTest {
+
+    @Test
+    void findsTheTopMostBodyUnderAPoint() {
+        PhysicsWorld world = new PhysicsWorld();
+        Circle circle = new Circle(50, 50, 20, 1, Color.RED);
+        GameRectangle rectangle = new GameRectangle(60, 40, 30, 20, 1, Color.BLUE);
+        world.add(circle);
+        world.add(rectangle);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.capture(world, 0);
+
+        assertSame(circle, snapshot.getBody(snapshot.findBodyAt(circle.getX(), circle.getY())));
+        // Inside both, and the rectangle was added later so it is drawn on top
+        assertSame(rectangle, snapshot.getBody(snapshot.findBodyAt(circle.getX() + 15, circle.getY())));
+        // Inside the circle's box but outside the circle
+        assertEquals(-1, snapshot.findBodyAt(circle.getMinX() + 1, circle.getMinY() + 1));
+        assertEquals(-1, snapshot.findBodyAt(500, 500));
+    }
+
+    @Test
+    void onlyFindsBodiesInTheCapturedView() {
+        PhysicsWorld world = new PhysicsWorld();
+        Circle inView = new Circle(50, 50, 10, 1, Color.RED);
+        Circle outOfView = new Circle(500, 500, 10, 1, Color.RED);
+        world.add(inView);
+        world.add(outOfView);
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.capture(world, 0, new Viewport(0, 0, 1, 200, 200));
+
+        assertSame(inView, snapshot.getBody(snapshot.findBodyAt(inView.getX(), inView.getY())));
+        assertEquals(-1, snapshot.findBodyAt(outOfView.getX(), outOfView.getY()));
+    }
+
+    @Test
+    void loadedBodiesHaveNoLiveBody() {
+        WorldSnapshot snapshot = new WorldSnapshot();
+        snapshot.load(1, 0, new int[] {PhysicsWorld.TYPE_RECTANGLE}, new double[] {10}, new double[] {10},
+                new double[] {5}, new double[] {5}, new Color[] {Color.BLUE});
+        assertEquals(0, snapshot.findBodyAt(12, 12));
+        assertNull(snapshot.getBody(0));
+    }
+}